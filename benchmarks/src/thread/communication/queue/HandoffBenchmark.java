@@ -0,0 +1,210 @@
+package thread.communication.queue;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Handoffs per second between producers and consumers through a bounded queue
+ * of 1024 elements: the {@link MpmcBoundedQueue} with each
+ * {@link WaitStrategy}, an ArrayBlockingQueue, and a buffer guarded by a
+ * ReentrantLock with 2 Conditions (not full and not empty), as in
+ * ConditionVariablesExample.
+ *
+ * Each group has one producer and one consumer, so with N threads there are N/2
+ * of each sharing the same queue. They use the versions with timeout of offer
+ * and poll, so a producer does not wait forever on a full queue when the
+ * consumers stop at the end of an iteration.
+ *
+ * JMH does not accept the number of threads as a parameter, so the main method
+ * runs the benchmark once for each number of threads:
+ * java -cp benchmarks/target/benchmarks.jar thread.communication.queue.HandoffBenchmark
+ *
+ * @author pedrorenzo
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandoffBenchmark {
+	private static final int[] NUMBER_OF_THREADS = { 2, 4, 8, 16, 32, 64 };
+	private static final int CAPACITY = 1024;
+	private static final Integer ELEMENT = 42;
+
+	@State(Scope.Benchmark)
+	public static class Queue {
+		@Param({ "mpmcSpin", "mpmcYield", "mpmcPark", "mpmcBlocking", "arrayBlockingQueue", "conditionVariable" })
+		private String implementation;
+
+		private Handoff handoff;
+
+		@Setup
+		public void setup() {
+			switch (implementation) {
+			case "mpmcSpin":
+				handoff = mpmc(new SpinWaitStrategy());
+				break;
+			case "mpmcYield":
+				handoff = mpmc(new YieldWaitStrategy());
+				break;
+			case "mpmcPark":
+				handoff = mpmc(new ParkWaitStrategy());
+				break;
+			case "mpmcBlocking":
+				handoff = mpmc(new BlockingWaitStrategy());
+				break;
+			case "arrayBlockingQueue":
+				final ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<>(CAPACITY);
+				handoff = new Handoff() {
+					@Override
+					public boolean offer(final Integer element, final long timeoutMillis) throws InterruptedException {
+						return queue.offer(element, timeoutMillis, TimeUnit.MILLISECONDS);
+					}
+
+					@Override
+					public Integer poll(final long timeoutMillis) throws InterruptedException {
+						return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+					}
+				};
+				break;
+			case "conditionVariable":
+				handoff = new ConditionVariableBuffer();
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown queue " + implementation);
+			}
+		}
+
+		private static Handoff mpmc(final WaitStrategy waitStrategy) {
+			final MpmcBoundedQueue<Integer> queue = new MpmcBoundedQueue<>(CAPACITY, waitStrategy);
+			return new Handoff() {
+				@Override
+				public boolean offer(final Integer element, final long timeoutMillis) throws InterruptedException {
+					return queue.offer(element, timeoutMillis, TimeUnit.MILLISECONDS);
+				}
+
+				@Override
+				public Integer poll(final long timeoutMillis) throws InterruptedException {
+					return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+				}
+			};
+		}
+	}
+
+	@Benchmark
+	@Group("handoff")
+	@GroupThreads(1)
+	public boolean produce(final Queue queue, final Control control) throws InterruptedException {
+		while (!control.stopMeasurement) {
+			if (queue.handoff.offer(ELEMENT, 10)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Benchmark
+	@Group("handoff")
+	@GroupThreads(1)
+	public Integer consume(final Queue queue, final Control control) throws InterruptedException {
+		while (!control.stopMeasurement) {
+			final Integer element = queue.handoff.poll(10);
+			if (element != null) {
+				return element;
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		for (int threads : NUMBER_OF_THREADS) {
+			new Runner(new OptionsBuilder().parent(commandLineOptions)
+					.include(HandoffBenchmark.class.getSimpleName()).threads(threads).build()).run();
+		}
+	}
+
+	private interface Handoff {
+		boolean offer(Integer element, long timeoutMillis) throws InterruptedException;
+
+		Integer poll(long timeoutMillis) throws InterruptedException;
+	}
+
+	/**
+	 * The pattern of ConditionVariablesExample as a bounded buffer: the threads
+	 * sleep on a Condition while they cannot continue and are signaled when the
+	 * other side changes the buffer.
+	 */
+	private static class ConditionVariableBuffer implements Handoff {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition notFull = lock.newCondition();
+		private final Condition notEmpty = lock.newCondition();
+		private final Integer[] elements = new Integer[CAPACITY];
+		private int head;
+		private int size;
+
+		@Override
+		public boolean offer(final Integer element, final long timeoutMillis) throws InterruptedException {
+			long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			lock.lockInterruptibly();
+			try {
+				while (size == elements.length) {
+					if (remaining <= 0) {
+						return false;
+					}
+					remaining = notFull.awaitNanos(remaining);
+				}
+				elements[(head + size) % elements.length] = element;
+				size++;
+				notEmpty.signal();
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public Integer poll(final long timeoutMillis) throws InterruptedException {
+			long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			lock.lockInterruptibly();
+			try {
+				while (size == 0) {
+					if (remaining <= 0) {
+						return null;
+					}
+					remaining = notEmpty.awaitNanos(remaining);
+				}
+				final Integer element = elements[head];
+				elements[head] = null;
+				head = (head + 1) % elements.length;
+				size--;
+				notFull.signal();
+				return element;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package thread.lock.list;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of the {@link ReadMostlyList} implementations when all the
+ * benchmark threads use the same list, from only reads (100% reads) to as many
+ * writes as reads (50% reads). The writes replace elements, so the size of the
+ * list does not change during the benchmark.
+ *
+ * JMH does not accept the number of threads as a parameter, so the main method
+ * runs the benchmark once for each number of threads:
+ * java -cp benchmarks/target/benchmarks.jar thread.lock.list.ReadMostlyListBenchmark
+ *
+ * @author pedrorenzo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadMostlyListBenchmark {
+	private static final int[] NUMBER_OF_THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+
+	@Param({ "readWriteLock", "stampedLock", "copyOnWrite" })
+	private String implementation;
+
+	@Param({ "100", "99", "90", "75", "50" })
+	private int readPercentage;
+
+	@Param({ "1000" })
+	private int size;
+
+	private ReadMostlyList<Integer> list;
+
+	@Setup
+	public void setup() {
+		switch (implementation) {
+		case "readWriteLock":
+			list = new ReadWriteLockList<>();
+			break;
+		case "stampedLock":
+			list = new StampedLockList<>();
+			break;
+		case "copyOnWrite":
+			list = new CopyOnWriteList<>();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown list " + implementation);
+		}
+		for (int i = 0; i < size; i++) {
+			list.add(i);
+		}
+	}
+
+	@Benchmark
+	public Integer readOrWrite() {
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		final int index = random.nextInt(size);
+		if (random.nextInt(100) < readPercentage) {
+			return list.get(index);
+		}
+		return list.set(index, index);
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		for (int threads : NUMBER_OF_THREADS) {
+			new Runner(new OptionsBuilder().parent(commandLineOptions)
+					.include(ReadMostlyListBenchmark.class.getSimpleName()).threads(threads).build()).run();
+		}
+	}
+}
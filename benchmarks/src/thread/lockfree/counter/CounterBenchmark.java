@@ -0,0 +1,97 @@
+package thread.lockfree.counter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Throughput of the {@link Counter} implementations when all the benchmark
+ * threads update the same counter, with 1 to 64 threads.
+ *
+ * JMH does not accept the number of threads as a parameter, so the main method
+ * runs the benchmark once for each number of threads:
+ * java -cp benchmarks/target/benchmarks.jar thread.lockfree.counter.CounterBenchmark
+ *
+ * @author pedrorenzo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterBenchmark {
+	private static final int[] NUMBER_OF_THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+
+	@Param({ "synchronized", "atomic", "striped", "longAdder", "batched" })
+	private String implementation;
+
+	private Counter counter;
+
+	@Setup
+	public void setup() {
+		switch (implementation) {
+		case "synchronized":
+			counter = new SynchronizedCounter();
+			break;
+		case "atomic":
+			counter = new AtomicCounter();
+			break;
+		case "striped":
+			counter = new StripedCounter();
+			break;
+		case "longAdder":
+			counter = new LongAdderCounter();
+			break;
+		case "batched":
+			counter = new ThreadLocalBatchedCounter();
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown counter " + implementation);
+		}
+	}
+
+	/**
+	 * Flushes the batches of each benchmark thread, as the threads using a
+	 * ThreadLocalBatchedCounter must do when they finish.
+	 */
+	@State(Scope.Thread)
+	public static class Flusher {
+		@TearDown(Level.Iteration)
+		public void flush(final CounterBenchmark benchmark) {
+			if (benchmark.counter instanceof ThreadLocalBatchedCounter) {
+				((ThreadLocalBatchedCounter) benchmark.counter).flush();
+			}
+		}
+	}
+
+	@Benchmark
+	public void increment(final Flusher flusher) {
+		counter.increment();
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		for (int threads : NUMBER_OF_THREADS) {
+			new Runner(new OptionsBuilder().parent(commandLineOptions)
+					.include(CounterBenchmark.class.getSimpleName() + ".increment").threads(threads).build()).run();
+		}
+	}
+}
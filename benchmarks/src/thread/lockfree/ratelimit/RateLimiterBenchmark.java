@@ -0,0 +1,112 @@
+package thread.lockfree.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Average time of a tryAcquire when all the benchmark threads share the same
+ * {@link RateLimiter}, compared with a token bucket guarded by synchronized.
+ * With 1000 permits per second almost every call is rejected, and with 10^9
+ * almost every call is allowed, so both paths are measured.
+ *
+ * The sliding window uses windows of 1 ms, since it counts at most 4 million
+ * operations per window.
+ *
+ * JMH does not accept the number of threads as a parameter, so the main method
+ * runs the benchmark once for each number of threads, up to 64:
+ * java -cp benchmarks/target/benchmarks.jar thread.lockfree.ratelimit.RateLimiterBenchmark
+ *
+ * @author pedrorenzo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RateLimiterBenchmark {
+	private static final int[] NUMBER_OF_THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+
+	@Param({ "tokenBucket", "slidingWindow", "synchronizedTokenBucket" })
+	private String implementation;
+
+	@Param({ "1000", "1000000000" })
+	private int permitsPerSecond;
+
+	private RateLimiter rateLimiter;
+
+	@Setup
+	public void setup() {
+		switch (implementation) {
+		case "tokenBucket":
+			rateLimiter = new TokenBucketRateLimiter(permitsPerSecond);
+			break;
+		case "slidingWindow":
+			rateLimiter = new SlidingWindowRateLimiter(Math.max(1, permitsPerSecond / 1000), 1,
+					TimeUnit.MILLISECONDS);
+			break;
+		case "synchronizedTokenBucket":
+			rateLimiter = new SynchronizedTokenBucket(permitsPerSecond);
+			break;
+		default:
+			throw new IllegalArgumentException("Unknown rate limiter " + implementation);
+		}
+	}
+
+	@Benchmark
+	public boolean tryAcquire() {
+		return rateLimiter.tryAcquire();
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		final CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		for (int threads : NUMBER_OF_THREADS) {
+			new Runner(new OptionsBuilder().parent(commandLineOptions)
+					.include(RateLimiterBenchmark.class.getSimpleName()).threads(threads).build()).run();
+		}
+	}
+
+	/**
+	 * The classic token bucket: the tokens and the time of the last refill,
+	 * updated together inside a lock.
+	 */
+	private static class SynchronizedTokenBucket implements RateLimiter {
+		private final long permitsPerSecond;
+		private double tokens;
+		private long lastRefill = System.nanoTime();
+
+		private SynchronizedTokenBucket(final long permitsPerSecond) {
+			this.permitsPerSecond = permitsPerSecond;
+			this.tokens = permitsPerSecond;
+		}
+
+		@Override
+		public synchronized boolean tryAcquire(final int permits) {
+			final long now = System.nanoTime();
+			tokens = Math.min(permitsPerSecond,
+					tokens + (now - lastRefill) * (double) permitsPerSecond / TimeUnit.SECONDS.toNanos(1));
+			lastRefill = now;
+			if (tokens < permits) {
+				return false;
+			}
+			tokens -= permits;
+			return true;
+		}
+	}
+}
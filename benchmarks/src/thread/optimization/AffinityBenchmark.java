@@ -0,0 +1,111 @@
+package thread.optimization;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import thread.optimization.affinity.Affinity;
+import thread.optimization.affinity.AffinityThreadFactory;
+import thread.optimization.affinity.CpuTopology;
+import thread.optimization.affinity.PinnedBandRecolor;
+
+/**
+ * Throughput of the recolor bands and of the word searches of the search
+ * server, with the worker threads pinned to cpus or placed by the operating
+ * system:
+ *
+ * - recolor: the bands of a {@link PinnedBandRecolor}, each allocated by its
+ * own worker.
+ * - search: numberOfThreads searches of the book at once, in a fixed thread
+ * pool as the one of {@link ThreadOptimizationForThroughput}.
+ *
+ * The forks are started with the flags needed by {@link Affinity}. On a
+ * machine with a single NUMA node, or with fewer cpus than threads, there is
+ * not much to gain; the difference shows when the other cores are busy and the
+ * operating system keeps moving the workers around. Add -XX:+UseNUMA to the
+ * JVM flags on a machine with many nodes.
+ *
+ * @author pedrorenzo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(value = 1, jvmArgsPrepend = { "--add-modules", "jdk.incubator.foreign", "--enable-native-access=ALL-UNNAMED" })
+public class AffinityBenchmark {
+	private static final String BOOK = "./resources/war_and_peace.txt";
+	private static final String[] WORDS = { "the", "war", "peace", "Pierre", "Natasha", "Moscow", "Napoleon",
+			"prince", "battle", "love" };
+
+	@Param({ "false", "true" })
+	private boolean pin;
+
+	@Param({ "1", "2", "4", "8" })
+	private int numberOfThreads;
+
+	private PinnedBandRecolor recolor;
+	private ExecutorService searchPool;
+	private List<Callable<Long>> searches;
+
+	@Setup
+	public void setup() throws IOException {
+		if (pin && !Affinity.isSupported()) {
+			throw new IllegalStateException(Affinity.getUnsupportedReason());
+		}
+		final CpuTopology topology = CpuTopology.read();
+		final BufferedImage originalImage = ImageIO.read(new File(ThreadOptimizationForLatency.SOURCE_FILE));
+		recolor = new PinnedBandRecolor(originalImage, numberOfThreads, topology, pin);
+
+		searchPool = pin ? Executors.newFixedThreadPool(numberOfThreads, new AffinityThreadFactory("search", topology))
+				: Executors.newFixedThreadPool(numberOfThreads);
+		final String text = new String(Files.readAllBytes(Paths.get(BOOK)));
+		searches = new ArrayList<>();
+		for (int i = 0; i < numberOfThreads; i++) {
+			final String word = WORDS[i % WORDS.length];
+			searches.add(() -> ThreadOptimizationForThroughput.countWord(text, word));
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		recolor.close();
+		searchPool.shutdownNow();
+	}
+
+	@Benchmark
+	public PinnedBandRecolor recolor() {
+		recolor.recolor();
+		return recolor;
+	}
+
+	@Benchmark
+	public long search() throws InterruptedException, ExecutionException {
+		long count = 0;
+		for (Future<Long> result : searchPool.invokeAll(searches)) {
+			count += result.get();
+		}
+		return count;
+	}
+}
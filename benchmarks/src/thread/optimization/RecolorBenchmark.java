@@ -0,0 +1,83 @@
+package thread.optimization;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import thread.optimization.image.ImageBuffer;
+import thread.optimization.image.ImageBuffers;
+
+/**
+ * Measures the latency of re-coloring the flowers image of
+ * {@link ThreadOptimizationForLatency}, using a single thread and using
+ * different numbers of threads, so we can see where adding threads stops
+ * paying off on the machine running the benchmark.
+ *
+ * recolorOffHeap does the same with the images out of the heap, in
+ * {@link ImageBuffer}s (direct ByteBuffers, or MemorySegments with
+ * -jvmArgsAppend "--add-modules jdk.incubator.foreign").
+ *
+ * It must be run from the root of the repository (bin/benchmarks.sh does it),
+ * since the image is read from ./resources.
+ *
+ * @author pedrorenzo
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RecolorBenchmark {
+
+	@Param({ "1", "2", "4", "8" })
+	private int numberOfThreads;
+
+	private BufferedImage originalImage;
+	private BufferedImage resultImage;
+	private ImageBuffer originalBuffer;
+	private ImageBuffer resultBuffer;
+
+	@Setup
+	public void setup() throws IOException {
+		originalImage = ImageIO.read(new File(ThreadOptimizationForLatency.SOURCE_FILE));
+		resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		originalBuffer = ImageBuffers.fromImage(originalImage);
+		resultBuffer = ImageBuffers.allocate(originalImage.getWidth(), originalImage.getHeight());
+	}
+
+	@TearDown
+	public void tearDown() {
+		originalBuffer.close();
+		resultBuffer.close();
+	}
+
+	@Benchmark
+	public BufferedImage recolorSingleThreaded() {
+		ThreadOptimizationForLatency.recolorSingleThreaded(originalImage, resultImage);
+		return resultImage;
+	}
+
+	@Benchmark
+	public BufferedImage recolorMultithreaded() {
+		ThreadOptimizationForLatency.recolorMultithreaded(originalImage, resultImage, numberOfThreads);
+		return resultImage;
+	}
+
+	@Benchmark
+	public ImageBuffer recolorOffHeap() {
+		ThreadOptimizationForLatency.recolorMultithreaded(originalBuffer, resultBuffer, numberOfThreads);
+		return resultBuffer;
+	}
+}
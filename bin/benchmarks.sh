@@ -0,0 +1,10 @@
+#!/bin/sh
+# Runs the JMH benchmarks, e.g. bin/benchmarks.sh RecolorBenchmark
+# Build them first with: mvn -B package
+set -e
+ROOT_DIR="$(cd "$(dirname "$0")/.." && pwd)"
+. "$ROOT_DIR/bin/jvm-flags.sh"
+
+# Some benchmarks read files from ./resources, so we run them from the root of the repository.
+cd "$ROOT_DIR"
+exec java -jar benchmarks/target/benchmarks.jar -jvmArgsAppend "$PERF_JVM_FLAGS" "$@"
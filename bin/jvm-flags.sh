@@ -0,0 +1,8 @@
+#!/bin/sh
+# JVM flags shared by every performance run (server, benchmarks and load tests),
+# so the numbers of two runs can be compared with each other:
+# - A fixed heap, already touched at startup, removes heap resizing from the measurements;
+# - The garbage collector is explicit instead of chosen by the JVM ergonomics;
+# - The JIT compilers do not depend on the number of cores of the machine.
+# Any flag can be added through the JAVA_OPTS environment variable.
+PERF_JVM_FLAGS="-Xms2g -Xmx2g -XX:+AlwaysPreTouch -XX:+UseG1GC -XX:CICompilerCount=4 -XX:+PerfDisableSharedMem -Dfile.encoding=UTF-8 ${JAVA_OPTS:-}"
@@ -0,0 +1,10 @@
+#!/bin/sh
+# Replays ./resources/search_words.csv against the search server at a constant rate,
+# e.g. bin/load-test.sh --rate 500 --duration 30 --max-p99 50
+# Build it first with: mvn -B package
+set -e
+ROOT_DIR="$(cd "$(dirname "$0")/.." && pwd)"
+. "$ROOT_DIR/bin/jvm-flags.sh"
+
+cd "$ROOT_DIR"
+exec java $PERF_JVM_FLAGS -jar load-test/target/load-generator.jar "$@"
@@ -0,0 +1,10 @@
+#!/bin/sh
+# Starts the search server of ThreadOptimizationForThroughput on port 8000.
+# Build it first with: mvn -B package
+set -e
+ROOT_DIR="$(cd "$(dirname "$0")/.." && pwd)"
+. "$ROOT_DIR/bin/jvm-flags.sh"
+
+# The server reads the book from ./resources, so we run it from the root of the repository.
+cd "$ROOT_DIR"
+exec java $PERF_JVM_FLAGS -jar server/target/search-server.jar "$@"
@@ -0,0 +1,414 @@
+package thread.loadtest;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+/**
+ * Load generator for the search server of ThreadOptimizationForThroughput. It
+ * replays the words of ./resources/search_words.csv against /search, the same
+ * way the JMeter plan in ./resources does, but without having to install
+ * JMeter.
+ *
+ * The load is open-loop: the requests are sent at a constant arrival rate, no
+ * matter how long the server takes to answer the previous ones. A closed-loop
+ * generator (a thread waits for the response before sending the next request)
+ * sends fewer requests exactly when the server is slow, so the slow moments
+ * are under-represented in the results. This is called Coordinated Omission.
+ * To avoid it, the response time of each request is measured from the moment
+ * it should have been sent, not from the moment it was actually sent. The
+ * latter is also recorded as service time, so we can compare both.
+ *
+ * The failed requests (errors, timeouts and the requests still unanswered at
+ * the end) are also recorded in the response time, at the time they took to
+ * fail, so a server that fails fast or does not answer cannot look fast in the
+ * percentiles. The service time only has the successful responses.
+ *
+ * Latencies are recorded into HDR histograms, which keep all the percentiles
+ * with a fixed precision and a fixed memory, and the HttpClient completes the
+ * requests in virtual threads when running on Java 21 or newer.
+ *
+ * Arguments (all optional): --url, --words, --rate (requests per second),
+ * --duration and --warmup (seconds), --timeout (seconds for each request,
+ * after which it counts as an error), --histogram (file where to write the
+ * percentile distribution), --max-p99 (milliseconds; the process exits with 1
+ * if the 99th percentile of the response time is higher, which is useful for
+ * regression tests) and --max-error-rate (the fraction of the measured
+ * requests that may fail or stay unanswered, 0 by default; above it the
+ * process also exits with 1).
+ *
+ * @author pedrorenzo
+ */
+public class LoadGenerator {
+	private static final String DEFAULT_URL = "http://localhost:8000/search";
+	private static final String DEFAULT_WORDS_FILE = "./resources/search_words.csv";
+
+	private static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toNanos(1);
+	private static final int SIGNIFICANT_DIGITS = 3;
+	private static final long DRAIN_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+	private static final int OK = 200;
+
+	private final Options options;
+	private final List<HttpRequest> requests;
+	private final ExecutorService executor;
+	private final HttpClient client;
+
+	// Recorders allow many threads to record values without locks, while another
+	// thread takes the interval histograms.
+	private final Recorder responseTimeRecorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+	private final Recorder serviceTimeRecorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+	// The warmup is only printed, never added to the report.
+	private final Recorder warmupResponseTimeRecorder = new Recorder(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final AtomicLong inFlight = new AtomicLong();
+
+	public LoadGenerator(final Options options, final List<String> words) {
+		this.options = options;
+		this.requests = new ArrayList<>(words.size());
+		// We create all the requests before starting, so the thread sending them only
+		// needs to wait for the right moment and send.
+		for (String word : words) {
+			final URI uri = URI.create(options.url + "?word=" + URLEncoder.encode(word, StandardCharsets.UTF_8));
+			// Without a timeout, a hung server would keep the requests in flight until
+			// the end of the run.
+			requests.add(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(options.timeoutSeconds)).GET()
+					.build());
+		}
+		this.executor = newExecutor();
+		this.client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(executor)
+				.connectTimeout(Duration.ofSeconds(10)).build();
+	}
+
+	public static void main(String[] args) throws IOException {
+		final Options options = Options.parse(args);
+		final List<String> words = readWords(options.wordsFile);
+
+		final LoadGenerator loadGenerator = new LoadGenerator(options, words);
+		final Report report = loadGenerator.run();
+		report.print(System.out);
+
+		if (options.histogramFile != null) {
+			try (PrintStream histogramOutput = new PrintStream(options.histogramFile)) {
+				report.responseTime.outputPercentileDistribution(histogramOutput, 1_000_000.0);
+			}
+		}
+
+		if (report.errorRate() > options.maxErrorRate) {
+			System.out.printf("FAILED: %.4f of the requests failed or were not answered, more than %.4f%n",
+					report.errorRate(), options.maxErrorRate);
+			System.exit(1);
+		}
+		if (options.maxP99Millis > 0 && report.percentile(99.0) > options.maxP99Millis) {
+			System.out.println("FAILED: p99 is higher than " + options.maxP99Millis + " ms");
+			System.exit(1);
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Sends the requests at a constant rate during the warmup and the measurement,
+	 * printing the results of each second and then waits for the last responses.
+	 *
+	 * @return the report of the measurement (the warmup is discarded).
+	 */
+	public Report run() {
+		final double intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate;
+		final long warmupNanos = TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+		final long durationNanos = TimeUnit.SECONDS.toNanos(options.durationSeconds);
+
+		final long start = System.nanoTime();
+		final long measurementStart = start + warmupNanos;
+		final long end = measurementStart + durationNanos;
+
+		final Histogram responseTime = new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+		final Histogram serviceTime = new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+		Histogram responseInterval = null;
+		Histogram serviceInterval = null;
+		Histogram warmupInterval = null;
+		long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+		long measuredRequests = 0;
+
+		for (long i = 0;; i++) {
+			final long intendedStart = start + (long) (i * intervalNanos);
+			if (intendedStart >= end) {
+				break;
+			}
+
+			if (System.nanoTime() >= nextReport) {
+				// The interval histograms are recycled, so the reports do not allocate.
+				if (nextReport <= measurementStart) {
+					warmupInterval = warmupResponseTimeRecorder.getIntervalHistogram(warmupInterval);
+					printInterval(nextReport - start, true, warmupInterval);
+				} else {
+					responseInterval = responseTimeRecorder.getIntervalHistogram(responseInterval);
+					serviceInterval = serviceTimeRecorder.getIntervalHistogram(serviceInterval);
+					printInterval(nextReport - start, false, responseInterval);
+					responseTime.add(responseInterval);
+					serviceTime.add(serviceInterval);
+				}
+				nextReport += TimeUnit.SECONDS.toNanos(1);
+			}
+
+			long remaining;
+			while ((remaining = intendedStart - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(remaining);
+			}
+
+			final boolean measured = intendedStart >= measurementStart;
+			send(requests.get((int) (i % requests.size())), intendedStart, measured);
+			if (measured) {
+				measuredRequests++;
+			}
+		}
+
+		final long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT;
+		while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+		}
+		final long unanswered = inFlight.get();
+
+		responseTime.add(responseTimeRecorder.getIntervalHistogram(responseInterval));
+		serviceTime.add(serviceTimeRecorder.getIntervalHistogram(serviceInterval));
+		// We do not know when the unanswered requests were sent, but they took at
+		// least their timeout.
+		responseTime.recordValueWithCount(
+				Math.min(TimeUnit.SECONDS.toNanos(options.timeoutSeconds), HIGHEST_TRACKABLE_LATENCY), unanswered);
+		executor.shutdownNow();
+
+		return new Report(responseTime, serviceTime, measuredRequests, errors.sum(), timeouts.sum(), unanswered,
+				options.durationSeconds);
+	}
+
+	/**
+	 * Sends the request without waiting for the response, which is recorded by the
+	 * HttpClient executor when it arrives.
+	 *
+	 * @param request
+	 * @param intendedStart the moment the request should have been sent.
+	 * @param measured      <code>false</code> during the warmup.
+	 */
+	private void send(final HttpRequest request, final long intendedStart, final boolean measured) {
+		inFlight.incrementAndGet();
+		final long actualStart = System.nanoTime();
+		client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+			final long now = System.nanoTime();
+			if (error != null || response.statusCode() != OK) {
+				if (measured) {
+					errors.increment();
+					// A timeout took the whole timeout, a fast error counts with its own time.
+					responseTimeRecorder.recordValue(Math.min(now - intendedStart, HIGHEST_TRACKABLE_LATENCY));
+					// sendAsync wraps the exceptions in a CompletionException.
+					if (error instanceof HttpTimeoutException || error != null
+							&& error.getCause() instanceof HttpTimeoutException) {
+						timeouts.increment();
+					}
+				}
+			} else if (measured) {
+				responseTimeRecorder.recordValue(Math.min(now - intendedStart, HIGHEST_TRACKABLE_LATENCY));
+				serviceTimeRecorder.recordValue(Math.min(now - actualStart, HIGHEST_TRACKABLE_LATENCY));
+			} else {
+				warmupResponseTimeRecorder.recordValue(Math.min(now - intendedStart, HIGHEST_TRACKABLE_LATENCY));
+			}
+			inFlight.decrementAndGet();
+		});
+	}
+
+	private void printInterval(final long elapsedNanos, final boolean warmup, final Histogram interval) {
+		System.out.printf("%s %4ds: %6d responses, p50 %8.2f ms, p99 %8.2f ms, max %8.2f ms, %d in flight%n",
+				warmup ? "warmup " : "measure", TimeUnit.NANOSECONDS.toSeconds(elapsedNanos),
+				interval.getTotalCount(), toMillis(interval.getValueAtPercentile(50.0)),
+				toMillis(interval.getValueAtPercentile(99.0)), toMillis(interval.getMaxValue()), inFlight.get());
+	}
+
+	/**
+	 * Virtual threads only exist since Java 21 and this module is built for Java
+	 * 17, so we look the factory method up. On older JVMs we fall back to a cached
+	 * thread pool, which is what the HttpClient uses by default.
+	 *
+	 * @return the executor that completes the requests.
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			final Method newVirtualThreadPerTaskExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(runnable -> {
+				final Thread thread = new Thread(runnable, "load-generator");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	private static List<String> readWords(final String wordsFile) throws IOException {
+		final List<String> words = new ArrayList<>();
+		for (String line : Files.readAllLines(Paths.get(wordsFile))) {
+			if (!line.isBlank()) {
+				words.add(line.trim());
+			}
+		}
+		if (words.isEmpty()) {
+			throw new FileNotFoundException("No words to search in " + wordsFile);
+		}
+		return words;
+	}
+
+	private static double toMillis(final long nanos) {
+		return nanos / 1_000_000.0;
+	}
+
+	/**
+	 * Results of the measurement.
+	 */
+	public static class Report {
+		private final Histogram responseTime;
+		private final Histogram serviceTime;
+		private final long requests;
+		private final long errors;
+		private final long timeouts;
+		private final long unanswered;
+		private final long durationSeconds;
+
+		/**
+		 * @param responseTime    of all the measured requests, including the failed
+		 *                        and the unanswered ones.
+		 * @param serviceTime     of the successful responses.
+		 * @param requests        sent during the measurement.
+		 * @param errors          including the timeouts.
+		 * @param timeouts
+		 * @param unanswered
+		 * @param durationSeconds
+		 */
+		public Report(final Histogram responseTime, final Histogram serviceTime, final long requests,
+				final long errors, final long timeouts, final long unanswered, final long durationSeconds) {
+			this.responseTime = responseTime;
+			this.serviceTime = serviceTime;
+			this.requests = requests;
+			this.errors = errors;
+			this.timeouts = timeouts;
+			this.unanswered = unanswered;
+			this.durationSeconds = durationSeconds;
+		}
+
+		/**
+		 * @param percentile
+		 * @return the response time in milliseconds at the given percentile.
+		 */
+		public double percentile(final double percentile) {
+			return toMillis(responseTime.getValueAtPercentile(percentile));
+		}
+
+		/**
+		 * @return the successful responses per second.
+		 */
+		public double throughput() {
+			return (double) serviceTime.getTotalCount() / durationSeconds;
+		}
+
+		/**
+		 * @return the fraction of the requests that failed or were not answered.
+		 */
+		public double errorRate() {
+			return requests == 0 ? 0 : (double) (errors + unanswered) / requests;
+		}
+
+		public void print(final PrintStream out) {
+			out.println();
+			out.printf("Throughput: %.1f requests/s (%d responses, %d errors of which %d timeouts, %d unanswered)%n",
+					throughput(), serviceTime.getTotalCount(), errors, timeouts, unanswered);
+			out.println("Percentile    response time (ms)    service time (ms)");
+			for (double percentile : new double[] { 50.0, 90.0, 99.0, 99.9, 99.99, 100.0 }) {
+				out.printf("%10s %21.3f %20.3f%n", percentile, percentile(percentile),
+						toMillis(serviceTime.getValueAtPercentile(percentile)));
+			}
+		}
+	}
+
+	/**
+	 * Command line arguments.
+	 */
+	public static class Options {
+		private String url = DEFAULT_URL;
+		private String wordsFile = DEFAULT_WORDS_FILE;
+		private double rate = 500;
+		private long durationSeconds = 30;
+		private long warmupSeconds = 10;
+		private long timeoutSeconds = 10;
+		private String histogramFile;
+		private double maxP99Millis;
+		private double maxErrorRate;
+
+		public static Options parse(final String[] args) {
+			final Options options = new Options();
+			for (int i = 0; i < args.length; i += 2) {
+				if (i + 1 == args.length) {
+					throw new IllegalArgumentException("Missing the value of " + args[i]);
+				}
+				final String value = args[i + 1];
+				switch (args[i]) {
+				case "--url":
+					options.url = value;
+					break;
+				case "--words":
+					options.wordsFile = value;
+					break;
+				case "--rate":
+					options.rate = Double.parseDouble(value);
+					break;
+				case "--duration":
+					options.durationSeconds = Long.parseLong(value);
+					break;
+				case "--warmup":
+					options.warmupSeconds = Long.parseLong(value);
+					break;
+				case "--timeout":
+					options.timeoutSeconds = Long.parseLong(value);
+					break;
+				case "--histogram":
+					options.histogramFile = value;
+					break;
+				case "--max-p99":
+					options.maxP99Millis = Double.parseDouble(value);
+					break;
+				case "--max-error-rate":
+					options.maxErrorRate = Double.parseDouble(value);
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown argument " + args[i]);
+				}
+			}
+			if (options.rate <= 0 || options.durationSeconds <= 0 || options.warmupSeconds < 0
+					|| options.timeoutSeconds <= 0) {
+				throw new IllegalArgumentException("The rate, the duration and the timeout must be positive");
+			}
+			if (options.maxErrorRate < 0 || options.maxErrorRate > 1) {
+				throw new IllegalArgumentException("The max error rate must be between 0 and 1: "
+						+ options.maxErrorRate);
+			}
+			return options;
+		}
+	}
+}
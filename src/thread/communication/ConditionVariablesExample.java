@@ -22,6 +22,13 @@ import java.util.concurrent.locks.ReentrantLock;
  * Condition variables are good because we don't need to do as in Semaphores and
  * we can wake up all threads by calling the signalAll() method.
  * 
+ * To hand many items between threads, sleeping and being woken up at every
+ * item costs a context switch per handoff. The MpmcBoundedQueue of
+ * thread.communication.queue hands them without locks and lets us choose how
+ * the threads wait (spinning, yielding, parking or on a Condition as here).
+ * LoginPipelineExample of thread.communication.pipeline processes login events
+ * in stages through a pre-allocated ring buffer.
+ * 
  * @author pedrorenzo
  */
 public class ConditionVariablesExample {
@@ -2,6 +2,9 @@ package thread.communication;
 
 import java.util.concurrent.Semaphore;
 
+import thread.lockfree.ratelimit.RateLimiter;
+import thread.lockfree.ratelimit.TokenBucketRateLimiter;
+
 /**
  * Semaphore can be used to restrict the number of users for a particular
  * resource. Unlike the lock that allows only one user per resource, Semaphore
@@ -19,12 +22,24 @@ import java.util.concurrent.Semaphore;
  * In this example we simulate a login where only 2 users can be logged in at
  * that moment.
  * 
+ * With many logins per second, all the threads fight for the single counter of
+ * the semaphore. The SessionLimiter of thread.communication.session keeps a
+ * global counter too, but adds a quota per tenant (each tenant has its own
+ * counter), lets the callers wait for a slot without blocking a thread and
+ * detects the sessions that were never logged out.
+ * 
+ * The semaphore limits how many users are logged in at the same time, not how
+ * many logins happen per second. The queue below can also take a RateLimiter
+ * (thread.lockfree.ratelimit), checked before the semaphore: in this example,
+ * at most 4 logins per second.
+ * 
  * @author pedro
  */
 public class SemaphoreExample {
 
 	public static void main(String[] args) {
-		LoginQueueUsingSemaphore loginQueueUsingSemaphore = new LoginQueueUsingSemaphore(2);
+		LoginQueueUsingSemaphore loginQueueUsingSemaphore = new LoginQueueUsingSemaphore(2,
+				new TokenBucketRateLimiter(4));
 		System.out.println("Could user 1 login: " + loginQueueUsingSemaphore.tryLogin());
 		System.out.println("Could user 2 login: " + loginQueueUsingSemaphore.tryLogin());
 		System.out.println("Available slots: " + loginQueueUsingSemaphore.availableSlots());
@@ -35,17 +50,33 @@ public class SemaphoreExample {
 		
 		System.out.println("Available slots: " + loginQueueUsingSemaphore.availableSlots());
 		System.out.println("Could user 3 login: " + loginQueueUsingSemaphore.tryLogin());
+
+		System.out.println("User 1 did a logout and tries again.");
+		loginQueueUsingSemaphore.logout();
+		System.out.println("Available slots: " + loginQueueUsingSemaphore.availableSlots());
+		System.out.println("Could user 1 login (5th login in this second): " + loginQueueUsingSemaphore.tryLogin());
 	}
 
 	private static class LoginQueueUsingSemaphore {
 		private Semaphore semaphore;
+		private RateLimiter rateLimiter;
 
 		public LoginQueueUsingSemaphore(final int slotLimit) {
+			this(slotLimit, permits -> true);
+		}
+
+		public LoginQueueUsingSemaphore(final int slotLimit, final RateLimiter rateLimiter) {
 			semaphore = new Semaphore(slotLimit);
+			this.rateLimiter = rateLimiter;
 		}
 
+		/**
+		 * A login rejected by the rate limiter does not even try the semaphore. A
+		 * login that passes the rate limiter but finds no slot still counts for the
+		 * rate, as an attempt.
+		 */
 		boolean tryLogin() {
-			return semaphore.tryAcquire();
+			return rateLimiter.tryAcquire() && semaphore.tryAcquire();
 		}
 
 		void logout() {
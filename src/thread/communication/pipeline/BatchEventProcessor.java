@@ -0,0 +1,91 @@
+package thread.communication.pipeline;
+
+/**
+ * Runs a stage of the pipeline in its own thread: it waits for events through
+ * its {@link SequenceBarrier}, gives them to its {@link EventHandler} and then
+ * moves its {@link Sequence}, which lets the next stages (and the producer)
+ * continue.
+ *
+ * When a stage falls behind, it finds many events available at once and
+ * processes all of them before moving its sequence only once: the more behind
+ * it is, the less it pays per event, so it catches up instead of falling
+ * further behind.
+ *
+ * An exception thrown by the handler is printed and the event is skipped, so a
+ * bad event does not stop the whole pipeline.
+ *
+ * @author pedrorenzo
+ */
+public class BatchEventProcessor<E> implements Runnable {
+	private final Sequence sequence = new Sequence();
+	private final RingBuffer<E> ringBuffer;
+	private final SequenceBarrier barrier;
+	private final EventHandler<E> handler;
+	// Only written by the thread of the processor.
+	private volatile long batches;
+	private volatile long failures;
+
+	public BatchEventProcessor(final RingBuffer<E> ringBuffer, final SequenceBarrier barrier,
+			final EventHandler<E> handler) {
+		this.ringBuffer = ringBuffer;
+		this.barrier = barrier;
+		this.handler = handler;
+	}
+
+	@Override
+	public void run() {
+		long next = sequence.get() + 1;
+		while (true) {
+			final long available;
+			try {
+				available = barrier.waitFor(next);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+
+			if (available >= next) {
+				for (long current = next; current <= available; current++) {
+					try {
+						handler.onEvent(ringBuffer.get(current), current, current == available);
+					} catch (RuntimeException e) {
+						failures++;
+						e.printStackTrace();
+					}
+				}
+				sequence.set(available);
+				ringBuffer.signalAll();
+				batches++;
+				next = available + 1;
+			} else if (barrier.isAlerted()) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Stops the processor once it has processed the events available to it.
+	 */
+	public void halt() {
+		barrier.alert();
+	}
+
+	/**
+	 * @return how far the stage processed, the dependency of the next stages.
+	 */
+	public Sequence getSequence() {
+		return sequence;
+	}
+
+	/**
+	 * @return how many batches the stage processed. The processed events
+	 *         divided by this is the average batch size.
+	 */
+	public long getBatches() {
+		return batches;
+	}
+
+	public long getFailures() {
+		return failures;
+	}
+}
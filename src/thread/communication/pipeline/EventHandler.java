@@ -0,0 +1,19 @@
+package thread.communication.pipeline;
+
+/**
+ * The work of a stage of the pipeline, called by its
+ * {@link BatchEventProcessor} for each event, in order.
+ *
+ * @author pedrorenzo
+ */
+public interface EventHandler<E> {
+
+	/**
+	 * @param event      the event, which may be changed for the next stages. It
+	 *                   is reused later, so it must not be kept.
+	 * @param sequence   the sequence of the event.
+	 * @param endOfBatch <code>true</code> for the last event available for now, a
+	 *                   good moment to flush what the handler has accumulated.
+	 */
+	void onEvent(E event, long sequence, boolean endOfBatch);
+}
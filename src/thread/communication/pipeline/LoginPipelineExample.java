@@ -0,0 +1,194 @@
+package thread.communication.pipeline;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import thread.communication.queue.BlockingWaitStrategy;
+import thread.communication.queue.ParkWaitStrategy;
+import thread.communication.queue.SpinWaitStrategy;
+import thread.communication.queue.WaitStrategy;
+import thread.communication.queue.YieldWaitStrategy;
+
+/**
+ * The login of ConditionVariablesExample at high volume: instead of one
+ * LoginUI handing one login to one LoginLogic through a lock and a condition,
+ * a producer publishes millions of login events into a {@link RingBuffer} and
+ * 3 stages process them, each in its own thread:
+ *
+ * validate -> authenticate -> audit
+ *
+ * Each stage only sees an event after the previous one has processed it, and
+ * the producer only reuses an event after the audit. The events are created
+ * once, with the ring buffer, and the producer fills them with usernames and
+ * passwords created before the test, so no object is allocated per event.
+ *
+ * At the end we check that every event reached the audit with the expected
+ * result and print the events per second and the average batch size of each
+ * stage. The wait strategy can be chosen in the first argument (spin, yield,
+ * park or blocking); yield is the default, since spinning only pays off with a
+ * core per thread.
+ *
+ * @author pedrorenzo
+ */
+public class LoginPipelineExample {
+	private static final int BUFFER_SIZE = 1024;
+	private static final int NUMBER_OF_EVENTS = 10_000_000;
+	private static final int NUMBER_OF_USERS = 1000;
+
+	public static void main(String[] args) throws InterruptedException {
+		final WaitStrategy waitStrategy = waitStrategyOf(args.length > 0 ? args[0] : "yield");
+
+		// Every 10th user types an empty password and every 7th the wrong one.
+		final String[] usernames = new String[NUMBER_OF_USERS];
+		final String[] typedPasswords = new String[NUMBER_OF_USERS];
+		final Map<String, Integer> passwordHashes = new HashMap<>();
+		long expectedInvalid = 0;
+		long expectedRejected = 0;
+		for (int i = 0; i < NUMBER_OF_USERS; i++) {
+			usernames[i] = "user" + i;
+			final String password = "password" + i;
+			passwordHashes.put(usernames[i], password.hashCode());
+			typedPasswords[i] = i % 10 == 0 ? "" : i % 7 == 0 ? "wrong" + i : password;
+		}
+		for (int i = 0; i < NUMBER_OF_EVENTS; i++) {
+			final int user = i % NUMBER_OF_USERS;
+			if (user % 10 == 0) {
+				expectedInvalid++;
+			} else if (user % 7 == 0) {
+				expectedRejected++;
+			}
+		}
+
+		final RingBuffer<LoginEvent> ringBuffer = new RingBuffer<>(BUFFER_SIZE, LoginEvent::new, waitStrategy);
+		final BatchEventProcessor<LoginEvent> validate = new BatchEventProcessor<>(ringBuffer,
+				ringBuffer.newBarrier(), new ValidateHandler());
+		final BatchEventProcessor<LoginEvent> authenticate = new BatchEventProcessor<>(ringBuffer,
+				ringBuffer.newBarrier(validate.getSequence()), new AuthenticateHandler(passwordHashes));
+		final AuditHandler audit = new AuditHandler();
+		final BatchEventProcessor<LoginEvent> auditor = new BatchEventProcessor<>(ringBuffer,
+				ringBuffer.newBarrier(authenticate.getSequence()), audit);
+		ringBuffer.addGatingSequences(auditor.getSequence());
+
+		final Thread[] stages = { new Thread(validate, "validate"), new Thread(authenticate, "authenticate"),
+				new Thread(auditor, "audit") };
+		for (Thread stage : stages) {
+			stage.start();
+		}
+
+		final long startTime = System.nanoTime();
+		for (int i = 0; i < NUMBER_OF_EVENTS; i++) {
+			final long sequence = ringBuffer.next();
+			ringBuffer.get(sequence).set(usernames[i % NUMBER_OF_USERS], typedPasswords[i % NUMBER_OF_USERS]);
+			ringBuffer.publish(sequence);
+		}
+		// The audit processes the events in order, so the last one is the last to
+		// reach it.
+		final long lastSequence = ringBuffer.getCursor();
+		while (auditor.getSequence().get() < lastSequence) {
+			Thread.sleep(1);
+		}
+		final long duration = Math.max(1, System.nanoTime() - startTime);
+
+		validate.halt();
+		authenticate.halt();
+		auditor.halt();
+		for (Thread stage : stages) {
+			stage.join();
+		}
+
+		final boolean correct = audit.accepted + audit.rejected + audit.invalid == NUMBER_OF_EVENTS
+				&& audit.invalid == expectedInvalid && audit.rejected == expectedRejected;
+		System.out.println(String.format("%,d events/s: %d accepted, %d rejected, %d invalid, %s",
+				NUMBER_OF_EVENTS * 1_000_000_000L / duration, audit.accepted, audit.rejected, audit.invalid,
+				correct ? "OK" : "WRONG"));
+		System.out.println(String.format("Average batch: validate %.1f, authenticate %.1f, audit %.1f events",
+				(double) NUMBER_OF_EVENTS / validate.getBatches(),
+				(double) NUMBER_OF_EVENTS / authenticate.getBatches(),
+				(double) NUMBER_OF_EVENTS / auditor.getBatches()));
+	}
+
+	private static WaitStrategy waitStrategyOf(final String name) {
+		switch (name) {
+		case "spin":
+			return new SpinWaitStrategy();
+		case "yield":
+			return new YieldWaitStrategy();
+		case "park":
+			return new ParkWaitStrategy();
+		case "blocking":
+			return new BlockingWaitStrategy();
+		default:
+			throw new IllegalArgumentException("Unknown wait strategy " + name);
+		}
+	}
+
+	/**
+	 * A login attempt and what the stages found about it. The fields are plain:
+	 * the sequences published by the producer and the stages make them visible
+	 * to the next stage.
+	 */
+	public static class LoginEvent {
+		private String username;
+		private String password;
+		private boolean valid;
+		private boolean authenticated;
+
+		private void set(final String username, final String password) {
+			this.username = username;
+			this.password = password;
+			this.valid = false;
+			this.authenticated = false;
+		}
+	}
+
+	/**
+	 * Checks that username and password are filled in, as the LoginLogic of
+	 * ConditionVariablesExample waits for.
+	 */
+	private static class ValidateHandler implements EventHandler<LoginEvent> {
+
+		@Override
+		public void onEvent(final LoginEvent event, final long sequence, final boolean endOfBatch) {
+			event.valid = event.username != null && !event.username.isEmpty() && event.password != null
+					&& !event.password.isEmpty();
+		}
+	}
+
+	private static class AuthenticateHandler implements EventHandler<LoginEvent> {
+		private final Map<String, Integer> passwordHashes;
+
+		private AuthenticateHandler(final Map<String, Integer> passwordHashes) {
+			this.passwordHashes = passwordHashes;
+		}
+
+		@Override
+		public void onEvent(final LoginEvent event, final long sequence, final boolean endOfBatch) {
+			if (event.valid) {
+				final Integer hash = passwordHashes.get(event.username);
+				event.authenticated = hash != null && hash == event.password.hashCode();
+			}
+		}
+	}
+
+	/**
+	 * Counts the results. A real audit would write them to a log, once per batch
+	 * (when endOfBatch is true) instead of once per event.
+	 */
+	private static class AuditHandler implements EventHandler<LoginEvent> {
+		// Only used by the audit thread and read after it finishes.
+		private long accepted;
+		private long rejected;
+		private long invalid;
+
+		@Override
+		public void onEvent(final LoginEvent event, final long sequence, final boolean endOfBatch) {
+			if (!event.valid) {
+				invalid++;
+			} else if (event.authenticated) {
+				accepted++;
+			} else {
+				rejected++;
+			}
+		}
+	}
+}
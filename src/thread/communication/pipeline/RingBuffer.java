@@ -0,0 +1,136 @@
+package thread.communication.pipeline;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+import thread.communication.queue.WaitStrategy;
+
+/**
+ * The ring buffer of the LMAX Disruptor: all the events are created when the
+ * buffer is created and reused forever, so handing an event from stage to
+ * stage allocates nothing, and the events stay next to each other in memory.
+ *
+ * There is no lock and no queue between the stages: the producer claims a
+ * sequence (next), fills the event in that slot and publishes it (publish),
+ * which moves the cursor. Each stage follows the cursor, or the stages it
+ * depends on, through a {@link SequenceBarrier} and records how far it got in
+ * its own {@link Sequence}. The producer never passes the slowest of the last
+ * stages (the gating sequences) by a whole lap, so an event is only reused
+ * once every stage is done with it.
+ *
+ * This buffer has a single producer: next() and publish() must always be
+ * called by the same thread, which is what lets us claim sequences without a
+ * CAS.
+ *
+ * @author pedrorenzo
+ */
+public class RingBuffer<E> {
+	private final Object[] events;
+	private final int mask;
+	private final WaitStrategy waitStrategy;
+	private final Sequence cursor = new Sequence();
+	private volatile Sequence[] gatingSequences = new Sequence[0];
+
+	// Only used by the producer thread.
+	private long nextSequence = 0;
+	private long cachedGatingSequence = Sequence.INITIAL_VALUE;
+
+	/**
+	 * @param size         number of events, rounded up to a power of two.
+	 * @param eventFactory creates the events, only here.
+	 * @param waitStrategy how the producer and the stages wait for each other.
+	 */
+	public RingBuffer(final int size, final Supplier<E> eventFactory, final WaitStrategy waitStrategy) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("The size must be positive: " + size);
+		}
+		final int capacity = Math.max(2, Integer.highestOneBit(size - 1) << 1);
+		this.events = new Object[capacity];
+		for (int i = 0; i < capacity; i++) {
+			events[i] = eventFactory.get();
+		}
+		this.mask = capacity - 1;
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * The producer will not overwrite events that these sequences did not
+	 * process yet. They are usually the sequences of the last stages.
+	 *
+	 * @param sequences
+	 */
+	public synchronized void addGatingSequences(final Sequence... sequences) {
+		final Sequence[] current = gatingSequences;
+		final Sequence[] updated = Arrays.copyOf(current, current.length + sequences.length);
+		System.arraycopy(sequences, 0, updated, current.length, sequences.length);
+		gatingSequences = updated;
+	}
+
+	/**
+	 * @param dependencies the sequences of the stages that must process an event
+	 *                     before the new stage, none for the first stages.
+	 * @return a barrier for a new stage.
+	 */
+	public SequenceBarrier newBarrier(final Sequence... dependencies) {
+		return new SequenceBarrier(cursor, dependencies, waitStrategy);
+	}
+
+	/**
+	 * Claims the next sequence, waiting if the slot still has an event that the
+	 * last stages did not process.
+	 *
+	 * @return the sequence to fill with get() and then publish.
+	 * @throws InterruptedException
+	 */
+	public long next() throws InterruptedException {
+		final long sequence = nextSequence;
+		final long wrapPoint = sequence - events.length;
+		// The gating sequences are only read when we are about to catch up with the
+		// last value we read, not at every event.
+		if (wrapPoint > cachedGatingSequence) {
+			waitStrategy.await(() -> (cachedGatingSequence = Sequence.minimumOf(gatingSequences,
+					cursor.get())) >= wrapPoint, Long.MAX_VALUE);
+		}
+		nextSequence++;
+		return sequence;
+	}
+
+	/**
+	 * @param sequence
+	 * @return the event in the slot of the sequence.
+	 */
+	@SuppressWarnings("unchecked")
+	public E get(final long sequence) {
+		return (E) events[(int) sequence & mask];
+	}
+
+	/**
+	 * Makes the event of the sequence (and the previous ones) visible to the
+	 * stages.
+	 *
+	 * @param sequence returned by next().
+	 */
+	public void publish(final long sequence) {
+		cursor.set(sequence);
+		waitStrategy.signalAll();
+	}
+
+	/**
+	 * @return the last published sequence.
+	 */
+	public long getCursor() {
+		return cursor.get();
+	}
+
+	public int getBufferSize() {
+		return events.length;
+	}
+
+	/**
+	 * Called by the stages when they move their sequences, which may be what
+	 * the producer or another stage is waiting for.
+	 */
+	void signalAll() {
+		waitStrategy.signalAll();
+	}
+}
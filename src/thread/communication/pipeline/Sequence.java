@@ -0,0 +1,51 @@
+package thread.communication.pipeline;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A position in the {@link RingBuffer}: how far the producer published or how
+ * far a stage processed. Each sequence is written by a single thread and read
+ * by many, all the time, so it is kept 128 bytes away from anything else to
+ * avoid False Sharing (see StripedCounter).
+ *
+ * @author pedrorenzo
+ */
+public class Sequence {
+	// 16 longs = 128 bytes on each side of the value.
+	private static final int PADDING = 16;
+	static final long INITIAL_VALUE = -1;
+
+	private final AtomicLongArray value = new AtomicLongArray(2 * PADDING + 1);
+
+	public Sequence() {
+		set(INITIAL_VALUE);
+	}
+
+	public long get() {
+		return value.get(PADDING);
+	}
+
+	/**
+	 * Makes everything written before (e.g. the fields of the events up to this
+	 * sequence) visible to the threads that read the new value.
+	 */
+	public void set(final long sequence) {
+		value.set(PADDING, sequence);
+	}
+
+	/**
+	 * @return the lowest of the sequences, or the default if there is none.
+	 */
+	static long minimumOf(final Sequence[] sequences, final long defaultValue) {
+		long minimum = defaultValue;
+		for (Sequence sequence : sequences) {
+			minimum = Math.min(minimum, sequence.get());
+		}
+		return minimum;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+}
@@ -0,0 +1,57 @@
+package thread.communication.pipeline;
+
+import thread.communication.queue.WaitStrategy;
+
+/**
+ * What a stage waits for: the events published by the producer (the cursor)
+ * and, for the dependent stages, the events already processed by the stages it
+ * depends on. The authenticate stage, for instance, only sees an event after
+ * the validate stage has processed it.
+ *
+ * @author pedrorenzo
+ */
+public class SequenceBarrier {
+	private final Sequence cursor;
+	private final Sequence[] dependencies;
+	private final WaitStrategy waitStrategy;
+	private volatile boolean alerted;
+
+	SequenceBarrier(final Sequence cursor, final Sequence[] dependencies, final WaitStrategy waitStrategy) {
+		this.cursor = cursor;
+		this.dependencies = dependencies.clone();
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Waits until the sequence is available to the stage.
+	 *
+	 * @param sequence
+	 * @return the highest available sequence, which may be higher than the one we
+	 *         asked for (the stage can process all of them in a batch), or lower
+	 *         if the barrier was alerted.
+	 * @throws InterruptedException
+	 */
+	public long waitFor(final long sequence) throws InterruptedException {
+		if (available() < sequence) {
+			waitStrategy.await(() -> alerted || available() >= sequence, Long.MAX_VALUE);
+		}
+		return available();
+	}
+
+	/**
+	 * Wakes the stage up, to stop it.
+	 */
+	public void alert() {
+		alerted = true;
+		waitStrategy.signalAll();
+	}
+
+	public boolean isAlerted() {
+		return alerted;
+	}
+
+	private long available() {
+		// The dependencies never pass the cursor, but the first stages have none.
+		return Sequence.minimumOf(dependencies, cursor.get());
+	}
+}
@@ -0,0 +1,67 @@
+package thread.communication.queue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins for a short while and then sleeps on a Condition, as the LoginLogic of
+ * ConditionVariablesExample, until signalAll() wakes it up. It uses no CPU
+ * while waiting, but each wake up is a context switch.
+ *
+ * The lock is only used to sleep and to signal, never to access the queue. To
+ * keep signalAll() cheap when nobody sleeps, which is the common case, the
+ * sleeping threads are counted and signalAll() only takes the lock if there is
+ * one. A thread counts itself before its last check of the condition, and the
+ * other side changes the queue before reading the count, so at least one of
+ * them sees the other: either the sleeper sees the change or the signaler sees
+ * the sleeper.
+ *
+ * @author pedrorenzo
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+	private static final int SPINS = 100;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition changed = lock.newCondition();
+	private final AtomicInteger waiters = new AtomicInteger();
+
+	@Override
+	public boolean await(final BooleanSupplier condition, final long timeoutNanos) throws InterruptedException {
+		for (int i = 0; i < SPINS; i++) {
+			if (condition.getAsBoolean()) {
+				return true;
+			}
+			Thread.onSpinWait();
+		}
+
+		long remaining = timeoutNanos;
+		lock.lockInterruptibly();
+		waiters.incrementAndGet();
+		try {
+			while (!condition.getAsBoolean()) {
+				if (remaining <= 0) {
+					return false;
+				}
+				remaining = changed.awaitNanos(remaining);
+			}
+			return true;
+		} finally {
+			waiters.decrementAndGet();
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void signalAll() {
+		if (waiters.get() > 0) {
+			lock.lock();
+			try {
+				changed.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
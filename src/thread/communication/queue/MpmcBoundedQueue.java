@@ -0,0 +1,223 @@
+package thread.communication.queue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded queue for many producers and many consumers without locks, to hand
+ * data from thread to thread without the context switch of a lock with a
+ * Condition (ConditionVariablesExample) or of wait/notify
+ * (ObjectsAsConditionVariablesExample) at every handoff.
+ *
+ * This is the queue of Dmitry Vyukov. The elements are in a ring buffer and
+ * each slot has a sequence number that says whose turn it is:
+ *
+ * - sequence == position: the slot is free for the producer that claims this
+ * position.
+ * - sequence == position + 1: the slot has the element of this position, for
+ * the consumer that claims it.
+ *
+ * A producer claims a position with a CAS on the enqueue position, writes the
+ * element and then the sequence (position + 1), which publishes the element. A
+ * consumer claims a position with a CAS on the dequeue position, reads the
+ * element and sets the sequence to position + capacity, the position the slot
+ * will have in the next lap. Producers and consumers only meet in the slots,
+ * and each slot has one owner at a time.
+ *
+ * The enqueue and dequeue positions are updated all the time by different
+ * threads, so they are 128 bytes apart to avoid False Sharing (see
+ * StripedCounter).
+ *
+ * offer() and poll() never wait. put(), take() and the versions with timeout
+ * wait for space or an element with the {@link WaitStrategy} of the queue.
+ *
+ * @author pedrorenzo
+ */
+public class MpmcBoundedQueue<E> {
+	// 16 longs = 128 bytes.
+	private static final int PADDING = 16;
+	private static final int ENQUEUE = PADDING;
+	private static final int DEQUEUE = 2 * PADDING;
+
+	private final Object[] elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLongArray positions = new AtomicLongArray(3 * PADDING);
+	private final int mask;
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * @param capacity     rounded up to a power of two.
+	 * @param waitStrategy used by the methods that wait.
+	 */
+	public MpmcBoundedQueue(final int capacity, final WaitStrategy waitStrategy) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("The capacity must be positive: " + capacity);
+		}
+		final int size = Math.max(2, Integer.highestOneBit(capacity - 1) << 1);
+		this.mask = size - 1;
+		this.elements = new Object[size];
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * Adds the element if there is space, without waiting.
+	 *
+	 * @param element
+	 * @return <code>false</code> if the queue is full.
+	 */
+	public boolean offer(final E element) {
+		if (element == null) {
+			throw new IllegalArgumentException("The queue does not accept null elements");
+		}
+		long position = positions.get(ENQUEUE);
+		while (true) {
+			final int index = (int) position & mask;
+			final long difference = sequences.get(index) - position;
+			if (difference == 0) {
+				if (positions.compareAndSet(ENQUEUE, position, position + 1)) {
+					elements[index] = element;
+					sequences.set(index, position + 1);
+					waitStrategy.signalAll();
+					return true;
+				}
+				position = positions.get(ENQUEUE);
+			} else if (difference < 0) {
+				// The consumer of the previous lap did not take its element yet.
+				return false;
+			} else {
+				// Another producer claimed this position.
+				position = positions.get(ENQUEUE);
+			}
+		}
+	}
+
+	/**
+	 * Removes the first element, without waiting.
+	 *
+	 * @return the element or null if the queue is empty.
+	 */
+	@SuppressWarnings("unchecked")
+	public E poll() {
+		long position = positions.get(DEQUEUE);
+		while (true) {
+			final int index = (int) position & mask;
+			final long difference = sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (positions.compareAndSet(DEQUEUE, position, position + 1)) {
+					final E element = (E) elements[index];
+					elements[index] = null;
+					sequences.set(index, position + mask + 1);
+					waitStrategy.signalAll();
+					return element;
+				}
+				position = positions.get(DEQUEUE);
+			} else if (difference < 0) {
+				// The producer of this position did not publish its element yet.
+				return null;
+			} else {
+				// Another consumer claimed this position.
+				position = positions.get(DEQUEUE);
+			}
+		}
+	}
+
+	/**
+	 * Adds the element, waiting for space as long as needed.
+	 *
+	 * @param element
+	 * @throws InterruptedException
+	 */
+	public void put(final E element) throws InterruptedException {
+		while (!offer(element)) {
+			waitStrategy.await(this::hasSpace, Long.MAX_VALUE);
+		}
+	}
+
+	/**
+	 * Adds the element, waiting for space up to the timeout.
+	 *
+	 * @return <code>false</code> if the timeout expired.
+	 * @throws InterruptedException
+	 */
+	public boolean offer(final E element, final long timeout, final TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		while (!offer(element)) {
+			// Another producer may take the space we were waiting for, so we wait again
+			// for the rest of the time.
+			if (!waitStrategy.await(this::hasSpace, deadline - System.nanoTime())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Removes the first element, waiting for one as long as needed.
+	 *
+	 * @throws InterruptedException
+	 */
+	public E take() throws InterruptedException {
+		E element;
+		while ((element = poll()) == null) {
+			waitStrategy.await(this::hasElement, Long.MAX_VALUE);
+		}
+		return element;
+	}
+
+	/**
+	 * Removes the first element, waiting for one up to the timeout.
+	 *
+	 * @return the element or null if the timeout expired.
+	 * @throws InterruptedException
+	 */
+	public E poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		E element;
+		while ((element = poll()) == null) {
+			if (!waitStrategy.await(this::hasElement, deadline - System.nanoTime())) {
+				return null;
+			}
+		}
+		return element;
+	}
+
+	/**
+	 * @return how many elements there are, only exact if no thread is using the
+	 *         queue.
+	 */
+	public int size() {
+		while (true) {
+			final long dequeue = positions.get(DEQUEUE);
+			final long enqueue = positions.get(ENQUEUE);
+			// The dequeue position did not move while we read the enqueue one.
+			if (dequeue == positions.get(DEQUEUE)) {
+				return (int) Math.max(0, Math.min(enqueue - dequeue, capacity()));
+			}
+		}
+	}
+
+	public int capacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * The next producer would find its slot free. A position claimed in the
+	 * meantime also makes it true, so the producer tries again.
+	 */
+	private boolean hasSpace() {
+		final long position = positions.get(ENQUEUE);
+		return sequences.get((int) position & mask) - position >= 0;
+	}
+
+	/**
+	 * The next consumer would find its element published.
+	 */
+	private boolean hasElement() {
+		final long position = positions.get(DEQUEUE);
+		return sequences.get((int) position & mask) - (position + 1) >= 0;
+	}
+}
@@ -0,0 +1,55 @@
+package thread.communication.queue;
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins for a short while and then checks the condition every few
+ * microseconds, sleeping in between (LockSupport.parkNanos). Nobody needs to
+ * wake the thread up, so the other side never pays for a signal, but a thread
+ * may notice the change up to the park time later (usually more, since the OS
+ * timers are not that precise).
+ *
+ * @author pedrorenzo
+ */
+public class ParkWaitStrategy implements WaitStrategy {
+	private static final int SPINS = 100;
+
+	private final long parkNanos;
+
+	public ParkWaitStrategy() {
+		this(10_000);
+	}
+
+	/**
+	 * @param parkNanos how long to sleep between two checks.
+	 */
+	public ParkWaitStrategy(final long parkNanos) {
+		if (parkNanos <= 0) {
+			throw new IllegalArgumentException("The park time must be positive: " + parkNanos);
+		}
+		this.parkNanos = parkNanos;
+	}
+
+	@Override
+	public boolean await(final BooleanSupplier condition, final long timeoutNanos) throws InterruptedException {
+		final long deadline = System.nanoTime() + timeoutNanos;
+		int spins = 0;
+		while (!condition.getAsBoolean()) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			final long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			if (spins < SPINS) {
+				spins++;
+				Thread.onSpinWait();
+			} else {
+				LockSupport.parkNanos(Math.min(parkNanos, remaining));
+			}
+		}
+		return true;
+	}
+}
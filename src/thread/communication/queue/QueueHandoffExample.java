@@ -0,0 +1,97 @@
+package thread.communication.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The login of ConditionVariablesExample with many users: 4 UI threads hand
+ * login requests (here just numbers) to 4 login logic threads through a
+ * {@link MpmcBoundedQueue}, once with each {@link WaitStrategy}.
+ *
+ * At the end of each run we check that every request was handled exactly once
+ * (the sum of the handled requests is the sum of the requests sent) and print
+ * the handoffs per second. The UI threads finish by sending one negative
+ * request per logic thread, which tells it to stop.
+ *
+ * The spin and yield strategies are only fast when each thread has its own
+ * core. With fewer cores, the waiting threads take the cores of the threads
+ * they wait for.
+ *
+ * @author pedrorenzo
+ */
+public class QueueHandoffExample {
+	private static final int NUMBER_OF_UI_THREADS = 4;
+	private static final int NUMBER_OF_LOGIC_THREADS = 4;
+	private static final int REQUESTS_PER_UI_THREAD = 500_000;
+	private static final int CAPACITY = 1024;
+	private static final Long STOP = -1L;
+
+	public static void main(String[] args) throws InterruptedException {
+		run("spin", new SpinWaitStrategy());
+		run("yield", new YieldWaitStrategy());
+		run("park", new ParkWaitStrategy());
+		run("blocking", new BlockingWaitStrategy());
+	}
+
+	private static void run(final String name, final WaitStrategy waitStrategy) throws InterruptedException {
+		final MpmcBoundedQueue<Long> queue = new MpmcBoundedQueue<>(CAPACITY, waitStrategy);
+		final AtomicLong handled = new AtomicLong();
+		final AtomicLong handledSum = new AtomicLong();
+
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_LOGIC_THREADS; i++) {
+			threads.add(new Thread(() -> {
+				long count = 0;
+				long sum = 0;
+				try {
+					Long request;
+					while (!(request = queue.take()).equals(STOP)) {
+						count++;
+						sum += request;
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				handled.addAndGet(count);
+				handledSum.addAndGet(sum);
+			}));
+		}
+		final List<Thread> uiThreads = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_UI_THREADS; i++) {
+			final long firstRequest = (long) i * REQUESTS_PER_UI_THREAD;
+			uiThreads.add(new Thread(() -> {
+				try {
+					for (long request = firstRequest; request < firstRequest + REQUESTS_PER_UI_THREAD; request++) {
+						queue.put(request);
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+			}));
+		}
+		threads.addAll(uiThreads);
+
+		final long startTime = System.nanoTime();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread uiThread : uiThreads) {
+			uiThread.join();
+		}
+		for (int i = 0; i < NUMBER_OF_LOGIC_THREADS; i++) {
+			queue.put(STOP);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		final long duration = Math.max(1, System.nanoTime() - startTime);
+
+		final long requests = (long) NUMBER_OF_UI_THREADS * REQUESTS_PER_UI_THREAD;
+		final long expectedSum = requests * (requests - 1) / 2;
+		final String check = handled.get() == requests && handledSum.get() == expectedSum ? "OK"
+				: "WRONG (" + handled.get() + " handled)";
+		System.out.println(String.format("%-8s %,d handoffs/s, %s", name, requests * 1_000_000_000L / duration,
+				check));
+	}
+}
@@ -0,0 +1,34 @@
+package thread.communication.queue;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Keeps checking the condition, telling the CPU that we are in a spin loop
+ * (Thread.onSpinWait), which on x86 saves some power and lets the other
+ * hardware thread of the core run. The lowest latency, but the core does
+ * nothing else while waiting.
+ *
+ * @author pedrorenzo
+ */
+public class SpinWaitStrategy implements WaitStrategy {
+	// Reading the clock costs about as much as a few spins.
+	private static final int SPINS_BETWEEN_CHECKS = 64;
+
+	@Override
+	public boolean await(final BooleanSupplier condition, final long timeoutNanos) throws InterruptedException {
+		final long deadline = System.nanoTime() + timeoutNanos;
+		int spins = 0;
+		while (!condition.getAsBoolean()) {
+			if (++spins % SPINS_BETWEEN_CHECKS == 0) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+				if (System.nanoTime() - deadline >= 0) {
+					return false;
+				}
+			}
+			Thread.onSpinWait();
+		}
+		return true;
+	}
+}
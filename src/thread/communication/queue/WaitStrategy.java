@@ -0,0 +1,40 @@
+package thread.communication.queue;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * What a thread does while it waits for a {@link MpmcBoundedQueue} to have an
+ * element (or space for one). The strategies go from the fastest to react and
+ * the most expensive for the CPU to the slowest and cheapest:
+ *
+ * - {@link SpinWaitStrategy}: keeps checking, never leaves the core.
+ * - {@link YieldWaitStrategy}: checks and gives the core to other threads.
+ * - {@link ParkWaitStrategy}: checks and sleeps for a few microseconds.
+ * - {@link BlockingWaitStrategy}: sleeps on a Condition until it is signaled,
+ * as in ConditionVariablesExample.
+ *
+ * Spinning only makes sense when there are more cores than busy threads:
+ * otherwise the waiting thread takes the core of the thread it waits for.
+ *
+ * @author pedrorenzo
+ */
+public interface WaitStrategy {
+
+	/**
+	 * Waits until the condition is true or the timeout expires.
+	 *
+	 * @param condition    checked as many times as needed, must be cheap.
+	 * @param timeoutNanos Long.MAX_VALUE to wait forever.
+	 * @return <code>true</code> if the condition became true, <code>false</code>
+	 *         if the timeout expired.
+	 * @throws InterruptedException
+	 */
+	boolean await(BooleanSupplier condition, long timeoutNanos) throws InterruptedException;
+
+	/**
+	 * Called after every change that may make a condition true. Only the
+	 * strategies where threads sleep until signaled need it.
+	 */
+	default void signalAll() {
+	}
+}
@@ -0,0 +1,28 @@
+package thread.communication.queue;
+
+import java.util.function.BooleanSupplier;
+
+/**
+ * Checks the condition and, if it is still false, gives the core to another
+ * thread that wants it (Thread.yield). If no other thread wants it, this is a
+ * spin loop with a system call in it.
+ *
+ * @author pedrorenzo
+ */
+public class YieldWaitStrategy implements WaitStrategy {
+
+	@Override
+	public boolean await(final BooleanSupplier condition, final long timeoutNanos) throws InterruptedException {
+		final long deadline = System.nanoTime() + timeoutNanos;
+		while (!condition.getAsBoolean()) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException();
+			}
+			if (System.nanoTime() - deadline >= 0) {
+				return false;
+			}
+			Thread.yield();
+		}
+		return true;
+	}
+}
@@ -0,0 +1,63 @@
+package thread.communication.session;
+
+import java.lang.ref.Cleaner;
+
+/**
+ * A slot of a {@link SessionLimiter}, from the login to the logout. The slot
+ * is released by logout() (or close(), so a session can be used in a
+ * try-with-resources), only once, no matter how many times it is called.
+ *
+ * If the session is forgotten without a logout, the GC eventually collects it
+ * and the Cleaner of the limiter releases the slot and reports the leak, if the
+ * session was registered in the Cleaner (see SessionLimiter.setLeakSampling).
+ *
+ * @author pedrorenzo
+ */
+public class Session implements AutoCloseable {
+	private final SessionLimiter.SessionState state;
+	// Null if the session is not registered in the Cleaner.
+	private final Cleaner.Cleanable cleanable;
+
+	/**
+	 * @param state
+	 * @param cleaner null to not register the session.
+	 */
+	Session(final SessionLimiter.SessionState state, final Cleaner cleaner) {
+		this.state = state;
+		// The state must not reference the session, otherwise the session would
+		// never become unreachable.
+		this.cleanable = cleaner == null ? null : cleaner.register(this, state);
+	}
+
+	public String getTenant() {
+		return state.tenant.name;
+	}
+
+	/**
+	 * @return the id of the session, unique within its tenant.
+	 */
+	public long getId() {
+		return state.id;
+	}
+
+	/**
+	 * @return <code>true</code> until the first logout.
+	 */
+	public boolean isActive() {
+		return !state.released.get();
+	}
+
+	public void logout() {
+		state.logout();
+		// The slot is already released, this only unregisters the session from the
+		// Cleaner.
+		if (cleanable != null) {
+			cleanable.clean();
+		}
+	}
+
+	@Override
+	public void close() {
+		logout();
+	}
+}
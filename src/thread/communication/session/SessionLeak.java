@@ -0,0 +1,57 @@
+package thread.communication.session;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A session the {@link SessionLimiter} suspects was never logged out:
+ * - UNREACHABLE: the Session object was collected by the GC without a
+ * logout(). Nobody can log it out anymore, so the limiter has released its
+ * slot;
+ * - TOO_OLD: the session is logged in for longer than the maximum age. It may
+ * still be in use, so its slot is kept.
+ *
+ * @author pedrorenzo
+ */
+public class SessionLeak {
+
+	public enum Kind {
+		UNREACHABLE, TOO_OLD
+	}
+
+	private final Kind kind;
+	private final String tenant;
+	private final long sessionId;
+	private final long ageNanos;
+
+	public SessionLeak(final Kind kind, final String tenant, final long sessionId, final long ageNanos) {
+		this.kind = kind;
+		this.tenant = tenant;
+		this.sessionId = sessionId;
+		this.ageNanos = ageNanos;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public String getTenant() {
+		return tenant;
+	}
+
+	public long getSessionId() {
+		return sessionId;
+	}
+
+	/**
+	 * @return how long the session was logged in when the leak was found.
+	 */
+	public long getAgeNanos() {
+		return ageNanos;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " session " + sessionId + " of tenant " + tenant + ", logged in "
+				+ TimeUnit.NANOSECONDS.toMillis(ageNanos) + " ms ago";
+	}
+}
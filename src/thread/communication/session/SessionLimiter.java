@@ -0,0 +1,419 @@
+package thread.communication.session;
+
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import thread.lockfree.counter.BoundedCounter;
+
+/**
+ * The LoginQueueUsingSemaphore of SemaphoreExample for many tenants (companies
+ * sharing the same server) and many logins per second:
+ *
+ * - A global cap, as the semaphore, in a {@link BoundedCounter} with a single
+ * stripe. It is still a single word that all the logins and logouts update
+ * with a CAS, the same contention as the state of a non-fair semaphore, whose
+ * tryAcquire is also a CAS. A striped counter would spread it, but it can
+ * refuse a login while capacity is moving between its stripes, even though a
+ * global slot is free, and an exact check of all the stripes would need a
+ * lock. Only the logins within the quota of their tenant reach this word.
+ *
+ * - A quota per tenant, so a single tenant cannot take all the slots. Each
+ * tenant has its own counter.
+ *
+ * - tryLogin with timeout does not park the thread until a slot is free: it
+ * returns a CompletableFuture, completed with the session when a logout frees
+ * a slot, or with a TimeoutException. The waiters of a tenant get the slots in
+ * the order they arrived, and the tenants with waiters take turns (round
+ * robin), so a tenant with many waiters does not starve the others. A login
+ * without waiting can still take a slot that has just been freed, before the
+ * waiters of other tenants.
+ *
+ * - Leak detection: a session that is never logged out holds its slot forever.
+ * If the Session object is collected by the GC, a Cleaner releases its slot and
+ * reports the leak. Optionally, a scanner reports the sessions logged in for
+ * longer than a maximum age.
+ *
+ * The leak detection should not add another global word to the hot path: the
+ * session ids and the active sessions are kept per tenant. The Cleaner is the
+ * exception: registering and unregistering a session goes through a
+ * synchronized list shared by all the sessions. Even on a single cpu, without
+ * contention, it is about a third to a half of the time of a login and a
+ * logout (see SessionLimiterExample), and more with many threads. With
+ * setLeakSampling, only some sessions are registered: a forgotten session that
+ * was not registered is still reported by the scanner, but keeps its slot.
+ *
+ * @author pedrorenzo
+ */
+public class SessionLimiter {
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	private final BoundedCounter globalSlots;
+	private final int defaultTenantQuota;
+	private final Map<String, Integer> tenantQuotas;
+	private final Map<String, Tenant> tenants = new ConcurrentHashMap<>();
+	// The tenants with waiters, in the order of their turns.
+	private final ConcurrentLinkedDeque<Tenant> waitingTenants = new ConcurrentLinkedDeque<>();
+	// Only one thread hands slots to the waiters at a time; the others just ask it
+	// to look again.
+	private final AtomicInteger dispatchRequests = new AtomicInteger();
+	private final LongAdder leaks = new LongAdder();
+
+	private volatile Consumer<SessionLeak> leakListener = leak -> System.err.println(leak);
+	private volatile int leakSampling = 1;
+	private ScheduledExecutorService leakScanner;
+
+	/**
+	 * @param globalLimit        sessions of all the tenants together.
+	 * @param defaultTenantQuota sessions of each tenant.
+	 */
+	public SessionLimiter(final int globalLimit, final int defaultTenantQuota) {
+		this(globalLimit, defaultTenantQuota, Map.of());
+	}
+
+	/**
+	 * @param globalLimit        sessions of all the tenants together.
+	 * @param defaultTenantQuota sessions of each tenant not in tenantQuotas.
+	 * @param tenantQuotas       the tenants with a different quota.
+	 */
+	public SessionLimiter(final int globalLimit, final int defaultTenantQuota,
+			final Map<String, Integer> tenantQuotas) {
+		if (globalLimit <= 0 || defaultTenantQuota <= 0 || tenantQuotas.values().stream().anyMatch(q -> q <= 0)) {
+			throw new IllegalArgumentException("The limit and the quotas must be positive");
+		}
+		this.globalSlots = new BoundedCounter(globalLimit);
+		this.defaultTenantQuota = defaultTenantQuota;
+		this.tenantQuotas = Map.copyOf(tenantQuotas);
+	}
+
+	/**
+	 * Logs in if the tenant and the server have a free slot, without waiting.
+	 *
+	 * @param tenant
+	 * @return the session or null if there is no slot.
+	 */
+	public Session tryLogin(final String tenant) {
+		final Tenant state = tenantOf(tenant);
+		// The waiters of the tenant come first.
+		if (firstWaiter(state.waiters) != null || reserve(state) != Reservation.RESERVED) {
+			return null;
+		}
+		return newSession(state);
+	}
+
+	/**
+	 * Logs in as soon as the tenant and the server have a free slot, without
+	 * blocking the calling thread.
+	 *
+	 * @param tenant
+	 * @param timeout
+	 * @param unit
+	 * @return a future completed with the session, or with a TimeoutException if
+	 *         no slot was free within the timeout. Cancelling the future gives up
+	 *         the login.
+	 */
+	public CompletableFuture<Session> tryLogin(final String tenant, final long timeout, final TimeUnit unit) {
+		final Session session = tryLogin(tenant);
+		if (session != null) {
+			return CompletableFuture.completedFuture(session);
+		}
+
+		final Tenant state = tenantOf(tenant);
+		final CompletableFuture<Session> future = new CompletableFuture<>();
+		state.waiters.add(future);
+		if (state.queued.compareAndSet(false, true)) {
+			waitingTenants.add(state);
+		}
+		future.orTimeout(timeout, unit);
+		// A logout may have freed a slot after our tryLogin and before we were in the
+		// queue.
+		dispatch();
+		return future;
+	}
+
+	/**
+	 * Reports the sessions logged in for longer than maxSessionAge, once per
+	 * session, checking a few times per maxSessionAge.
+	 *
+	 * @param maxSessionAge
+	 * @param unit
+	 */
+	public synchronized void startLeakScanner(final long maxSessionAge, final TimeUnit unit) {
+		if (leakScanner != null) {
+			return;
+		}
+		final long maxAgeNanos = unit.toNanos(maxSessionAge);
+		final long periodNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), maxAgeNanos / 4);
+		leakScanner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "session-leak-scanner");
+			thread.setDaemon(true);
+			return thread;
+		});
+		leakScanner.scheduleWithFixedDelay(() -> scanOldSessions(maxAgeNanos), periodNanos, periodNanos,
+				TimeUnit.NANOSECONDS);
+	}
+
+	public synchronized void stopLeakScanner() {
+		if (leakScanner != null) {
+			leakScanner.shutdownNow();
+			leakScanner = null;
+		}
+	}
+
+	/**
+	 * @param leakListener receives the leaks, from the scanner thread or from the
+	 *                     Cleaner thread. By default they are printed to
+	 *                     System.err.
+	 */
+	public void setLeakListener(final Consumer<SessionLeak> leakListener) {
+		this.leakListener = leakListener;
+	}
+
+	/**
+	 * @param everyNthSession on average, one session in everyNthSession is
+	 *                        registered in the Cleaner. 1, the default, registers
+	 *                        all of them.
+	 */
+	public void setLeakSampling(final int everyNthSession) {
+		if (everyNthSession <= 0) {
+			throw new IllegalArgumentException("The sampling must be positive: " + everyNthSession);
+		}
+		this.leakSampling = everyNthSession;
+	}
+
+	/**
+	 * @return the free slots of the server, exact only when nobody is logging in
+	 *         or out.
+	 */
+	public int availableSlots() {
+		return globalSlots.available();
+	}
+
+	/**
+	 * @param tenant
+	 * @return the sessions of the tenant, exact only when nobody is logging in or
+	 *         out.
+	 */
+	public int activeSessions(final String tenant) {
+		final Tenant state = tenants.get(tenant);
+		return state == null ? 0 : state.slots.reserved();
+	}
+
+	public int activeSessions() {
+		return globalSlots.reserved();
+	}
+
+	/**
+	 * @return how many sessions were collected by the GC without a logout.
+	 */
+	public long getLeaks() {
+		return leaks.sum();
+	}
+
+	private Tenant tenantOf(final String tenant) {
+		final Tenant state = tenants.get(tenant);
+		if (state != null) {
+			return state;
+		}
+		return tenants.computeIfAbsent(tenant,
+				name -> new Tenant(name, tenantQuotas.getOrDefault(name, defaultTenantQuota)));
+	}
+
+	/**
+	 * Reserves the slot of the tenant first, since it is less contended, and then
+	 * the global one.
+	 */
+	private Reservation reserve(final Tenant tenant) {
+		if (!tenant.slots.tryReserve(1)) {
+			return Reservation.TENANT_FULL;
+		}
+		if (!globalSlots.tryReserve(1)) {
+			tenant.slots.release(1);
+			return Reservation.GLOBAL_FULL;
+		}
+		return Reservation.RESERVED;
+	}
+
+	private Session newSession(final Tenant tenant) {
+		final SessionState state = new SessionState(this, tenant, tenant.nextSessionId.incrementAndGet());
+		tenant.activeSessions.put(state.id, state);
+		final int sampling = leakSampling;
+		final boolean tracked = sampling == 1 || ThreadLocalRandom.current().nextInt(sampling) == 0;
+		return new Session(state, tracked ? CLEANER : null);
+	}
+
+	private void release(final SessionState state) {
+		state.tenant.activeSessions.remove(state.id);
+		// Whatever happens, the tenant slot is freed and the waiters are woken up.
+		try {
+			globalSlots.release(1);
+		} finally {
+			try {
+				state.tenant.slots.release(1);
+			} finally {
+				if (!waitingTenants.isEmpty()) {
+					dispatch();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs grantWaitingSessions until nobody asked for it during the last run, in
+	 * a single thread at a time.
+	 */
+	private void dispatch() {
+		if (dispatchRequests.getAndIncrement() != 0) {
+			return;
+		}
+		int requests = 1;
+		do {
+			grantWaitingSessions();
+			requests = dispatchRequests.addAndGet(-requests);
+		} while (requests != 0);
+	}
+
+	/**
+	 * Gives the free slots to the waiters, one per tenant per turn. A tenant
+	 * without a free slot of its own is set aside until the next dispatch (a
+	 * logout of the tenant will trigger one). Without a global slot, nobody can
+	 * log in and we stop.
+	 */
+	private void grantWaitingSessions() {
+		final List<Tenant> full = new ArrayList<>();
+		Tenant tenant;
+		while ((tenant = waitingTenants.poll()) != null) {
+			final CompletableFuture<Session> waiter = firstWaiter(tenant.waiters);
+			if (waiter == null) {
+				tenant.queued.set(false);
+				// A waiter may have arrived after we looked and before the flag changed.
+				if (!tenant.waiters.isEmpty() && tenant.queued.compareAndSet(false, true)) {
+					waitingTenants.add(tenant);
+				}
+				continue;
+			}
+
+			final Reservation reservation = reserve(tenant);
+			if (reservation == Reservation.TENANT_FULL) {
+				full.add(tenant);
+				continue;
+			}
+			if (reservation == Reservation.GLOBAL_FULL) {
+				waitingTenants.addFirst(tenant);
+				break;
+			}
+
+			tenant.waiters.remove(waiter);
+			final Session session = newSession(tenant);
+			if (!waiter.complete(session)) {
+				// The waiter timed out or gave up in the meantime.
+				session.logout();
+			}
+			// The tenant goes to the end of the line for its next waiter.
+			waitingTenants.add(tenant);
+		}
+		waitingTenants.addAll(full);
+	}
+
+	/**
+	 * @return the first waiter that did not time out nor give up, removing the
+	 *         ones before it. Many threads may do it at the same time, so each
+	 *         one removes the waiter it saw, not whatever is first.
+	 */
+	private static CompletableFuture<Session> firstWaiter(final Queue<CompletableFuture<Session>> waiters) {
+		CompletableFuture<Session> waiter;
+		while ((waiter = waiters.peek()) != null && waiter.isDone()) {
+			waiters.remove(waiter);
+		}
+		return waiter;
+	}
+
+	private void scanOldSessions(final long maxAgeNanos) {
+		final long now = System.nanoTime();
+		for (Tenant tenant : tenants.values()) {
+			for (SessionState state : tenant.activeSessions.values()) {
+				final long age = now - state.loginTime;
+				if (age > maxAgeNanos && !state.reportedOld && !state.released.get()) {
+					state.reportedOld = true;
+					leakListener.accept(new SessionLeak(SessionLeak.Kind.TOO_OLD, tenant.name, state.id, age));
+				}
+			}
+		}
+	}
+
+	private enum Reservation {
+		RESERVED, TENANT_FULL, GLOBAL_FULL
+	}
+
+	static class Tenant {
+		final String name;
+		// A single stripe: the quota of a tenant is small and must be exact.
+		private final BoundedCounter slots;
+		private final Queue<CompletableFuture<Session>> waiters = new ConcurrentLinkedQueue<>();
+		// Whether the tenant is in waitingTenants.
+		private final AtomicBoolean queued = new AtomicBoolean();
+		// The ids are unique only within the tenant.
+		private final AtomicLong nextSessionId = new AtomicLong();
+		// Holds the states, not the sessions, so a forgotten session can be collected.
+		private final Map<Long, SessionState> activeSessions = new ConcurrentHashMap<>();
+
+		private Tenant(final String name, final int quota) {
+			this.name = name;
+			this.slots = new BoundedCounter(quota);
+		}
+	}
+
+	/**
+	 * What the limiter knows about a session. It is also the cleaning action of
+	 * the Cleaner, which runs when the Session is collected or logged out.
+	 */
+	static class SessionState implements Runnable {
+		final Tenant tenant;
+		final long id;
+		final AtomicBoolean released = new AtomicBoolean();
+		private final SessionLimiter limiter;
+		private final long loginTime = System.nanoTime();
+		// Only used by the scanner thread.
+		private boolean reportedOld;
+
+		private SessionState(final SessionLimiter limiter, final Tenant tenant, final long id) {
+			this.limiter = limiter;
+			this.tenant = tenant;
+			this.id = id;
+		}
+
+		void logout() {
+			if (released.compareAndSet(false, true)) {
+				limiter.release(this);
+			}
+		}
+
+		/**
+		 * Called by the Cleaner. After a logout it does nothing.
+		 */
+		@Override
+		public void run() {
+			if (released.compareAndSet(false, true)) {
+				limiter.leaks.increment();
+				limiter.release(this);
+				limiter.leakListener.accept(new SessionLeak(SessionLeak.Kind.UNREACHABLE, tenant.name, id,
+						System.nanoTime() - loginTime));
+			}
+		}
+	}
+}
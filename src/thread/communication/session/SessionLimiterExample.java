@@ -0,0 +1,186 @@
+package thread.communication.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The login of SemaphoreExample with 3 tenants sharing 10 slots: "premium" may
+ * have 6 sessions and the others 3 each.
+ *
+ * 1. 16 threads log in and out as fast as they can, half of them waiting up to
+ * 5 ms for a slot through the CompletableFuture of tryLogin. Each session is
+ * counted while it is active, so we can check that no tenant and not the
+ * server ever went over its limit.
+ *
+ * 2. A session is forgotten without a logout: after a GC, the Cleaner releases
+ * its slot and reports it.
+ *
+ * 3. A session stays logged in for longer than the maximum age of the scanner
+ * (200 ms) and is reported too.
+ *
+ * 4. The cost of the leak detection: logins and logouts without waiting, with
+ * every session registered in the Cleaner and with 1 in 64.
+ *
+ * @author pedrorenzo
+ */
+public class SessionLimiterExample {
+	private static final int GLOBAL_LIMIT = 10;
+	private static final Map<String, Integer> QUOTAS = Map.of("premium", 6, "basic", 3, "trial", 3);
+	private static final String[] TENANTS = { "premium", "basic", "trial" };
+	private static final int NUMBER_OF_THREADS = 16;
+	private static final int LOGINS_PER_THREAD = 50_000;
+
+	public static void main(String[] args) throws Exception {
+		final SessionLimiter limiter = new SessionLimiter(GLOBAL_LIMIT, 3, QUOTAS);
+		limiter.setLeakListener(leak -> System.out.println("Leak: " + leak));
+		limiter.startLeakScanner(200, TimeUnit.MILLISECONDS);
+
+		runLogins(limiter);
+		forgetSession(limiter);
+		keepSession(limiter);
+
+		limiter.stopLeakScanner();
+
+		measureLeakTracking();
+	}
+
+	private static void runLogins(final SessionLimiter limiter) throws InterruptedException {
+		final Map<String, AtomicInteger> active = new ConcurrentHashMap<>();
+		final Map<String, AtomicInteger> maxActive = new ConcurrentHashMap<>();
+		for (String tenant : TENANTS) {
+			active.put(tenant, new AtomicInteger());
+			maxActive.put(tenant, new AtomicInteger());
+		}
+		final AtomicInteger activeTotal = new AtomicInteger();
+		final AtomicInteger maxActiveTotal = new AtomicInteger();
+		final AtomicLong logins = new AtomicLong();
+		final AtomicLong timeouts = new AtomicLong();
+		final AtomicLong rejected = new AtomicLong();
+
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+			final boolean patient = i % 2 == 0;
+			threads.add(new Thread(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int j = 0; j < LOGINS_PER_THREAD; j++) {
+					final String tenant = TENANTS[random.nextInt(TENANTS.length)];
+					Session session;
+					if (patient) {
+						final CompletableFuture<Session> future = limiter.tryLogin(tenant, 5, TimeUnit.MILLISECONDS);
+						try {
+							session = future.get();
+						} catch (ExecutionException e) {
+							if (!(e.getCause() instanceof TimeoutException)) {
+								e.printStackTrace();
+							}
+							timeouts.incrementAndGet();
+							continue;
+						} catch (InterruptedException e) {
+							future.cancel(false);
+							return;
+						}
+					} else {
+						session = limiter.tryLogin(tenant);
+						if (session == null) {
+							rejected.incrementAndGet();
+							continue;
+						}
+					}
+
+					logins.incrementAndGet();
+					updateMax(maxActive.get(tenant), active.get(tenant).incrementAndGet());
+					updateMax(maxActiveTotal, activeTotal.incrementAndGet());
+					for (int k = 0; k < 1000; k++) {
+						Thread.onSpinWait();
+					}
+					active.get(tenant).decrementAndGet();
+					activeTotal.decrementAndGet();
+					session.logout();
+				}
+			}));
+		}
+		final long startTime = System.currentTimeMillis();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		final long duration = Math.max(1, System.currentTimeMillis() - startTime);
+
+		System.out.println(logins.get() * 1000 / duration + " logins/s: " + logins.get() + " logins, "
+				+ rejected.get() + " rejected, " + timeouts.get() + " timed out");
+		boolean withinLimits = maxActiveTotal.get() <= GLOBAL_LIMIT;
+		for (String tenant : TENANTS) {
+			System.out.println("Max active sessions of " + tenant + ": " + maxActive.get(tenant).get() + " (quota "
+					+ QUOTAS.get(tenant) + ")");
+			withinLimits &= maxActive.get(tenant).get() <= QUOTAS.get(tenant);
+		}
+		System.out.println("Max active sessions: " + maxActiveTotal.get() + " (limit " + GLOBAL_LIMIT + "), "
+				+ (withinLimits ? "OK" : "OVER THE LIMIT") + ", active now: " + limiter.activeSessions());
+	}
+
+	private static void forgetSession(final SessionLimiter limiter) throws InterruptedException {
+		limiter.tryLogin("trial");
+		System.out.println("Forgot a session, active sessions of trial: " + limiter.activeSessions("trial"));
+		for (int i = 0; i < 50 && limiter.getLeaks() == 0; i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		System.out.println("Active sessions of trial after the GC: " + limiter.activeSessions("trial"));
+	}
+
+	private static void keepSession(final SessionLimiter limiter) throws InterruptedException {
+		try (Session session = limiter.tryLogin("basic")) {
+			System.out.println("Keeping session " + session.getId() + " for 500 ms");
+			Thread.sleep(500);
+		}
+	}
+
+	/**
+	 * Each thread logs in and out of its own tenant, so the quotas are never full
+	 * and we only measure the limiter. The first round warms up the JIT.
+	 */
+	private static void measureLeakTracking() throws InterruptedException {
+		for (int round = 0; round < 2; round++) {
+			for (int sampling : new int[] { 1, 64 }) {
+				final SessionLimiter limiter = new SessionLimiter(NUMBER_OF_THREADS, 1);
+				limiter.setLeakSampling(sampling);
+				final List<Thread> threads = new ArrayList<>();
+				for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+					final String tenant = "tenant-" + i;
+					threads.add(new Thread(() -> {
+						for (int j = 0; j < LOGINS_PER_THREAD; j++) {
+							limiter.tryLogin(tenant).logout();
+						}
+					}));
+				}
+				final long startTime = System.nanoTime();
+				for (Thread thread : threads) {
+					thread.start();
+				}
+				for (Thread thread : threads) {
+					thread.join();
+				}
+				final long duration = System.nanoTime() - startTime;
+				if (round == 1) {
+					System.out.println(String.format("Leak tracking of 1 in %d sessions: %d ns per login and logout",
+							sampling, duration / ((long) NUMBER_OF_THREADS * LOGINS_PER_THREAD)));
+				}
+			}
+		}
+	}
+
+	private static void updateMax(final AtomicInteger max, final int value) {
+		max.accumulateAndGet(value, Math::max);
+	}
+}
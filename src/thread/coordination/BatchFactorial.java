@@ -0,0 +1,137 @@
+package thread.coordination;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * ThreadCoordination calculates each factorial in its own thread, from 1 up,
+ * so 4656! multiplies again all the numbers 3435! has already multiplied. This
+ * calculates a batch of factorials together:
+ *
+ * 1. The numbers are sorted, e.g. 23, 2324, 3435, 4656.
+ * 2. The products of the segments between them (1..23, 24..2324, 2325..3435,
+ * 3436..4656) do not depend on each other, so they are calculated in parallel,
+ * each one as a binary tree ({@link ParallelFactorial#product}).
+ * 3. Each factorial is the previous one times its segment: 2324! = 23! *
+ * (24..2324), 3435! = 2324! * (2325..3435), and so on.
+ *
+ * The results are kept in a cache of the most recently used factorials, so a
+ * number asked again is not calculated again, and a new number starts from the
+ * largest cached factorial below it instead of from 1. The cache holds entries,
+ * not bytes: a factorial of a million is more than 2 MB.
+ *
+ * @author pedrorenzo
+ */
+public class BatchFactorial {
+	private final ForkJoinPool pool;
+	private final ParallelFactorial parallelFactorial;
+	// Guarded by itself.
+	private final Map<Long, BigInteger> cache;
+
+	/**
+	 * Uses the common fork-join pool and caches 128 factorials.
+	 */
+	public BatchFactorial() {
+		this(ForkJoinPool.commonPool(), 128);
+	}
+
+	/**
+	 * @param pool
+	 * @param cacheSize how many factorials are kept, 0 for no cache.
+	 */
+	public BatchFactorial(final ForkJoinPool pool, final int cacheSize) {
+		if (cacheSize < 0) {
+			throw new IllegalArgumentException("The cache size cannot be negative: " + cacheSize);
+		}
+		this.pool = pool;
+		this.parallelFactorial = new ParallelFactorial(pool);
+		// In access order, so the eldest entry is the least recently used.
+		this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Long, BigInteger> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+
+	/**
+	 * @param numbers
+	 * @return the factorial of each number, by number.
+	 */
+	public Map<Long, BigInteger> factorials(final Collection<Long> numbers) {
+		final long[] sorted = numbers.stream().mapToLong(Long::longValue).sorted().distinct().toArray();
+		final Map<Long, BigInteger> results = new LinkedHashMap<>();
+		if (sorted.length == 0) {
+			return results;
+		}
+		if (sorted[0] < 0) {
+			throw new IllegalArgumentException("The factorial of a negative number does not exist: " + sorted[0]);
+		}
+
+		// Where the first segment starts: the largest cached factorial below the
+		// first missing number.
+		final List<Long> missing = new ArrayList<>();
+		long baseNumber = 0;
+		BigInteger baseFactorial = BigInteger.ONE;
+		synchronized (cache) {
+			for (long n : sorted) {
+				final BigInteger cached = cache.get(n);
+				if (cached != null) {
+					results.put(n, cached);
+				} else {
+					missing.add(n);
+				}
+			}
+			if (!missing.isEmpty()) {
+				for (Map.Entry<Long, BigInteger> entry : cache.entrySet()) {
+					if (entry.getKey() < missing.get(0) && entry.getKey() > baseNumber) {
+						baseNumber = entry.getKey();
+						baseFactorial = entry.getValue();
+					}
+				}
+			}
+		}
+		if (missing.isEmpty()) {
+			return results;
+		}
+
+		// The segments between the missing numbers, all at the same time.
+		final List<ForkJoinTask<BigInteger>> segments = new ArrayList<>(missing.size());
+		long segmentStart = baseNumber + 1;
+		for (long n : missing) {
+			final long from = segmentStart;
+			segments.add(pool.submit(() -> parallelFactorial.product(from, n)));
+			segmentStart = n + 1;
+		}
+
+		// Each factorial is the previous one times its segment.
+		BigInteger factorial = baseFactorial;
+		for (int i = 0; i < missing.size(); i++) {
+			factorial = factorial.multiply(segments.get(i).join());
+			results.put(missing.get(i), factorial);
+		}
+
+		synchronized (cache) {
+			for (long n : missing) {
+				cache.put(n, results.get(n));
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * @param n
+	 * @return n!, from the cache if it is there.
+	 */
+	public BigInteger factorial(final long n) {
+		return factorials(List.of(n)).get(n);
+	}
+}
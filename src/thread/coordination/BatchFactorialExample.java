@@ -0,0 +1,64 @@
+package thread.coordination;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The numbers of ThreadCoordination (without 100000000, whose factorial does
+ * not fit in a BigInteger) plus a few larger ones, calculated in 2 ways:
+ *
+ * - A FactorialThread per number, as ThreadCoordination does, waiting for all
+ * of them without a time limit.
+ * - A {@link BatchFactorial}, which shares the products between the numbers.
+ *
+ * We check that both give the same results and print the total time of each.
+ * Then we ask the batch again for the same numbers (all in the cache) and for
+ * a larger number, which starts from the largest cached factorial.
+ *
+ * @author pedrorenzo
+ */
+public class BatchFactorialExample {
+	private static final List<Long> INPUT_NUMBERS = Arrays.asList(3435L, 35435L, 2324L, 4656L, 23L, 5556L, 50000L,
+			75000L, 100000L);
+
+	public static void main(String[] args) throws InterruptedException {
+		final long threadsStart = System.nanoTime();
+		final List<ThreadCoordination.FactorialThread> threads = new ArrayList<>();
+		for (long inputNumber : INPUT_NUMBERS) {
+			threads.add(new ThreadCoordination.FactorialThread(inputNumber));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		System.out.println("A thread per number: " + millisSince(threadsStart) + " ms");
+
+		final BatchFactorial batchFactorial = new BatchFactorial();
+		final long batchStart = System.nanoTime();
+		final Map<Long, BigInteger> results = batchFactorial.factorials(INPUT_NUMBERS);
+		final long batchTime = millisSince(batchStart);
+		boolean correct = true;
+		for (int i = 0; i < INPUT_NUMBERS.size(); i++) {
+			correct &= threads.get(i).getResult().equals(results.get(INPUT_NUMBERS.get(i)));
+		}
+		System.out.println("Batch: " + batchTime + " ms, results " + (correct ? "OK" : "WRONG"));
+
+		final long cachedStart = System.nanoTime();
+		batchFactorial.factorials(INPUT_NUMBERS);
+		System.out.println("Batch again, from the cache: " + millisSince(cachedStart) + " ms");
+
+		final long largerStart = System.nanoTime();
+		final BigInteger larger = batchFactorial.factorial(120000);
+		System.out.println("120000! from the cached 100000!: " + millisSince(largerStart) + " ms, "
+				+ (larger.equals(new ParallelFactorial().factorial(120000)) ? "OK" : "WRONG"));
+	}
+
+	private static long millisSince(final long start) {
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+}
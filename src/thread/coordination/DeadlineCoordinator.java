@@ -0,0 +1,107 @@
+package thread.coordination;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * ThreadCoordination creates a thread per computation and then joins them one
+ * by one, each join waiting up to 2 seconds, so with N threads the main thread
+ * may wait up to 2 * N seconds, and it only looks at the results at the end.
+ *
+ * This coordinator runs a batch of tasks in a shared executor with a single
+ * deadline for the whole batch:
+ * - The results are given to a listener in the order the tasks finish (with an
+ * ExecutorCompletionService), as soon as each one finishes, not in the order
+ * they were submitted.
+ * - At the deadline, the tasks still running are cancelled, which interrupts
+ * their threads. A task that checks Thread.interrupted() (or calls a method
+ * that throws InterruptedException) stops right away and its thread goes back
+ * to the executor for the next tasks. A task that ignores the interruption
+ * keeps its thread until it finishes, and its result is thrown away.
+ *
+ * @author pedrorenzo
+ */
+public class DeadlineCoordinator {
+	private final ExecutorService executor;
+
+	public DeadlineCoordinator(final ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs the tasks and waits for them up to the timeout.
+	 *
+	 * @param tasks
+	 * @param timeout  for the whole batch.
+	 * @param unit
+	 * @param listener receives each result in the calling thread: first the
+	 *                 completed and failed tasks, as they finish, and then the
+	 *                 timed out ones.
+	 * @return the results in the order of the tasks.
+	 * @throws InterruptedException if the calling thread is interrupted, in which
+	 *                              case all the tasks are cancelled.
+	 */
+	public <T> List<TaskResult<T>> runAll(final List<? extends Callable<T>> tasks, final long timeout,
+			final TimeUnit unit, final Consumer<TaskResult<T>> listener) throws InterruptedException {
+		final long startTime = System.nanoTime();
+		final long deadline = startTime + unit.toNanos(timeout);
+		final CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+		final Map<Future<T>, Integer> indexes = new HashMap<>();
+		final List<TaskResult<T>> results = new ArrayList<>(Collections.nCopies(tasks.size(), null));
+
+		try {
+			for (int i = 0; i < tasks.size(); i++) {
+				indexes.put(completionService.submit(tasks.get(i)), i);
+			}
+			for (int remaining = tasks.size(); remaining > 0; remaining--) {
+				final Future<T> future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				if (future == null) {
+					break;
+				}
+				final TaskResult<T> result = resultOf(indexes.get(future), future, System.nanoTime() - startTime);
+				results.set(result.getIndex(), result);
+				listener.accept(result);
+			}
+		} finally {
+			// The stragglers, or all the tasks if we were interrupted.
+			for (Map.Entry<Future<T>, Integer> task : indexes.entrySet()) {
+				if (results.get(task.getValue()) == null) {
+					task.getKey().cancel(true);
+				}
+			}
+		}
+
+		final long elapsed = System.nanoTime() - startTime;
+		for (int i = 0; i < results.size(); i++) {
+			if (results.get(i) == null) {
+				final TaskResult<T> result = new TaskResult<>(i, TaskResult.Status.TIMED_OUT, null, null, elapsed);
+				results.set(i, result);
+				listener.accept(result);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * @param future a task that has finished.
+	 */
+	private static <T> TaskResult<T> resultOf(final int index, final Future<T> future, final long elapsed)
+			throws InterruptedException {
+		try {
+			return new TaskResult<>(index, TaskResult.Status.COMPLETED, future.get(), null, elapsed);
+		} catch (ExecutionException e) {
+			return new TaskResult<>(index, TaskResult.Status.FAILED, null, e.getCause(), elapsed);
+		}
+	}
+}
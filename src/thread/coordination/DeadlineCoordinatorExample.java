@@ -0,0 +1,51 @@
+package thread.coordination;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The factorials of ThreadCoordination, but run by a {@link DeadlineCoordinator}
+ * in a pool of 4 threads, with a single deadline of 2 seconds for all of them.
+ * Each result is printed as soon as it is ready, and the factorials still
+ * running at the deadline (100000000, which would never finish) are cancelled.
+ * FactorialThread.factorial stops when its thread is interrupted, so after the
+ * batch we can see that the pool has no task running anymore.
+ *
+ * @author pedrorenzo
+ */
+public class DeadlineCoordinatorExample {
+
+	public static void main(String[] args) throws InterruptedException {
+		final List<Long> inputNumbers = Arrays.asList(100000000L, 3435L, 35435L, 2324L, 4656L, 23L, 5556L);
+		final ThreadCoordination.FactorialThread calculator = new ThreadCoordination.FactorialThread(0);
+		final List<Callable<BigInteger>> tasks = new ArrayList<>();
+		for (long inputNumber : inputNumbers) {
+			tasks.add(() -> calculator.factorial(inputNumber));
+		}
+
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		final DeadlineCoordinator coordinator = new DeadlineCoordinator(executor);
+		coordinator.runAll(tasks, 2, TimeUnit.SECONDS, result -> {
+			final long inputNumber = inputNumbers.get(result.getIndex());
+			if (result.getStatus() == TaskResult.Status.COMPLETED) {
+				System.out.println("Factorial of " + inputNumber + " has " + result.getValue().bitLength()
+						+ " bits, after " + TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()) + " ms");
+			} else {
+				System.out.println("Factorial of " + inputNumber + ": " + result);
+			}
+		});
+
+		// The cancelled task gives its thread back, so the pool can stop right away.
+		executor.shutdown();
+		final long shutdownStart = System.nanoTime();
+		final boolean terminated = executor.awaitTermination(1, TimeUnit.SECONDS);
+		System.out.println("Pool " + (terminated ? "terminated" : "still busy") + " after "
+				+ TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - shutdownStart) + " ms");
+	}
+}
@@ -0,0 +1,246 @@
+package thread.coordination;
+
+import java.math.BigInteger;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntToLongFunction;
+
+/**
+ * FactorialThread.factorial multiplies the numbers one by one into the result:
+ * each multiplication copies a result that keeps growing, so the time grows
+ * with n², and it all happens in a single thread.
+ *
+ * This engine multiplies the numbers as a binary tree (binary splitting): 1..n
+ * is split into 2 halves, each half is multiplied the same way and then the 2
+ * products are multiplied. The numbers multiplied together have similar sizes,
+ * which is where the faster algorithms of BigInteger (Karatsuba and Toom-Cook)
+ * work, and the 2 halves are independent, so they run as fork-join subtasks in
+ * different cores.
+ *
+ * For large n we use the prime swing algorithm of Peter Luschny, which
+ * multiplies far fewer numbers:
+ * - n! = oddPart(n) * 2^(n - number of 1 bits of n), and a shift is free.
+ * - oddPart(n) = oddPart(n/2)² * swing(n), where swing(n) = n! / (n/2)!² is a
+ * product of primes, each prime p with an exponent we can calculate without
+ * multiplying anything, and p^exponent is never more than n.
+ * So n! needs about n / ln(n) numbers (the primes) multiplied as a tree, plus a
+ * squaring per level. The swing and oddPart(n/2) are calculated at the same
+ * time.
+ *
+ * BigInteger supports up to 2^31 bits, so the factorial of n above about 87
+ * million (e.g. the 100000000 of ThreadCoordination) cannot be represented and
+ * throws an ArithmeticException right away instead of after hours.
+ *
+ * @author pedrorenzo
+ */
+public class ParallelFactorial {
+	// Below this, splitting the work costs more than it saves.
+	private static final int SEQUENTIAL_THRESHOLD = 1024;
+	private static final int PRIME_SWING_THRESHOLD = 20_000;
+	// The odd parts below this are calculated with a plain product.
+	private static final int SMALL_ODD_PART = 64;
+
+	private final ForkJoinPool pool;
+
+	public ParallelFactorial() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public ParallelFactorial(final ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @param n
+	 * @return n!, with the best algorithm for n.
+	 */
+	public BigInteger factorial(final long n) {
+		return n < PRIME_SWING_THRESHOLD ? productTreeFactorial(n) : primeSwingFactorial(n);
+	}
+
+	/**
+	 * @param n
+	 * @return n!, multiplying 2..n as a binary tree.
+	 */
+	public BigInteger productTreeFactorial(final long n) {
+		final int size = checkSize(n);
+		if (size < 2) {
+			return BigInteger.ONE;
+		}
+		return pool.invoke(new ProductTask(2, size + 1, i -> i));
+	}
+
+	/**
+	 * @param from
+	 * @param to
+	 * @return from * (from + 1) * ... * to, multiplied as a binary tree, or 1 if
+	 *         to is lower than from.
+	 */
+	public BigInteger product(final long from, final long to) {
+		final int last = checkSize(to);
+		if (from < 1) {
+			throw new IllegalArgumentException("The product must start at a positive number: " + from);
+		}
+		if (last < from) {
+			return BigInteger.ONE;
+		}
+		return pool.invoke(new ProductTask((int) from, last + 1, i -> i));
+	}
+
+	/**
+	 * @param n
+	 * @return n!, with the prime swing algorithm.
+	 */
+	public BigInteger primeSwingFactorial(final long n) {
+		final int size = checkSize(n);
+		if (size < 2) {
+			return BigInteger.ONE;
+		}
+		final boolean[] composite = oddSieve(size);
+		return pool.invoke(new OddPartTask(size, composite)).shiftLeft(size - Integer.bitCount(size));
+	}
+
+	/**
+	 * Estimates the bits of n! with the Stirling formula:
+	 * log2(n!) ~ n log2(n) - n log2(e) + log2(2 pi n) / 2.
+	 */
+	private static int checkSize(final long n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("The factorial of a negative number does not exist: " + n);
+		}
+		if (n > 2) {
+			final double bits = n * (Math.log(n) - 1) / Math.log(2) + Math.log(2 * Math.PI * n) / Math.log(2) / 2;
+			if (bits >= Integer.MAX_VALUE) {
+				throw new ArithmeticException(n + "! has about " + (long) bits
+						+ " bits, more than a BigInteger supports");
+			}
+		}
+		return (int) n;
+	}
+
+	/**
+	 * The sieve of Eratosthenes for the odd numbers: composite[i] says whether
+	 * 2i + 1 is composite.
+	 */
+	private static boolean[] oddSieve(final int n) {
+		final boolean[] composite = new boolean[n / 2 + 1];
+		composite[0] = true;
+		for (long p = 3; p * p <= n; p += 2) {
+			if (!composite[(int) (p / 2)]) {
+				for (long multiple = p * p; multiple <= n; multiple += 2 * p) {
+					composite[(int) (multiple / 2)] = true;
+				}
+			}
+		}
+		return composite;
+	}
+
+	/**
+	 * The product of factor(from) * ... * factor(to - 1), as a binary tree.
+	 */
+	private static class ProductTask extends RecursiveTask<BigInteger> {
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+		private final int to;
+		private final IntToLongFunction factor;
+
+		private ProductTask(final int from, final int to, final IntToLongFunction factor) {
+			this.from = from;
+			this.to = to;
+			this.factor = factor;
+		}
+
+		@Override
+		protected BigInteger compute() {
+			if (to - from <= SEQUENTIAL_THRESHOLD) {
+				return product(from, to, factor);
+			}
+			final int middle = (from + to) >>> 1;
+			final ProductTask left = new ProductTask(from, middle, factor);
+			left.fork();
+			final BigInteger right = new ProductTask(middle, to, factor).compute();
+			return left.join().multiply(right);
+		}
+
+		/**
+		 * Also a binary tree, but in this thread. The factors are first multiplied in
+		 * a long while they fit, which saves most of the BigInteger objects.
+		 */
+		private static BigInteger product(final int from, final int to, final IntToLongFunction factor) {
+			if (to - from <= 16) {
+				BigInteger result = BigInteger.ONE;
+				long accumulated = 1;
+				for (int i = from; i < to; i++) {
+					final long value = factor.applyAsLong(i);
+					if (Math.multiplyHigh(accumulated, value) != 0 || accumulated * value < 0) {
+						result = result.multiply(BigInteger.valueOf(accumulated));
+						accumulated = value;
+					} else {
+						accumulated *= value;
+					}
+				}
+				return result.multiply(BigInteger.valueOf(accumulated));
+			}
+			final int middle = (from + to) >>> 1;
+			return product(from, middle, factor).multiply(product(middle, to, factor));
+		}
+	}
+
+	/**
+	 * oddPart(n) = oddPart(n/2)² * swing(n), with both parts at the same time.
+	 */
+	private static class OddPartTask extends RecursiveTask<BigInteger> {
+		private static final long serialVersionUID = 1L;
+
+		private final int n;
+		private final boolean[] composite;
+
+		private OddPartTask(final int n, final boolean[] composite) {
+			this.n = n;
+			this.composite = composite;
+		}
+
+		@Override
+		protected BigInteger compute() {
+			if (n < SMALL_ODD_PART) {
+				// The odd numbers of the factorial, n! without the 2s.
+				BigInteger result = BigInteger.ONE;
+				for (int i = 2; i <= n; i++) {
+					result = result.multiply(BigInteger.valueOf(i >> Integer.numberOfTrailingZeros(i)));
+				}
+				return result;
+			}
+			final ForkJoinTask<BigInteger> half = new OddPartTask(n / 2, composite).fork();
+			final BigInteger swing = swing();
+			final BigInteger halfOddPart = half.join();
+			return halfOddPart.multiply(halfOddPart).multiply(swing);
+		}
+
+		/**
+		 * The odd part of n! / (n/2)!². The exponent of a prime p is the number of
+		 * odd values in n/p, n/p², n/p³... (integer divisions).
+		 */
+		private BigInteger swing() {
+			// There are fewer than 1.26 n / ln(n) primes up to n.
+			final long[] primePowers = new long[(int) (1.26 * n / Math.log(n)) + 16];
+			int count = 0;
+			for (int p = 3; p <= n; p += 2) {
+				if (composite[p / 2]) {
+					continue;
+				}
+				long power = 1;
+				for (int q = n / p; q > 0; q /= p) {
+					if ((q & 1) == 1) {
+						power *= p;
+					}
+				}
+				if (power > 1) {
+					primePowers[count++] = power;
+				}
+			}
+			return new ProductTask(0, count, i -> primePowers[i]).compute();
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package thread.coordination;
+
+import java.math.BigInteger;
+
+/**
+ * Checks the {@link ParallelFactorial} against FactorialThread.factorial of
+ * ThreadCoordination for small numbers, with both of its algorithms, and then
+ * compares the time of the three for larger numbers.
+ *
+ * FactorialThread.factorial is only timed up to 100000: its time grows with n²
+ * and it would take minutes for the largest numbers.
+ *
+ * @author pedrorenzo
+ */
+public class ParallelFactorialExample {
+	private static final long[] NUMBERS_TO_CHECK = { 0, 1, 2, 3, 20, 21, 63, 64, 65, 100, 1000, 2324, 3435, 4656,
+			5556, 35435 };
+	private static final long[] NUMBERS_TO_TIME = { 10_000, 100_000, 1_000_000 };
+	private static final long LARGEST_SEQUENTIAL = 100_000;
+
+	public static void main(String[] args) {
+		final ParallelFactorial parallelFactorial = new ParallelFactorial();
+		final ThreadCoordination.FactorialThread factorialThread = new ThreadCoordination.FactorialThread(0);
+
+		boolean correct = true;
+		for (long n : NUMBERS_TO_CHECK) {
+			final BigInteger expected = factorialThread.factorial(n);
+			correct &= expected.equals(parallelFactorial.productTreeFactorial(n));
+			correct &= expected.equals(parallelFactorial.primeSwingFactorial(n));
+		}
+		System.out.println("Results equal to FactorialThread.factorial: " + (correct ? "OK" : "WRONG"));
+
+		for (long n : NUMBERS_TO_TIME) {
+			final StringBuilder line = new StringBuilder(n + "!:");
+			if (n <= LARGEST_SEQUENTIAL) {
+				final long sequentialStart = System.nanoTime();
+				factorialThread.factorial(n);
+				line.append(" one by one ").append(millisSince(sequentialStart)).append(" ms,");
+			}
+			final long productTreeStart = System.nanoTime();
+			final BigInteger productTree = parallelFactorial.productTreeFactorial(n);
+			line.append(" product tree ").append(millisSince(productTreeStart)).append(" ms,");
+			final long primeSwingStart = System.nanoTime();
+			final BigInteger primeSwing = parallelFactorial.primeSwingFactorial(n);
+			line.append(" prime swing ").append(millisSince(primeSwingStart)).append(" ms, ")
+					.append(primeSwing.bitLength()).append(" bits");
+			if (!productTree.equals(primeSwing)) {
+				line.append(", DIFFERENT RESULTS");
+			}
+			System.out.println(line);
+		}
+
+		try {
+			parallelFactorial.factorial(100_000_000L);
+		} catch (ArithmeticException e) {
+			System.out.println("100000000!: " + e.getMessage());
+		}
+	}
+
+	private static long millisSince(final long start) {
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+}
@@ -0,0 +1,70 @@
+package thread.coordination;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What happened to a task of a {@link DeadlineCoordinator} batch:
+ * - COMPLETED: it returned a value before the deadline;
+ * - FAILED: it threw an exception before the deadline;
+ * - TIMED_OUT: it was still running at the deadline and was cancelled.
+ *
+ * @author pedrorenzo
+ */
+public class TaskResult<T> {
+
+	public enum Status {
+		COMPLETED, FAILED, TIMED_OUT
+	}
+
+	private final int index;
+	private final Status status;
+	private final T value;
+	private final Throwable error;
+	private final long elapsedNanos;
+
+	TaskResult(final int index, final Status status, final T value, final Throwable error, final long elapsedNanos) {
+		this.index = index;
+		this.status = status;
+		this.value = value;
+		this.error = error;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	/**
+	 * @return the position of the task in the batch.
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	/**
+	 * @return the value returned by the task, or null if it did not complete.
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the exception thrown by the task, or null if it did not fail.
+	 */
+	public Throwable getError() {
+		return error;
+	}
+
+	/**
+	 * @return time from the start of the batch to the result.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "task " + index + " " + status + " after " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos) + " ms"
+				+ (error != null ? ": " + error : "");
+	}
+}
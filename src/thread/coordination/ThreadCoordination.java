@@ -4,10 +4,23 @@ import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Example to how coordinate threads using the join method.
  * 
+ * The factorial of FactorialThread multiplies the numbers one by one, in a
+ * single thread, so the factorial of 100000000 never finishes within the 2
+ * seconds (it does not even fit in a BigInteger). ParallelFactorial calculates
+ * a single large factorial in all the cores, with much faster algorithms.
+ * 
+ * The 2 seconds are a single deadline for all the threads: each join only
+ * waits for what is left of it. Otherwise, with N threads, we could wait for
+ * 2 * N seconds. The threads still running at the deadline are interrupted,
+ * and the factorial stops as soon as it sees it. DeadlineCoordinator does the
+ * same with a shared thread pool and gives each result as soon as it is ready.
+ * 
  * @author pedrorenzo
  */
 public class ThreadCoordination {
@@ -27,9 +40,13 @@ public class ThreadCoordination {
 		// The join method ensures that the main thread will only end after all other
 		// threads are finished, thus ensuring that the factorial of all values ​​will
 		// be displayed. In this case, I place a maximum waiting limit of 2 seconds.
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
 		for (Thread thread : threads) {
 			try {
-				thread.join(2000);
+				final long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMillis > 0) {
+					thread.join(remainingMillis);
+				}
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			}
@@ -41,15 +58,19 @@ public class ThreadCoordination {
 			if (factorialThread.isFinished()) {
 				System.out.println("Factorial of " + inputNumbers.get(i) + " is " + factorialThread.getResult());
 			} else {
-				System.out.println("The calculation for " + inputNumbers.get(i) + " is still in progress");
+				System.out.println("The calculation for " + inputNumbers.get(i) + " is still in progress, stopping it");
+				factorialThread.interrupt();
 			}
 		}
 	}
 
 	public static class FactorialThread extends Thread {
 		private long inputNumber;
-		private BigInteger result = BigInteger.ZERO;
-		private boolean isFinished = false;
+		// Written by this thread and read by the main thread, so they must be
+		// volatile: otherwise the main thread may never see them change, or see
+		// isFinished before the result.
+		private volatile BigInteger result = BigInteger.ZERO;
+		private volatile boolean isFinished = false;
 
 		public FactorialThread(final long inputNumber) {
 			this.inputNumber = inputNumber;
@@ -57,14 +78,26 @@ public class ThreadCoordination {
 
 		@Override
 		public void run() {
-			this.result = factorial(inputNumber);
-			this.isFinished = true;
+			try {
+				this.result = factorial(inputNumber);
+				this.isFinished = true;
+			} catch (CancellationException e) {
+				// Interrupted, isFinished stays false.
+			}
 		}
 
+		/**
+		 * @param n
+		 * @return n!
+		 * @throws CancellationException if the thread is interrupted.
+		 */
 		public BigInteger factorial(final long n) {
 			BigInteger tempResult = BigInteger.ONE;
 
 			for (long i = n; i > 0; i--) {
+				if (Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("Factorial of " + n + " interrupted");
+				}
 				tempResult = tempResult.multiply(new BigInteger((Long.toString(i))));
 			}
 			return tempResult;
@@ -0,0 +1,277 @@
+package thread.creation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In ThreadPoliceAndHackerExample, each hacker thread is blocked for 5 ms at
+ * every guess, so the throughput is 200 guesses per second per thread however
+ * little work the vault does. This verifier does not block the callers:
+ *
+ * - verify() returns a CompletableFuture right away and puts the value in a
+ * queue.
+ * - A batcher thread takes the values of the queue and groups them into
+ * batches: a batch is sent when it has maxBatchSize values or when the window
+ * has passed since its first value, so a lonely value does not wait forever.
+ * - Up to maxConcurrentBatches batches are validated at the same time, each
+ * with a single call to the {@link BatchValidator}, and the futures of a batch
+ * are completed when it returns. When all the validators are busy, the batcher
+ * keeps adding values to its batch (up to maxBatchSize) until one is free,
+ * instead of sending small batches that would only wait in line for a
+ * validator.
+ *
+ * So the throughput is limited by how many values the validator accepts per
+ * call (maxBatchSize * maxConcurrentBatches per round trip), not by the
+ * latency of each call.
+ *
+ * The number of values in flight (submitted and not validated yet) is bounded
+ * by a Semaphore: when it is full, verify() waits for a permit. Without it, a
+ * fast producer would fill the queue with futures faster than the validator
+ * can complete them, until the memory runs out. A future cancelled (or
+ * completed) by the caller is not validated, but it keeps its permit until the
+ * batcher takes it out of the queue, so the bound holds for the queue too.
+ *
+ * The futures are completed by the validation threads, so the actions chained
+ * to them (thenAccept...) run there and must be short.
+ *
+ * @author pedrorenzo
+ */
+public class AsyncBatchVerifier<T> implements AutoCloseable {
+	// How often a batch waiting for a busy validator looks for more values.
+	private static final long COALESCING_POLL_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final BatchValidator<T> validator;
+	private final int maxBatchSize;
+	private final long windowNanos;
+	private final Semaphore inFlight;
+	private final Semaphore freeValidators;
+	private final BlockingQueue<Pending<T>> queue = new LinkedBlockingQueue<>();
+	private final ExecutorService validators;
+	private final Thread batcher;
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder verified = new LongAdder();
+
+	private volatile boolean closed;
+
+	/**
+	 * @param validator
+	 * @param maxBatchSize         values per call to the validator.
+	 * @param window               how long a batch waits for more values after
+	 *                             its first one.
+	 * @param unit
+	 * @param maxConcurrentBatches calls to the validator at the same time.
+	 * @param maxInFlight          values submitted and not completed yet.
+	 */
+	public AsyncBatchVerifier(final BatchValidator<T> validator, final int maxBatchSize, final long window,
+			final TimeUnit unit, final int maxConcurrentBatches, final int maxInFlight) {
+		if (maxBatchSize <= 0 || maxConcurrentBatches <= 0 || maxInFlight <= 0 || window < 0) {
+			throw new IllegalArgumentException("The sizes must be positive and the window not negative");
+		}
+		this.validator = validator;
+		this.maxBatchSize = maxBatchSize;
+		this.windowNanos = unit.toNanos(window);
+		this.inFlight = new Semaphore(maxInFlight);
+		this.freeValidators = new Semaphore(maxConcurrentBatches);
+
+		final AtomicInteger threadNumber = new AtomicInteger();
+		this.validators = Executors.newFixedThreadPool(maxConcurrentBatches,
+				runnable -> newDaemon(runnable, "validator-" + threadNumber.getAndIncrement()));
+		this.batcher = newDaemon(this::batch, "batcher");
+		this.batcher.start();
+	}
+
+	/**
+	 * Submits a value to be validated in a later batch. It only waits if there
+	 * are already maxInFlight values in flight.
+	 *
+	 * @param value
+	 * @return completed with the result of the validator for the value, or
+	 *         exceptionally if its batch failed.
+	 * @throws InterruptedException
+	 */
+	public CompletableFuture<Boolean> verify(final T value) throws InterruptedException {
+		if (closed) {
+			throw new IllegalStateException("The verifier is closed");
+		}
+		inFlight.acquire();
+		final Pending<T> pending = new Pending<>(value);
+		queue.add(pending);
+		// The batcher may have already left, so nobody would complete it. If it is
+		// still in the queue, it is ours to reject.
+		if (closed && queue.remove(pending)) {
+			inFlight.release();
+			pending.future.completeExceptionally(new RejectedExecutionException("The verifier is closed"));
+		}
+		return pending.future;
+	}
+
+	/**
+	 * @return calls made to the validator.
+	 */
+	public long getBatches() {
+		return batches.sum();
+	}
+
+	/**
+	 * @return values validated, including the failed batches, but not the ones
+	 *         cancelled before their batch was sent.
+	 */
+	public long getVerified() {
+		return verified.sum();
+	}
+
+	/**
+	 * Stops accepting values, validates the ones already submitted and waits for
+	 * the batches to finish. If the calling thread is interrupted, it stops
+	 * waiting and keeps its interrupt flag; the batches already sent still finish
+	 * in the background.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			// The batcher still sends the last batches to the validators.
+			batcher.join();
+			validators.shutdown();
+			validators.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The loop of the batcher thread.
+	 */
+	private void batch() {
+		try {
+			while (!closed || !queue.isEmpty()) {
+				final Pending<T> first = queue.poll(10, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				final List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+				add(batch, first);
+				final long deadline = System.nanoTime() + windowNanos;
+				while (batch.size() < maxBatchSize) {
+					// What is already in the queue is taken without waiting.
+					if (drain(batch) > 0) {
+						continue;
+					}
+					final long remaining = deadline - System.nanoTime();
+					final Pending<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+					if (next == null) {
+						break;
+					}
+					add(batch, next);
+				}
+				if (batch.isEmpty()) {
+					continue;
+				}
+				// All the validators are busy: the batch keeps taking values until one is
+				// free. Once it is full, we just wait.
+				while (!freeValidators.tryAcquire(COALESCING_POLL_NANOS, TimeUnit.NANOSECONDS)) {
+					if (drain(batch) == 0 && batch.size() == maxBatchSize) {
+						freeValidators.acquire();
+						break;
+					}
+				}
+				validators.execute(() -> {
+					try {
+						validate(batch);
+					} finally {
+						inFlight.release(batch.size());
+						freeValidators.release();
+					}
+				});
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Takes the values already in the queue, without waiting, until the batch is
+	 * full.
+	 *
+	 * @return how many values were taken out of the queue, including the ones
+	 *         dropped by add().
+	 */
+	private int drain(final List<Pending<T>> batch) {
+		int taken = 0;
+		Pending<T> next;
+		while (batch.size() < maxBatchSize && (next = queue.poll()) != null) {
+			add(batch, next);
+			taken++;
+		}
+		return taken;
+	}
+
+	/**
+	 * Adds the value to the batch, unless the caller already cancelled or
+	 * completed its future: then it is dropped and its permit given back.
+	 */
+	private void add(final List<Pending<T>> batch, final Pending<T> pending) {
+		if (pending.future.isDone()) {
+			inFlight.release();
+		} else {
+			batch.add(pending);
+		}
+	}
+
+	private void validate(final List<Pending<T>> batch) {
+		// The futures cancelled while the batch waited for a validator are not sent.
+		final List<Pending<T>> sent = new ArrayList<>(batch.size());
+		final List<T> values = new ArrayList<>(batch.size());
+		for (Pending<T> pending : batch) {
+			if (!pending.future.isDone()) {
+				sent.add(pending);
+				values.add(pending.value);
+			}
+		}
+		if (sent.isEmpty()) {
+			return;
+		}
+		batches.increment();
+		verified.add(sent.size());
+		try {
+			final boolean[] results = validator.validate(values);
+			if (results.length != sent.size()) {
+				throw new IllegalStateException(
+						"The validator returned " + results.length + " results for " + sent.size() + " values");
+			}
+			for (int i = 0; i < results.length; i++) {
+				sent.get(i).future.complete(results[i]);
+			}
+		} catch (Throwable e) {
+			// Even an Error must complete the futures, or their callers wait forever.
+			for (Pending<T> pending : sent) {
+				pending.future.completeExceptionally(e);
+			}
+		}
+	}
+
+	private static Thread newDaemon(final Runnable runnable, final String name) {
+		final Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+
+	private static class Pending<T> {
+		private final T value;
+		private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+		private Pending(final T value) {
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package thread.creation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Vault of ThreadPoliceAndHackerExample checked in 2 ways:
+ *
+ * - Blocking: 2 hacker threads call isCorrectPassword, 5 ms per guess, so they
+ * need about 25 seconds for all the 10000 passwords. Here they only try the
+ * first 1000 ones.
+ * - Async: a single thread submits all the guesses to an
+ * {@link AsyncBatchVerifier} over a vault that checks up to 100 guesses per
+ * call of 5 ms, 4 calls at the same time, with at most 1000 guesses in flight.
+ * All the 10000 passwords are checked in a few hundred ms, even on a single
+ * core, since the threads are only waiting.
+ *
+ * Then 2 checks: guesses arriving slower than the window must still be
+ * grouped while the vault is busy, and the guesses cancelled before their
+ * batch is sent must not reach the vault.
+ *
+ * @author pedrorenzo
+ */
+public class AsyncVaultVerificationExample {
+	private static final int PASSWORDS = ThreadPoliceAndHackerExample.MAX_PASSWORD + 1;
+
+	public static void main(String[] args) throws InterruptedException {
+		final int password = new Random().nextInt(PASSWORDS);
+		final Vault vault = new Vault(password);
+
+		final int blockingGuesses = 1000;
+		long startTime = System.nanoTime();
+		final List<Thread> hackers = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			final int first = i;
+			hackers.add(new Thread(() -> {
+				for (int guess = first; guess < blockingGuesses; guess += 2) {
+					vault.isCorrectPassword(guess);
+				}
+			}));
+		}
+		for (Thread hacker : hackers) {
+			hacker.start();
+		}
+		for (Thread hacker : hackers) {
+			hacker.join();
+		}
+		print("Blocking, 2 threads", blockingGuesses, System.nanoTime() - startTime);
+
+		final AtomicInteger found = new AtomicInteger(-1);
+		final AsyncBatchVerifier<Integer> verifier = new AsyncBatchVerifier<>(
+				guesses -> vault.areCorrectPasswords(guesses.stream().mapToInt(Integer::intValue).toArray()), 100, 1,
+				TimeUnit.MILLISECONDS, 4, 1000);
+		startTime = System.nanoTime();
+		final List<CompletableFuture<Void>> results = new ArrayList<>(PASSWORDS);
+		for (int guess = 0; guess < PASSWORDS; guess++) {
+			final int attempt = guess;
+			results.add(verifier.verify(guess).thenAccept(correct -> {
+				if (correct) {
+					found.set(attempt);
+				}
+			}));
+		}
+		CompletableFuture.allOf(results.toArray(CompletableFuture<?>[]::new)).join();
+		print("Async batches", PASSWORDS, System.nanoTime() - startTime);
+		verifier.close();
+
+		System.out.println(verifier.getVerified() + " guesses in " + verifier.getBatches() + " calls to the vault");
+		System.out.println(found.get() == password ? "OK: found the password " + password
+				: "WRONG: found " + found.get() + " instead of " + password);
+
+		checkSlowArrivals(vault);
+		checkCancelled();
+	}
+
+	/**
+	 * A guess every 2 ms with a window of 1 ms: each batch would have a single
+	 * guess, but while the only call to the vault takes 5 ms, the next batch keeps
+	 * growing.
+	 */
+	private static void checkSlowArrivals(final Vault vault) throws InterruptedException {
+		final int guesses = 200;
+		final AsyncBatchVerifier<Integer> verifier = new AsyncBatchVerifier<>(
+				values -> vault.areCorrectPasswords(values.stream().mapToInt(Integer::intValue).toArray()), 100, 1,
+				TimeUnit.MILLISECONDS, 1, 1000);
+		final List<CompletableFuture<Boolean>> results = new ArrayList<>(guesses);
+		for (int guess = 0; guess < guesses; guess++) {
+			results.add(verifier.verify(guess));
+			Thread.sleep(2);
+		}
+		CompletableFuture.allOf(results.toArray(CompletableFuture<?>[]::new)).join();
+		verifier.close();
+		System.out.println((verifier.getBatches() < guesses / 2 ? "OK: " : "WRONG: ") + guesses
+				+ " guesses arriving every 2 ms in " + verifier.getBatches() + " calls to the vault");
+	}
+
+	/**
+	 * The first call to the validator waits until the other guesses are
+	 * cancelled, so none of them can be sent.
+	 */
+	private static void checkCancelled() throws InterruptedException {
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		final AsyncBatchVerifier<Integer> verifier = new AsyncBatchVerifier<>(values -> {
+			cancelled.await();
+			return new boolean[values.size()];
+		}, 100, 1, TimeUnit.MILLISECONDS, 1, 100);
+		final CompletableFuture<Boolean> first = verifier.verify(0);
+		// Waits for the batch of the first guess to be sent.
+		Thread.sleep(50);
+		final List<CompletableFuture<Boolean>> others = new ArrayList<>();
+		for (int guess = 1; guess < 100; guess++) {
+			others.add(verifier.verify(guess));
+		}
+		for (CompletableFuture<Boolean> other : others) {
+			other.cancel(false);
+		}
+		cancelled.countDown();
+		first.join();
+		verifier.close();
+		System.out.println(verifier.getVerified() == 1 ? "OK: the cancelled guesses were not sent"
+				: "WRONG: " + verifier.getVerified() + " guesses sent");
+	}
+
+	private static void print(final String name, final int guesses, final long nanos) {
+		System.out.printf("%s: %d guesses in %d ms (%,.0f guesses/s)%n", name, guesses,
+				TimeUnit.NANOSECONDS.toMillis(nanos), guesses * (double) TimeUnit.SECONDS.toNanos(1) / nanos);
+	}
+}
@@ -0,0 +1,20 @@
+package thread.creation;
+
+import java.util.List;
+
+/**
+ * A slow validator that checks many values in a single call, e.g. a remote
+ * service that costs a round trip per call, not per value. Used by the
+ * {@link AsyncBatchVerifier}.
+ *
+ * @author pedrorenzo
+ */
+public interface BatchValidator<T> {
+
+	/**
+	 * @param values never empty.
+	 * @return for each value, in the same order, whether it is valid.
+	 * @throws Exception if the whole batch failed.
+	 */
+	boolean[] validate(List<T> values) throws Exception;
+}
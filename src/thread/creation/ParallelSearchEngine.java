@@ -0,0 +1,295 @@
+package thread.creation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongPredicate;
+
+import thread.interrupt.cancellation.CancellationToken;
+
+/**
+ * The hackers of ThreadPoliceAndHackerExample generalized: N workers search a
+ * range of keys for one that matches a predicate (e.g. the password of the
+ * Vault), each worker in its own thread. The key space is split in one of 2
+ * ways:
+ *
+ * - INTERLEAVED: worker i tries i, i + N, i + 2N... No coordination at all, but
+ * if some keys are much slower to check than others, a worker may end up with
+ * most of the slow ones.
+ * - CHUNKED: the workers take chunks of consecutive keys from a shared cursor
+ * (one getAndAdd per chunk), so a worker that finishes its chunk early just
+ * takes the next one, and the work stays balanced however long each key takes.
+ *
+ * As soon as a worker finds a match, it raises a shared found flag (a volatile
+ * read per key for the others), so all the workers stop after their current
+ * key, instead of calling System.exit. The search also stops when its
+ * {@link CancellationToken} is cancelled, which is how the police arrives.
+ *
+ * If the predicate throws in a worker, the first exception also raises the
+ * flag, so the other workers stop, and it is thrown by search() instead of
+ * reporting a "not found" with the keys of that worker never tried.
+ *
+ * @author pedrorenzo
+ */
+public class ParallelSearchEngine {
+
+	public enum Partitioning {
+		INTERLEAVED, CHUNKED
+	}
+
+	private static final int DEFAULT_CHUNK_SIZE = 64;
+
+	private final int numberOfWorkers;
+	private final Partitioning partitioning;
+	private final int chunkSize;
+
+	public ParallelSearchEngine(final int numberOfWorkers, final Partitioning partitioning) {
+		this(numberOfWorkers, partitioning, DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * @param numberOfWorkers
+	 * @param partitioning
+	 * @param chunkSize       keys per chunk, only used by CHUNKED.
+	 */
+	public ParallelSearchEngine(final int numberOfWorkers, final Partitioning partitioning, final int chunkSize) {
+		if (numberOfWorkers <= 0 || chunkSize <= 0) {
+			throw new IllegalArgumentException("The number of workers and the chunk size must be positive");
+		}
+		this.numberOfWorkers = numberOfWorkers;
+		this.partitioning = partitioning;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Searches until a key matches or all the keys were tried.
+	 *
+	 * @param from    first key.
+	 * @param to      last key, excluded.
+	 * @param isMatch called by many workers at the same time.
+	 * @return what was found and how fast.
+	 * @throws InterruptedException
+	 * @throws RuntimeException     or Error, the first one thrown by isMatch.
+	 */
+	public SearchResult search(final long from, final long to, final LongPredicate isMatch)
+			throws InterruptedException {
+		return search(from, to, isMatch, new CancellationToken());
+	}
+
+	/**
+	 * Searches until a key matches, all the keys were tried or the token is
+	 * cancelled.
+	 *
+	 * @param from    first key.
+	 * @param to      last key, excluded.
+	 * @param isMatch called by many workers at the same time.
+	 * @param token
+	 * @return what was found and how fast.
+	 * @throws InterruptedException
+	 * @throws RuntimeException     or Error, the first one thrown by isMatch.
+	 */
+	public SearchResult search(final long from, final long to, final LongPredicate isMatch,
+			final CancellationToken token) throws InterruptedException {
+		if (to < from) {
+			throw new IllegalArgumentException("The range is empty: " + from + " to " + to);
+		}
+		final Search search = new Search(from, to, isMatch, token);
+		final List<Thread> workers = new ArrayList<>(numberOfWorkers);
+		for (int i = 0; i < numberOfWorkers; i++) {
+			final int worker = i;
+			workers.add(new Thread(() -> {
+				try {
+					if (partitioning == Partitioning.INTERLEAVED) {
+						search.interleaved(worker, numberOfWorkers);
+					} else {
+						search.chunked(chunkSize);
+					}
+				} catch (Throwable e) {
+					search.failed(e);
+				}
+			}, "searcher-" + i));
+		}
+
+		final long startTime = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		try {
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} finally {
+			// If we were interrupted, the workers must not keep searching.
+			search.found = true;
+		}
+		final Throwable failure = search.failure.get();
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			// Only a checked exception thrown sneakily by the predicate gets here.
+			throw new IllegalStateException("A worker failed", failure);
+		}
+		return new SearchResult(search.finder.get(), search.key, search.guesses.sum(), System.nanoTime() - startTime,
+				token.isCancelled());
+	}
+
+	/**
+	 * The state shared by the workers of a search.
+	 */
+	private static class Search {
+		private final long from;
+		private final long to;
+		private final LongPredicate isMatch;
+		private final CancellationToken token;
+		private final AtomicLong cursor;
+		private final AtomicReference<String> finder = new AtomicReference<>();
+		private final AtomicReference<Throwable> failure = new AtomicReference<>();
+		private final LongAdder guesses = new LongAdder();
+		private volatile boolean found;
+		// Written before found, by the finder.
+		private volatile long key;
+
+		private Search(final long from, final long to, final LongPredicate isMatch, final CancellationToken token) {
+			this.from = from;
+			this.to = to;
+			this.isMatch = isMatch;
+			this.token = token;
+			this.cursor = new AtomicLong(from);
+		}
+
+		private void interleaved(final int worker, final int numberOfWorkers) {
+			long tried = 0;
+			// The second condition stops at the overflow past Long.MAX_VALUE.
+			for (long guess = from + worker; guess < to && guess >= from; guess += numberOfWorkers) {
+				if (found || token.isCancelled()) {
+					break;
+				}
+				tried++;
+				if (isMatch.test(guess)) {
+					found(guess);
+					break;
+				}
+			}
+			guesses.add(tried);
+		}
+
+		private void chunked(final int chunkSize) {
+			long tried = 0;
+			long start;
+			while ((start = cursor.getAndAdd(chunkSize)) < to && start >= from) {
+				// start + chunkSize could overflow past Long.MAX_VALUE. If to - start
+				// overflows instead, the range is much longer than a chunk.
+				final long remaining = to - start;
+				final long end = remaining > 0 && remaining < chunkSize ? to : start + chunkSize;
+				for (long guess = start; guess < end; guess++) {
+					if (found || token.isCancelled()) {
+						guesses.add(tried);
+						return;
+					}
+					tried++;
+					if (isMatch.test(guess)) {
+						found(guess);
+						guesses.add(tried);
+						return;
+					}
+				}
+			}
+			guesses.add(tried);
+		}
+
+		/**
+		 * Only the first exception is kept. It stops the other workers as a found
+		 * key does.
+		 */
+		private void failed(final Throwable e) {
+			failure.compareAndSet(null, e);
+			found = true;
+		}
+
+		/**
+		 * Only the first worker to find a key records it.
+		 */
+		private void found(final long guess) {
+			if (finder.compareAndSet(null, Thread.currentThread().getName())) {
+				key = guess;
+				found = true;
+			}
+		}
+	}
+
+	/**
+	 * The outcome of a search.
+	 */
+	public static class SearchResult {
+		private final String finder;
+		private final long key;
+		private final long guesses;
+		private final long elapsedNanos;
+		private final boolean cancelled;
+
+		private SearchResult(final String finder, final long key, final long guesses, final long elapsedNanos,
+				final boolean cancelled) {
+			this.finder = finder;
+			this.key = key;
+			this.guesses = guesses;
+			this.elapsedNanos = elapsedNanos;
+			this.cancelled = cancelled;
+		}
+
+		public boolean isFound() {
+			return finder != null;
+		}
+
+		/**
+		 * @return the key found, only meaningful if isFound().
+		 */
+		public long getKey() {
+			return key;
+		}
+
+		/**
+		 * @return the name of the worker that found the key, or null.
+		 */
+		public String getFinder() {
+			return finder;
+		}
+
+		/**
+		 * @return how many keys were tried by all the workers.
+		 */
+		public long getGuesses() {
+			return guesses;
+		}
+
+		public long getElapsedNanos() {
+			return elapsedNanos;
+		}
+
+		public double getGuessesPerSecond() {
+			return elapsedNanos == 0 ? 0.0 : guesses * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+		}
+
+		/**
+		 * @return <code>true</code> if the token was cancelled before the search
+		 *         ended.
+		 */
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public String toString() {
+			final String outcome = isFound() ? "found " + key + " by " + finder
+					: cancelled ? "cancelled" : "not found";
+			return String.format("%s, %,d guesses in %d ms (%,.0f guesses/s)", outcome, guesses,
+					TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getGuessesPerSecond());
+		}
+	}
+}
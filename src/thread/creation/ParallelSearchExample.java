@@ -0,0 +1,91 @@
+package thread.creation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import thread.interrupt.cancellation.CancellationToken;
+
+/**
+ * The hackers of ThreadPoliceAndHackerExample with the
+ * {@link ParallelSearchEngine}:
+ *
+ * - The Vault takes 5 ms per guess, so 2 hackers try about 400 passwords per
+ * second and may not find it before the police arrives (a token cancelled
+ * after 10 seconds). With 64 hackers, the waiting is done in parallel and the
+ * password is found in less than a second, even on a single core.
+ *
+ * - A predicate that only uses the CPU: a key whose mixed bits end with 22
+ * zeros (about 4 million tries, starting at 1 since mix(0) is 0). Here more workers than cores do not help.
+ *
+ * - At the end, a predicate that throws must make search() throw, and the
+ * last keys before Long.MAX_VALUE must be tried too.
+ *
+ * @author pedrorenzo
+ */
+public class ParallelSearchExample {
+
+	public static void main(String[] args) throws InterruptedException {
+		final int password = new Random().nextInt(ThreadPoliceAndHackerExample.MAX_PASSWORD);
+		final Vault vault = new Vault(password);
+		System.out.println("The password is " + password);
+
+		for (int hackers : new int[] { 2, 64 }) {
+			for (ParallelSearchEngine.Partitioning partitioning : ParallelSearchEngine.Partitioning.values()) {
+				final CancellationToken police = new CancellationToken().cancelAfter(10, TimeUnit.SECONDS);
+				final ParallelSearchEngine engine = new ParallelSearchEngine(hackers, partitioning, 16);
+				final ParallelSearchEngine.SearchResult result = engine.search(0,
+						ThreadPoliceAndHackerExample.MAX_PASSWORD + 1, guess -> vault.isCorrectPassword((int) guess),
+						police);
+				police.cancel("search finished");
+				System.out.println(hackers + " hackers, " + partitioning + ": " + result);
+			}
+		}
+
+		final int cores = Runtime.getRuntime().availableProcessors();
+		for (ParallelSearchEngine.Partitioning partitioning : ParallelSearchEngine.Partitioning.values()) {
+			final ParallelSearchEngine engine = new ParallelSearchEngine(cores, partitioning, 4096);
+			System.out.println(cores + " workers, " + partitioning + ", CPU-bound predicate: "
+					+ engine.search(1, Long.MAX_VALUE, key -> (mix(key) & ((1L << 22) - 1)) == 0));
+		}
+
+		checkFailure();
+		checkEndOfRange();
+	}
+
+	private static void checkFailure() throws InterruptedException {
+		for (ParallelSearchEngine.Partitioning partitioning : ParallelSearchEngine.Partitioning.values()) {
+			final ParallelSearchEngine engine = new ParallelSearchEngine(4, partitioning, 16);
+			try {
+				final ParallelSearchEngine.SearchResult result = engine.search(0, 1_000_000, key -> {
+					if (key == 5000) {
+						throw new IllegalStateException("The vault is broken");
+					}
+					return false;
+				});
+				System.out.println("WRONG: " + partitioning + " hid the exception: " + result);
+			} catch (IllegalStateException e) {
+				System.out.println("OK: " + partitioning + " threw \"" + e.getMessage() + "\"");
+			}
+		}
+	}
+
+	private static void checkEndOfRange() throws InterruptedException {
+		for (ParallelSearchEngine.Partitioning partitioning : ParallelSearchEngine.Partitioning.values()) {
+			final ParallelSearchEngine engine = new ParallelSearchEngine(4, partitioning, 64);
+			final ParallelSearchEngine.SearchResult result = engine.search(Long.MAX_VALUE - 100, Long.MAX_VALUE,
+					key -> key == Long.MAX_VALUE - 1);
+			System.out.println((result.isFound() ? "OK: " : "WRONG: ") + partitioning
+					+ " near Long.MAX_VALUE: " + result);
+		}
+	}
+
+	/**
+	 * The finalizer of SplitMix64: a cheap way to make every bit depend on all
+	 * the bits of the key.
+	 */
+	private static long mix(long key) {
+		key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+		key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+		return key ^ (key >>> 31);
+	}
+}
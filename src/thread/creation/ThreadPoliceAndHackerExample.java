@@ -13,6 +13,10 @@ import java.util.Random;
  * attempts in ascending order and the other in decreasing order, the result
  * will vary.
  * 
+ * The ParallelSearchEngine splits the same search between any number of
+ * threads and stops all of them as soon as one finds the password, without
+ * System.exit.
+ * 
  * @author pedrorenzo
  */
 public class ThreadPoliceAndHackerExample {
@@ -36,26 +40,6 @@ public class ThreadPoliceAndHackerExample {
 		}
 	}
 
-	private static class Vault {
-		
-		private int password;
-
-		public Vault(final int password) {
-			this.password = password;
-		}
-
-		// Verify if the password is correct.
-		public boolean isCorrectPassword(final int guess) {
-			try {
-				// This is just to delay the hackers :D.
-				Thread.sleep(5);
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-			return this.password == guess;
-		}
-	}
-
 	private static abstract class HackerThread extends Thread {
 		
 		protected Vault vault;
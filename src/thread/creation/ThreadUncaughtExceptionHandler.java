@@ -3,6 +3,11 @@ package thread.creation;
 /**
  * Example to how handle Uncaught Exception in the thread.
  * 
+ * The handler only prints a line and the thread is gone. The
+ * SupervisedThreadFactory installs a handler like this in every thread of a
+ * pool and counts the failures, and the Supervisor uses it to restart the
+ * failed workers.
+ * 
  * @author pedrorenzo
  */
 public class ThreadUncaughtExceptionHandler {
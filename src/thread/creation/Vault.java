@@ -0,0 +1,44 @@
+package thread.creation;
+
+/**
+ * The vault of ThreadPoliceAndHackerExample, shared with the other examples
+ * that try to open it.
+ *
+ * @author pedrorenzo
+ */
+class Vault {
+
+	private int password;
+
+	public Vault(final int password) {
+		this.password = password;
+	}
+
+	// Verify if the password is correct.
+	public boolean isCorrectPassword(final int guess) {
+		try {
+			// This is just to delay the hackers :D.
+			Thread.sleep(5);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		return this.password == guess;
+	}
+
+	/**
+	 * Verifies many guesses with a single delay, as a remote vault that accepts
+	 * batches would take a single round trip for all of them.
+	 *
+	 * @param guesses
+	 * @return for each guess, whether it is the password.
+	 * @throws InterruptedException
+	 */
+	public boolean[] areCorrectPasswords(final int[] guesses) throws InterruptedException {
+		Thread.sleep(5);
+		final boolean[] correct = new boolean[guesses.length];
+		for (int i = 0; i < guesses.length; i++) {
+			correct[i] = this.password == guesses[i];
+		}
+		return correct;
+	}
+}
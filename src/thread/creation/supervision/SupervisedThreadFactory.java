@@ -0,0 +1,78 @@
+package thread.creation.supervision;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A ThreadFactory that does for every thread of a pool what
+ * ThreadUncaughtExceptionHandler does for one: it names the threads
+ * ("pool-0", "pool-1"...) and installs an uncaught exception handler, which
+ * counts the failures of the pool and passes them to a listener, e.g. a
+ * {@link Supervisor} that restarts the worker. Without it, a thread that
+ * throws just prints its stack trace and disappears.
+ *
+ * It can also be given to an Executor, to count the failures of its threads.
+ *
+ * @author pedrorenzo
+ */
+public class SupervisedThreadFactory implements ThreadFactory {
+	private final String poolName;
+	private final boolean daemon;
+	private final BiConsumer<Thread, Throwable> failureListener;
+	private final AtomicInteger threadNumber = new AtomicInteger();
+	private final LongAdder failures = new LongAdder();
+
+	/**
+	 * Creates non-daemon threads that print their failures to System.err.
+	 *
+	 * @param poolName
+	 */
+	public SupervisedThreadFactory(final String poolName) {
+		this(poolName, false, (thread, failure) -> {
+			System.err.println("A critical error happened in thread " + thread.getName() + ": " + failure);
+		});
+	}
+
+	/**
+	 * @param poolName        the prefix of the names of the threads.
+	 * @param daemon
+	 * @param failureListener called by the failed thread, just before it ends.
+	 */
+	public SupervisedThreadFactory(final String poolName, final boolean daemon,
+			final BiConsumer<Thread, Throwable> failureListener) {
+		this.poolName = poolName;
+		this.daemon = daemon;
+		this.failureListener = failureListener;
+	}
+
+	@Override
+	public Thread newThread(final Runnable runnable) {
+		final Thread thread = new Thread(runnable, poolName + "-" + threadNumber.getAndIncrement());
+		thread.setDaemon(daemon);
+		thread.setUncaughtExceptionHandler((failedThread, failure) -> {
+			failures.increment();
+			failureListener.accept(failedThread, failure);
+		});
+		return thread;
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	/**
+	 * @return how many threads of this factory ended with an exception.
+	 */
+	public long getFailures() {
+		return failures.sum();
+	}
+
+	/**
+	 * @return how many threads this factory has created.
+	 */
+	public int getThreadsCreated() {
+		return threadNumber.get();
+	}
+}
@@ -0,0 +1,219 @@
+package thread.creation.supervision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Keeps long-running workers (as the BusinessLogic and MetricsPrinter threads
+ * of the metrics examples) alive: when a worker throws an exception, the
+ * supervisor starts it again in a new thread, as the supervisors of Erlang do,
+ * with one of 2 strategies:
+ *
+ * - ONE_FOR_ONE: only the failed worker is restarted. For independent workers.
+ * - ALL_FOR_ONE: the other workers are interrupted and, when all of them have
+ * ended, all are started again. For workers that depend on each other, where
+ * the state of the others may be wrong after one of them failed.
+ *
+ * The restart waits for a backoff, so a worker that fails at once (e.g. a
+ * database that is down) does not use a whole core failing again and again:
+ * it doubles at each consecutive failure of the worker, up to a maximum, and
+ * goes back to the initial one when the worker had been running for longer
+ * than the maximum backoff before failing.
+ *
+ * The workers are created by a {@link Supplier}, so each restart can start
+ * from a clean state, and run in the threads of a
+ * {@link SupervisedThreadFactory}, which also counts the failures. A worker
+ * that returns normally is not restarted. The workers must stop when they are
+ * interrupted, otherwise ALL_FOR_ONE waits for them forever.
+ *
+ * @author pedrorenzo
+ */
+public class Supervisor {
+
+	public enum Strategy {
+		ONE_FOR_ONE, ALL_FOR_ONE
+	}
+
+	private final Strategy strategy;
+	private final long initialBackoffNanos;
+	private final long maxBackoffNanos;
+	private final SupervisedThreadFactory threadFactory;
+	private final ScheduledExecutorService restarter;
+	private final LongAdder restarts = new LongAdder();
+
+	// Guarded by this.
+	private final List<Worker> workers = new ArrayList<>();
+	private boolean stopped;
+
+	/**
+	 * @param name           the prefix of the names of the threads.
+	 * @param strategy
+	 * @param initialBackoff the wait before the first restart.
+	 * @param maxBackoff     the longest wait before a restart.
+	 * @param unit
+	 */
+	public Supervisor(final String name, final Strategy strategy, final long initialBackoff, final long maxBackoff,
+			final TimeUnit unit) {
+		if (initialBackoff < 0 || maxBackoff < initialBackoff) {
+			throw new IllegalArgumentException("The backoffs must be 0 <= initial <= max");
+		}
+		this.strategy = strategy;
+		this.initialBackoffNanos = unit.toNanos(initialBackoff);
+		this.maxBackoffNanos = unit.toNanos(maxBackoff);
+		this.threadFactory = new SupervisedThreadFactory(name, false, this::failed);
+		this.restarter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, name + "-supervisor");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Starts a worker under this supervisor.
+	 *
+	 * @param worker creates the work of each run of the worker.
+	 */
+	public synchronized void supervise(final Supplier<? extends Runnable> worker) {
+		if (stopped) {
+			throw new IllegalStateException("The supervisor is stopped");
+		}
+		final Worker newWorker = new Worker(worker);
+		workers.add(newWorker);
+		start(newWorker);
+	}
+
+	/**
+	 * Interrupts all the workers and does not restart them anymore.
+	 */
+	public synchronized void stop() {
+		stopped = true;
+		restarter.shutdownNow();
+		for (Worker worker : workers) {
+			if (worker.thread != null) {
+				worker.thread.interrupt();
+				worker.thread = null;
+			}
+		}
+	}
+
+	/**
+	 * @return how many workers were restarted.
+	 */
+	public long getRestarts() {
+		return restarts.sum();
+	}
+
+	/**
+	 * @return how many workers failed.
+	 */
+	public long getFailures() {
+		return threadFactory.getFailures();
+	}
+
+	/**
+	 * Called by the uncaught exception handler of the failed thread.
+	 */
+	private synchronized void failed(final Thread thread, final Throwable failure) {
+		final Worker worker = workerOf(thread);
+		// The threads interrupted by ALL_FOR_ONE, or by stop(), are not workers
+		// anymore, so their exceptions are ignored.
+		if (stopped || worker == null) {
+			return;
+		}
+		worker.thread = null;
+		final long backoffNanos = worker.nextBackoff();
+		System.err.println("Worker " + thread.getName() + " failed with " + failure + ", restarting in "
+				+ TimeUnit.NANOSECONDS.toMillis(backoffNanos) + " ms");
+
+		if (strategy == Strategy.ONE_FOR_ONE) {
+			restarter.schedule(() -> restart(List.of(worker), List.of()), backoffNanos, TimeUnit.NANOSECONDS);
+			return;
+		}
+		final List<Thread> others = new ArrayList<>();
+		for (Worker other : workers) {
+			if (other.thread != null && !other.thread.isAlive()) {
+				// It ended normally.
+				other.finished = true;
+				other.thread = null;
+			} else if (other.thread != null) {
+				others.add(other.thread);
+				other.thread.interrupt();
+				other.thread = null;
+			}
+		}
+		restarter.schedule(() -> restart(List.copyOf(workers), others), backoffNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Runs in the restarter thread: waits for the old threads to end and starts
+	 * the workers again.
+	 */
+	private void restart(final List<Worker> toRestart, final List<Thread> oldThreads) {
+		try {
+			for (Thread oldThread : oldThreads) {
+				oldThread.join();
+			}
+		} catch (InterruptedException e) {
+			// Only stop() interrupts the restarter.
+			return;
+		}
+		synchronized (this) {
+			if (stopped) {
+				return;
+			}
+			for (Worker worker : toRestart) {
+				if (!worker.finished) {
+					start(worker);
+					restarts.increment();
+				}
+			}
+		}
+	}
+
+	private void start(final Worker worker) {
+		worker.thread = threadFactory.newThread(worker.factory.get());
+		worker.startTime = System.nanoTime();
+		worker.thread.start();
+	}
+
+	private Worker workerOf(final Thread thread) {
+		for (Worker worker : workers) {
+			if (worker.thread == thread) {
+				return worker;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A supervised worker and its current thread. Guarded by the supervisor.
+	 */
+	private class Worker {
+		private final Supplier<? extends Runnable> factory;
+		private Thread thread;
+		private long startTime;
+		private int consecutiveFailures;
+		private boolean finished;
+
+		private Worker(final Supplier<? extends Runnable> factory) {
+			this.factory = factory;
+		}
+
+		private long nextBackoff() {
+			if (System.nanoTime() - startTime > maxBackoffNanos) {
+				consecutiveFailures = 0;
+			}
+			final int doublings = consecutiveFailures++;
+			// The shift would overflow.
+			if (doublings >= Long.numberOfLeadingZeros(initialBackoffNanos) - 1) {
+				return maxBackoffNanos;
+			}
+			return Math.min(maxBackoffNanos, initialBackoffNanos << doublings);
+		}
+	}
+}
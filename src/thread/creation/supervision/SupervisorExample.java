@@ -0,0 +1,83 @@
+package thread.creation.supervision;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 4 workers like the BusinessLogic threads of the metrics examples, which take
+ * 1 ms per operation and fail at about 1 in 500 operations, for 3 seconds:
+ *
+ * - Without supervision, the threads disappear one after the other and the
+ * throughput drops to zero after a second or so.
+ * - With ONE_FOR_ONE, each failure costs the backoff of one worker (a few ms),
+ * so the throughput stays close to 4 workers all the time.
+ * - With ALL_FOR_ONE, each failure stops all the workers during the backoff,
+ * which costs more, but still much less than losing them.
+ *
+ * @author pedrorenzo
+ */
+public class SupervisorExample {
+	private static final int WORKERS = 4;
+	private static final long DURATION_MILLIS = 3000;
+
+	public static void main(String[] args) throws InterruptedException {
+		final LongAdder operations = new LongAdder();
+		final SupervisedThreadFactory threadFactory = new SupervisedThreadFactory("unsupervised", true,
+				(thread, failure) -> {
+				});
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < WORKERS; i++) {
+			threads.add(threadFactory.newThread(new BusinessLogic(operations)));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		Thread.sleep(DURATION_MILLIS);
+		for (Thread thread : threads) {
+			thread.interrupt();
+		}
+		print("Unsupervised", operations.sumThenReset(), threadFactory.getFailures(), 0);
+
+		for (Supervisor.Strategy strategy : Supervisor.Strategy.values()) {
+			final Supervisor supervisor = new Supervisor(strategy.name().toLowerCase(), strategy, 5, 500,
+					TimeUnit.MILLISECONDS);
+			for (int i = 0; i < WORKERS; i++) {
+				supervisor.supervise(() -> new BusinessLogic(operations));
+			}
+			Thread.sleep(DURATION_MILLIS);
+			supervisor.stop();
+			print(strategy.name(), operations.sumThenReset(), supervisor.getFailures(), supervisor.getRestarts());
+		}
+	}
+
+	private static void print(final String name, final long operations, final long failures, final long restarts) {
+		System.out.printf("%s: %d operations/s, %d failures, %d restarts%n", name,
+				operations * 1000 / DURATION_MILLIS, failures, restarts);
+	}
+
+	private static class BusinessLogic implements Runnable {
+		private final LongAdder operations;
+
+		private BusinessLogic(final LongAdder operations) {
+			this.operations = operations;
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (!Thread.currentThread().isInterrupted()) {
+					Thread.sleep(1);
+					if (ThreadLocalRandom.current().nextInt(500) == 0) {
+						throw new IllegalStateException("Intentional Exception");
+					}
+					operations.increment();
+				}
+			} catch (InterruptedException e) {
+				// Stopped by the supervisor.
+			}
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package thread.interrupt;
+
+import java.math.BigInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The LongComputationTask of the interrupt examples calculates base^power
+ * multiplying base into the result power times: 100 million multiplications of
+ * an ever larger number.
+ *
+ * This engine uses exponentiation by squaring: it reads the bits of the power
+ * from the highest to the lowest, squaring the result at each bit and also
+ * multiplying it by base when the bit is 1. E.g. x^13 = x^(1101 in binary) =
+ * ((x² * x)²)² * x. That is about 2 * log2(power) multiplications instead of
+ * power: 54 for a power of 100 million.
+ *
+ * The numbers still get huge, so:
+ * - With a modulus, the result is reduced after each multiplication and never
+ * gets larger than the modulus (as BigInteger.modPow, but interruptible).
+ * - The multiplication of large numbers is split with Karatsuba: a = a1 * 2^k
+ * + a0 and b = b1 * 2^k + b0, then a * b = a1b1 * 2^2k + ((a0 + a1)(b0 + b1) -
+ * a1b1 - a0b0) * 2^k + a0b0. The 3 products are independent, so they run as
+ * fork-join subtasks, each split again while large. The small ones go to
+ * BigInteger.multiply, which has its own Karatsuba and Toom-Cook, but in a
+ * single thread.
+ *
+ * The interruption of the calling thread is checked before each squaring and
+ * before each piece of a parallel multiplication, so an interrupted
+ * computation stops after at most one piece, not after the whole power.
+ *
+ * @author pedrorenzo
+ */
+public class PowerEngine {
+	// Below this, splitting costs more than it saves.
+	private static final int PARALLEL_THRESHOLD_BITS = 1 << 17;
+
+	private final ForkJoinPool pool;
+
+	public PowerEngine() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	public PowerEngine(final ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * @param base
+	 * @param power non-negative.
+	 * @return base^power.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 */
+	public BigInteger pow(final BigInteger base, final BigInteger power) throws InterruptedException {
+		return pow(base, power, null);
+	}
+
+	/**
+	 * @param base
+	 * @param power   non-negative.
+	 * @param modulus positive, or null for no modulus.
+	 * @return base^power mod modulus.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 */
+	public BigInteger pow(final BigInteger base, final BigInteger power, final BigInteger modulus)
+			throws InterruptedException {
+		if (power.signum() < 0) {
+			throw new IllegalArgumentException("The power must not be negative: " + power);
+		}
+		if (modulus != null && modulus.signum() <= 0) {
+			throw new IllegalArgumentException("The modulus must be positive: " + modulus);
+		}
+
+		final Thread caller = Thread.currentThread();
+		final BigInteger reducedBase = modulus == null ? base : base.mod(modulus);
+		BigInteger result = modulus == null ? BigInteger.ONE : BigInteger.ONE.mod(modulus);
+		for (int bit = power.bitLength() - 1; bit >= 0; bit--) {
+			if (Thread.interrupted()) {
+				throw new InterruptedException("Interrupted at bit " + bit + " of the power");
+			}
+			result = reduce(multiply(result, result, caller), modulus);
+			if (power.testBit(bit)) {
+				result = reduce(multiply(result, reducedBase, caller), modulus);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @param a
+	 * @param b
+	 * @return a * b, in parallel if both are large.
+	 * @throws InterruptedException if the calling thread is interrupted.
+	 */
+	public BigInteger multiply(final BigInteger a, final BigInteger b) throws InterruptedException {
+		return multiply(a, b, Thread.currentThread());
+	}
+
+	private BigInteger multiply(final BigInteger a, final BigInteger b, final Thread caller)
+			throws InterruptedException {
+		if (Math.min(a.bitLength(), b.bitLength()) < PARALLEL_THRESHOLD_BITS) {
+			return a.multiply(b);
+		}
+		try {
+			final BigInteger product = pool
+					.invoke(new KaratsubaTask(a.abs(), b.abs(), caller, new AtomicBoolean()));
+			return a.signum() * b.signum() < 0 ? product.negate() : product;
+		} catch (CancellationException e) {
+			// The subtasks saw the interruption, which is still set.
+			Thread.interrupted();
+			throw new InterruptedException("Interrupted during a multiplication");
+		}
+	}
+
+	private static BigInteger reduce(final BigInteger value, final BigInteger modulus) {
+		return modulus == null ? value : value.mod(modulus);
+	}
+
+	/**
+	 * The product of 2 non-negative numbers. The tasks run in the threads of the
+	 * pool, so they check the interruption of the thread that asked for the
+	 * product. The first task to see it tells the others through the cancelled
+	 * flag, since the caller clears its interruption when it gives up.
+	 */
+	private static class KaratsubaTask extends RecursiveTask<BigInteger> {
+		private static final long serialVersionUID = 1L;
+
+		private final BigInteger a;
+		private final BigInteger b;
+		private final Thread caller;
+		private final AtomicBoolean cancelled;
+
+		private KaratsubaTask(final BigInteger a, final BigInteger b, final Thread caller,
+				final AtomicBoolean cancelled) {
+			this.a = a;
+			this.b = b;
+			this.caller = caller;
+			this.cancelled = cancelled;
+		}
+
+		@Override
+		protected BigInteger compute() {
+			if (cancelled.get() || caller.isInterrupted()) {
+				cancelled.set(true);
+				throw new CancellationException();
+			}
+			if (Math.min(a.bitLength(), b.bitLength()) < PARALLEL_THRESHOLD_BITS) {
+				return a.multiply(b);
+			}
+
+			final int half = Math.max(a.bitLength(), b.bitLength()) / 2;
+			final BigInteger a1 = a.shiftRight(half);
+			final BigInteger a0 = a.subtract(a1.shiftLeft(half));
+			final BigInteger b1 = b.shiftRight(half);
+			final BigInteger b0 = b.subtract(b1.shiftLeft(half));
+
+			final ForkJoinTask<BigInteger> high = new KaratsubaTask(a1, b1, caller, cancelled).fork();
+			final ForkJoinTask<BigInteger> low = new KaratsubaTask(a0, b0, caller, cancelled).fork();
+			final BigInteger middle = new KaratsubaTask(a0.add(a1), b0.add(b1), caller, cancelled).compute();
+			final BigInteger highProduct = high.join();
+			final BigInteger lowProduct = low.join();
+
+			return highProduct.shiftLeft(2 * half)
+					.add(middle.subtract(highProduct).subtract(lowProduct).shiftLeft(half)).add(lowProduct);
+		}
+	}
+}
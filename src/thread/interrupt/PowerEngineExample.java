@@ -0,0 +1,81 @@
+package thread.interrupt;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+/**
+ * Checks the {@link PowerEngine} against BigInteger, compares its time with
+ * the loop of LongComputationTask, and measures how long an interrupted
+ * computation of 200000^100000000 (the one of the interrupt examples) takes to
+ * stop.
+ *
+ * @author pedrorenzo
+ */
+public class PowerEngineExample {
+
+	public static void main(String[] args) throws InterruptedException {
+		final PowerEngine engine = new PowerEngine();
+		final Random random = new Random(42);
+
+		boolean correct = true;
+		for (int i = 0; i < 20; i++) {
+			final BigInteger base = new BigInteger(64, random).subtract(BigInteger.ONE.shiftLeft(62));
+			final int power = random.nextInt(2000);
+			final BigInteger modulus = new BigInteger(256, random).add(BigInteger.ONE);
+			correct &= engine.pow(base, BigInteger.valueOf(power)).equals(base.pow(power));
+			correct &= engine.pow(base, BigInteger.valueOf(power), modulus)
+					.equals(base.modPow(BigInteger.valueOf(power), modulus));
+		}
+		final BigInteger a = new BigInteger(4_000_000, random);
+		final BigInteger b = new BigInteger(3_000_000, random).negate();
+		// Once before timing, so both are compiled by the JIT.
+		engine.multiply(a, b);
+		a.multiply(b);
+		final long parallelStart = System.nanoTime();
+		final BigInteger parallelProduct = engine.multiply(a, b);
+		final long parallelTime = millisSince(parallelStart);
+		final long sequentialStart = System.nanoTime();
+		final BigInteger sequentialProduct = a.multiply(b);
+		final long sequentialTime = millisSince(sequentialStart);
+		correct &= parallelProduct.equals(sequentialProduct);
+		System.out.println("Results equal to BigInteger: " + (correct ? "OK" : "WRONG") + ", 4M x 3M bits in "
+				+ parallelTime + " ms (BigInteger.multiply " + sequentialTime + " ms)");
+
+		final BigInteger base = new BigInteger("200000");
+		final long loopStart = System.nanoTime();
+		BigInteger loopResult = BigInteger.ONE;
+		for (BigInteger i = BigInteger.ZERO; i.compareTo(BigInteger.valueOf(20000)) != 0; i = i.add(BigInteger.ONE)) {
+			loopResult = loopResult.multiply(base);
+		}
+		final long loopTime = millisSince(loopStart);
+		final long squaringStart = System.nanoTime();
+		final BigInteger squaringResult = engine.pow(base, BigInteger.valueOf(20000));
+		System.out.println("200000^20000: loop " + loopTime + " ms, squaring " + millisSince(squaringStart) + " ms, "
+				+ (loopResult.equals(squaringResult) ? "OK" : "WRONG"));
+
+		final BigInteger modulus = BigInteger.ONE.shiftLeft(521).subtract(BigInteger.ONE);
+		final long modularStart = System.nanoTime();
+		final BigInteger modular = engine.pow(base, new BigInteger("100000000"), modulus);
+		System.out.println("200000^100000000 mod (2^521 - 1) in " + millisSince(modularStart) + " ms, "
+				+ (modular.equals(base.modPow(new BigInteger("100000000"), modulus)) ? "OK" : "WRONG"));
+
+		final long[] interruptedAt = new long[1];
+		final Thread thread = new Thread(() -> {
+			try {
+				engine.pow(base, new BigInteger("100000000"));
+			} catch (InterruptedException e) {
+				System.out.println("Stopped " + millisSince(interruptedAt[0]) + " ms after the interruption: "
+						+ e.getMessage());
+			}
+		});
+		thread.start();
+		Thread.sleep(2000);
+		interruptedAt[0] = System.nanoTime();
+		thread.interrupt();
+		thread.join();
+	}
+
+	private static long millisSince(final long start) {
+		return (System.nanoTime() - start) / 1_000_000;
+	}
+}
@@ -6,6 +6,11 @@ import java.math.BigInteger;
  * Example of Daemon Threads. These are threads that run in the background and
  * do not block our application from finishing
  * 
+ * A daemon thread is simply abandoned when the application finishes, in the
+ * middle of whatever it was doing, without any cleanup. The CancellationToken
+ * of thread.interrupt.cancellation asks the computations to stop, and
+ * measures how long each one takes to do it.
+ * 
  * @author pedrorenzo
  */
 public class ThreadInterruptionWithDaemonThreads {
@@ -0,0 +1,298 @@
+package thread.interrupt.cancellation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import thread.metrics.MetricsRecorder;
+import thread.metrics.MetricsSnapshot;
+
+/**
+ * A way to ask a computation to stop that, unlike Thread.interrupt(), belongs
+ * to the computation and not to the thread running it: a pool thread can run
+ * many computations, one after the other, each with its own token, and the
+ * token is not cleared by whoever catches an InterruptedException.
+ *
+ * - The computation polls isCancelled(), which is a plain volatile read. For
+ * tight loops, a {@link Poller} only reads it once every N iterations.
+ * - Tokens form a tree: cancelling a token cancels all its children (e.g. a
+ * request and its subtasks), but a child can be cancelled alone.
+ * - cancelAfter() cancels the token at a deadline, with a shared timer thread.
+ * - onCancel() registers callbacks, e.g. to interrupt a thread blocked in a
+ * sleep or a wait, or to close a socket, which polling cannot wake up. It
+ * returns a {@link Registration}, to remove the callback once the work it
+ * would stop is done, so the token does not keep it.
+ * - A token that is no longer needed (e.g. of a request that has finished) is
+ * closed: it leaves its parent, which would otherwise keep all its finished
+ * children, and its deadline leaves the timer.
+ * - When the computation stops, it calls acknowledge(), which measures the
+ * time from the cancellation to the stop. These times are recorded, for the
+ * whole tree, in a MetricsRecorder, so we can check the percentiles against
+ * the time we promised for a shutdown.
+ *
+ * @author pedrorenzo
+ */
+public class CancellationToken implements AutoCloseable {
+	private final CancellationToken parent;
+	private final MetricsRecorder stopLatencies;
+	private volatile boolean cancelled;
+	// Written before cancelled, so whoever sees cancelled also sees them.
+	private volatile long cancelledAt;
+	private volatile String reason;
+	// Guarded by this, null once cancelled. A set, so removing is not O(n).
+	private Set<Registration> callbacks = new LinkedHashSet<>();
+	// Guarded by this.
+	private List<ScheduledFuture<?>> deadlines = new ArrayList<>();
+	// The callback of the parent that cancels this token.
+	private volatile Registration cancelFromParent;
+
+	/**
+	 * Creates a root token.
+	 */
+	public CancellationToken() {
+		this(null, new MetricsRecorder());
+	}
+
+	private CancellationToken(final CancellationToken parent, final MetricsRecorder stopLatencies) {
+		this.parent = parent;
+		this.stopLatencies = stopLatencies;
+	}
+
+	/**
+	 * @return a token cancelled with this one, or alone.
+	 */
+	public CancellationToken newChild() {
+		final CancellationToken child = new CancellationToken(this, stopLatencies);
+		child.cancelFromParent = onCancel(() -> child.cancel(reason));
+		return child;
+	}
+
+	/**
+	 * Cancels the token when the timeout expires, unless it is cancelled before.
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return this token.
+	 */
+	public CancellationToken cancelAfter(final long timeout, final TimeUnit unit) {
+		final ScheduledFuture<?> deadline = Timer.INSTANCE.schedule(
+				() -> cancel("deadline of " + unit.toMillis(timeout) + " ms expired"), timeout, unit);
+		synchronized (this) {
+			deadlines.add(deadline);
+		}
+		// Does not keep the token in the timer queue after it is cancelled.
+		onCancel(() -> deadline.cancel(false));
+		return this;
+	}
+
+	/**
+	 * Cancels the token and its children and runs the callbacks, in this thread.
+	 * Only the first call does something.
+	 *
+	 * @param reason
+	 */
+	public void cancel(final String reason) {
+		final Set<Registration> toRun;
+		synchronized (this) {
+			if (cancelled) {
+				return;
+			}
+			this.reason = reason;
+			this.cancelledAt = System.nanoTime();
+			this.cancelled = true;
+			toRun = callbacks;
+			callbacks = null;
+		}
+		final Registration fromParent = cancelFromParent;
+		if (fromParent != null) {
+			fromParent.close();
+		}
+		for (Registration registration : toRun) {
+			try {
+				registration.callback.run();
+			} catch (RuntimeException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> once the token is cancelled. A single volatile
+	 *         read.
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * @throws CancellationException if the token is cancelled.
+	 */
+	public void throwIfCancelled() {
+		if (cancelled) {
+			throw new CancellationException(reason);
+		}
+	}
+
+	/**
+	 * @param callback runs when the token is cancelled, or right away if it
+	 *                 already is.
+	 * @return closing it removes the callback, if it has not run yet.
+	 */
+	public Registration onCancel(final Runnable callback) {
+		final Registration registration = new Registration(this, callback);
+		synchronized (this) {
+			if (!cancelled) {
+				callbacks.add(registration);
+				return registration;
+			}
+		}
+		callback.run();
+		return registration;
+	}
+
+	/**
+	 * Says that the token is no longer needed, without cancelling it: it leaves
+	 * its parent, its deadlines leave the timer and its callbacks, including
+	 * those of its children, are removed without running. Closing a root token
+	 * just does the last two.
+	 */
+	@Override
+	public void close() {
+		final List<ScheduledFuture<?>> toCancel;
+		synchronized (this) {
+			if (callbacks != null) {
+				callbacks.clear();
+			}
+			toCancel = deadlines;
+			deadlines = new ArrayList<>();
+		}
+		for (ScheduledFuture<?> deadline : toCancel) {
+			deadline.cancel(false);
+		}
+		final Registration fromParent = cancelFromParent;
+		if (fromParent != null) {
+			fromParent.close();
+		}
+	}
+
+	/**
+	 * Called by the computation when it stops because of the cancellation.
+	 *
+	 * @return the time from the cancellation to now.
+	 */
+	public long acknowledge() {
+		if (!cancelled) {
+			throw new IllegalStateException("The token was not cancelled");
+		}
+		final long latency = System.nanoTime() - cancelledAt;
+		stopLatencies.addSample(latency);
+		return latency;
+	}
+
+	/**
+	 * @return the times from the cancellation to the stop of all the
+	 *         computations of the tree that acknowledged, in nanoseconds.
+	 */
+	public MetricsSnapshot getStopLatencies() {
+		return stopLatencies.snapshot();
+	}
+
+	public String getReason() {
+		return reason;
+	}
+
+	/**
+	 * @param interval how many calls of Poller.isCancelled() read the token once.
+	 * @return a poller for a single thread.
+	 */
+	public Poller newPoller(final int interval) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("The interval must be positive: " + interval);
+		}
+		return new Poller(this, interval);
+	}
+
+	/**
+	 * @return the callbacks waiting for the cancellation, including the ones of
+	 *         the children.
+	 */
+	synchronized int getCallbacks() {
+		return callbacks == null ? 0 : callbacks.size();
+	}
+
+	private synchronized void removeCallback(final Registration registration) {
+		if (callbacks != null) {
+			callbacks.remove(registration);
+		}
+	}
+
+	/**
+	 * A callback registered with onCancel().
+	 */
+	public static class Registration implements AutoCloseable {
+		private final CancellationToken token;
+		private final Runnable callback;
+
+		private Registration(final CancellationToken token, final Runnable callback) {
+			this.token = token;
+			this.callback = callback;
+		}
+
+		/**
+		 * Removes the callback, if it has not run yet.
+		 */
+		@Override
+		public void close() {
+			token.removeCallback(this);
+		}
+	}
+
+	/**
+	 * Reads the token only once every interval calls, for loops where even a
+	 * volatile read per iteration costs too much. The stop is delayed by up to
+	 * interval iterations, so the interval must fit the time an iteration takes:
+	 * e.g. 1024 iterations of 100 ns are about 100 us.
+	 *
+	 * A poller is not thread safe: each thread needs its own.
+	 */
+	public static class Poller {
+		private final CancellationToken token;
+		private final int interval;
+		private int countdown;
+
+		private Poller(final CancellationToken token, final int interval) {
+			this.token = token;
+			this.interval = interval;
+			this.countdown = interval;
+		}
+
+		public boolean isCancelled() {
+			if (--countdown > 0) {
+				return false;
+			}
+			countdown = interval;
+			return token.cancelled;
+		}
+	}
+
+	/**
+	 * The thread of the deadlines, created on the first use. The deadlines
+	 * cancelled before they expire leave its queue right away.
+	 */
+	private static class Timer {
+		private static final ScheduledThreadPoolExecutor INSTANCE = new ScheduledThreadPoolExecutor(1, runnable -> {
+			final Thread thread = new Thread(runnable, "cancellation-timer");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		static {
+			INSTANCE.setRemoveOnCancelPolicy(true);
+		}
+	}
+}
@@ -0,0 +1,115 @@
+package thread.interrupt.cancellation;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import thread.metrics.MetricsSnapshot;
+
+/**
+ * The LongComputationTask of the interrupt examples, stopped with
+ * {@link CancellationToken}s instead of Thread.interrupt() or daemon threads:
+ *
+ * - 3 computations poll the server token with a {@link CancellationToken.Poller}
+ * every 1, 16 and 256 multiplications;
+ * - a task blocked in a sleep, which polling cannot wake up, is interrupted by
+ * a callback of the token;
+ * - a request token, child of the server token, has a deadline of 300 ms and 2
+ * computations of its own, which stop at the deadline.
+ *
+ * After 1 second the server token is cancelled (a shutdown) and all the tasks
+ * still running stop. Each one prints how long it took to stop after the
+ * cancellation, and at the end we print the percentiles of all of them, which
+ * is what a shutdown time promise would be checked against. The multiplications
+ * get slower as the result grows, so the longer the polling interval, the
+ * longer the stop.
+ *
+ * Before the shutdown, 1000 short requests run in the main thread, each with a
+ * child token and a callback that would interrupt it. Both are closed when the
+ * request ends, so their parent token does not keep any of them.
+ *
+ * @author pedrorenzo
+ */
+public class CancellationTokenExample {
+	private static final BigInteger BASE = new BigInteger("200000");
+
+	public static void main(String[] args) throws InterruptedException {
+		final CancellationToken server = new CancellationToken();
+		final CancellationToken request = server.newChild().cancelAfter(300, TimeUnit.MILLISECONDS);
+		final CancellationToken.Registration interruptSleeper;
+
+		final List<Thread> threads = new ArrayList<>();
+		for (int interval : new int[] { 1, 16, 256 }) {
+			threads.add(new Thread(() -> computePower("server task polling every " + interval, server, interval)));
+		}
+		threads.add(new Thread(() -> computePower("request task 1", request, 1)));
+		threads.add(new Thread(() -> computePower("request task 2", request, 1)));
+		final Thread sleeper = new Thread(() -> sleep(server));
+		interruptSleeper = server.onCancel(sleeper::interrupt);
+		threads.add(sleeper);
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		final CancellationToken batch = server.newChild();
+		BigInteger sum = BigInteger.ZERO;
+		for (int i = 0; i < 1000; i++) {
+			try (CancellationToken shortRequest = batch.newChild()) {
+				final CancellationToken.Registration interrupt = shortRequest
+						.onCancel(Thread.currentThread()::interrupt);
+				try {
+					shortRequest.throwIfCancelled();
+					sum = sum.add(BASE.pow(i));
+				} finally {
+					interrupt.close();
+				}
+			}
+		}
+		System.out.println((batch.getCallbacks() == 0 ? "OK" : "WRONG") + ": " + batch.getCallbacks()
+				+ " callbacks kept after 1000 short requests, " + sum.bitLength() + " bits");
+		batch.close();
+
+		Thread.sleep(1000);
+		server.cancel("shutdown");
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		// Already run, so nothing to remove; the request is finished as well.
+		interruptSleeper.close();
+		request.close();
+
+		final MetricsSnapshot latencies = server.getStopLatencies();
+		System.out.println(String.format("%d tasks stopped, latency in us: mean %d, p50 %d, p99 %d, max %d",
+				latencies.getCount(), TimeUnit.NANOSECONDS.toMicros((long) latencies.getMean()),
+				TimeUnit.NANOSECONDS.toMicros(latencies.getQuantile(0.5)),
+				TimeUnit.NANOSECONDS.toMicros(latencies.getQuantile(0.99)),
+				TimeUnit.NANOSECONDS.toMicros(latencies.getMax())));
+	}
+
+	/**
+	 * The loop of LongComputationTask, until the token is cancelled.
+	 */
+	private static void computePower(final String name, final CancellationToken token, final int interval) {
+		final CancellationToken.Poller poller = token.newPoller(interval);
+		BigInteger result = BigInteger.ONE;
+		long multiplications = 0;
+		while (!poller.isCancelled()) {
+			result = result.multiply(BASE);
+			multiplications++;
+		}
+		final long latency = token.acknowledge();
+		System.out.println(String.format("%-34s stopped %6d us after the %s, %d multiplications", name,
+				TimeUnit.NANOSECONDS.toMicros(latency), token.getReason(), multiplications));
+	}
+
+	private static void sleep(final CancellationToken token) {
+		try {
+			Thread.sleep(TimeUnit.MINUTES.toMillis(10));
+		} catch (InterruptedException e) {
+			final long latency = token.acknowledge();
+			System.out.println(String.format("%-34s stopped %6d us after the %s", "sleeping task",
+					TimeUnit.NANOSECONDS.toMicros(latency), token.getReason()));
+		}
+	}
+}
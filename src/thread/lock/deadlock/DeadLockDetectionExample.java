@@ -0,0 +1,87 @@
+package thread.lock.deadlock;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The trains of DeadLockProblemExample, with the same deadlock: takeRoadA locks
+ * road A and then road B, while takeRoadB locks road B and then road A. Now
+ * the roads are {@link InstrumentedMonitor}s of a {@link DeadlockDetector}:
+ *
+ * - The first time both orders happen, even if the trains did not get stuck,
+ * the detector reports a POTENTIAL deadlock;
+ * - When the trains finally get stuck, the watchdog reports the ACTUAL
+ * deadlock, with the stacks of both trains, and we end the application
+ * instead of hanging forever.
+ *
+ * @author pedrorenzo
+ */
+public class DeadLockDetectionExample {
+
+	public static void main(String[] args) {
+		final DeadlockDetector detector = new DeadlockDetector(1, report -> {
+			System.out.println(report);
+			if (report.getKind() == DeadlockReport.Kind.ACTUAL) {
+				System.exit(1);
+			}
+		});
+		detector.startWatchdog(1, TimeUnit.SECONDS);
+
+		final Intersection intersection = new Intersection(detector);
+		final Thread trainAThread = new Thread(new Train(intersection::takeRoadA), "TrainA");
+		final Thread trainBThread = new Thread(new Train(intersection::takeRoadB), "TrainB");
+
+		trainAThread.start();
+		trainBThread.start();
+	}
+
+	public static class Train implements Runnable {
+		private Runnable road;
+		private Random random = new Random();
+
+		public Train(final Runnable road) {
+			this.road = road;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final long sleepingTime = random.nextInt(5);
+				try {
+					Thread.sleep(sleepingTime);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+
+				road.run();
+			}
+		}
+	}
+
+	public static class Intersection {
+		private final InstrumentedMonitor roadA;
+		private final InstrumentedMonitor roadB;
+
+		public Intersection(final DeadlockDetector detector) {
+			this.roadA = detector.newMonitor("roadA");
+			this.roadB = detector.newMonitor("roadB");
+		}
+
+		public void takeRoadA() {
+			roadA.run(() -> roadB.run(() -> pass("Train is passing through road A")));
+		}
+
+		public void takeRoadB() {
+			roadB.run(() -> roadA.run(() -> pass("Train is passing through road B")));
+		}
+
+		private void pass(final String message) {
+			System.out.println(message);
+			try {
+				Thread.sleep(1);
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+}
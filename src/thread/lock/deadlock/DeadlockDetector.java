@@ -0,0 +1,265 @@
+package thread.lock.deadlock;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The deadlock of DeadLockProblemExample just hangs forever, without any
+ * message. This detector finds deadlocks in 2 ways:
+ *
+ * - Before it happens: every time a thread takes a lock while holding others,
+ * we record in a graph that those locks were taken before this one. If the new
+ * lock was ever taken before one of them, the graph has a cycle: the locks are
+ * taken in opposite orders somewhere, and a deadlock will happen as soon as two
+ * threads do it at the same time. This is what lockdep does in the Linux
+ * kernel. It only works for the {@link InstrumentedLock} and
+ * {@link InstrumentedMonitor} created by this detector.
+ *
+ * - When it happens: a watchdog thread periodically asks the JVM
+ * (ThreadMXBean.findDeadlockedThreads) for threads waiting for each other, which
+ * finds deadlocks of any lock or synchronized block, instrumented or not.
+ *
+ * Both report the locks and the stacks of the threads involved to a listener,
+ * only once for each cycle.
+ *
+ * As the lock classes of lockdep, the nodes of the graph are the names of the
+ * locks, not the lock objects: the graph has at most one node per name and one
+ * edge per pair of names, however many locks are created and collected, and it
+ * does not keep any lock alive. Locks that share a name share their orders:
+ * with thousands of resources, name them by kind ("account") to keep the graph
+ * small, or one by one ("account-42") to check their order one by one, at the
+ * cost of a node per name. Two locks with the same name taken together are not
+ * checked.
+ *
+ * Checking the order at every acquisition has a cost, so the detector can
+ * sample it: with a sampleRate of N, each thread checks only one in N of its
+ * acquisitions. The locks held by each thread are always tracked, which is
+ * cheap. Two opposite orders that happen often are still found, only later.
+ *
+ * @author pedrorenzo
+ */
+public class DeadlockDetector {
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	// Lock name -> names of the locks that were taken while holding it.
+	private final Map<String, Set<String>> successors = new ConcurrentHashMap<>();
+	private final Set<Set<Long>> reportedDeadlocks = ConcurrentHashMap.newKeySet();
+	private final ThreadLocal<HeldLocks> heldLocks = ThreadLocal.withInitial(HeldLocks::new);
+	private final int sampleRate;
+	private final Consumer<DeadlockReport> listener;
+
+	private ScheduledExecutorService watchdog;
+
+	/**
+	 * Checks every acquisition and prints the reports to System.err.
+	 */
+	public DeadlockDetector() {
+		this(1, report -> System.err.println(report));
+	}
+
+	/**
+	 * @param sampleRate each thread checks the order of one in sampleRate
+	 *                   acquisitions.
+	 * @param listener   receives the reports.
+	 */
+	public DeadlockDetector(final int sampleRate, final Consumer<DeadlockReport> listener) {
+		if (sampleRate <= 0) {
+			throw new IllegalArgumentException("The sample rate must be positive: " + sampleRate);
+		}
+		this.sampleRate = sampleRate;
+		this.listener = listener;
+	}
+
+	/**
+	 * @param name the node of the lock in the order graph, shared by all the locks
+	 *             with the same name.
+	 * @return a new lock.
+	 */
+	public InstrumentedLock newLock(final String name) {
+		Objects.requireNonNull(name, "The name of a lock is its node in the order graph");
+		return new InstrumentedLock(name, this);
+	}
+
+	/**
+	 * @param name as in newLock.
+	 * @return a new monitor.
+	 */
+	public InstrumentedMonitor newMonitor(final String name) {
+		Objects.requireNonNull(name, "The name of a monitor is its node in the order graph");
+		return new InstrumentedMonitor(name, this);
+	}
+
+	/**
+	 * Starts a daemon thread that looks for deadlocked threads every period.
+	 *
+	 * @param period
+	 * @param unit
+	 */
+	public synchronized void startWatchdog(final long period, final TimeUnit unit) {
+		if (watchdog != null) {
+			return;
+		}
+		watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			final Thread thread = new Thread(runnable, "deadlock-watchdog");
+			thread.setDaemon(true);
+			return thread;
+		});
+		watchdog.scheduleWithFixedDelay(this::checkThreads, period, period, unit);
+	}
+
+	public synchronized void stopWatchdog() {
+		if (watchdog != null) {
+			watchdog.shutdownNow();
+			watchdog = null;
+		}
+	}
+
+	/**
+	 * Asks the JVM for deadlocked threads and reports them, if not reported yet.
+	 */
+	public void checkThreads() {
+		final long[] threadIds = threadMXBean.findDeadlockedThreads();
+		if (threadIds == null) {
+			return;
+		}
+		final Set<Long> key = Set.copyOf(Arrays.stream(threadIds).boxed().toList());
+		if (!reportedDeadlocks.add(key)) {
+			return;
+		}
+
+		final List<String> locks = new ArrayList<>();
+		final StringBuilder details = new StringBuilder();
+		for (ThreadInfo info : threadMXBean.getThreadInfo(threadIds, true, true)) {
+			if (info == null) {
+				continue;
+			}
+			locks.add(info.getLockName());
+			details.append('"').append(info.getThreadName()).append("\" waits for ").append(info.getLockName())
+					.append(" held by \"").append(info.getLockOwnerName()).append('"')
+					.append(System.lineSeparator());
+			appendStack(details, info.getStackTrace());
+		}
+		listener.accept(new DeadlockReport(DeadlockReport.Kind.ACTUAL, locks, details.toString()));
+	}
+
+	/**
+	 * Called by the instrumented locks before waiting for the lock.
+	 *
+	 * @param lock
+	 * @param reentrant <code>true</code> if the current thread already holds it,
+	 *                  which never causes a deadlock.
+	 */
+	void beforeAcquire(final Object lock, final boolean reentrant) {
+		final HeldLocks held = heldLocks.get();
+		if (reentrant || held.locks.isEmpty() || ++held.acquisitions % sampleRate != 0) {
+			return;
+		}
+		// The toString of the instrumented locks is their name.
+		final String name = lock.toString();
+		for (Object heldLock : held.locks) {
+			checkOrder(heldLock.toString(), name);
+		}
+	}
+
+	void acquired(final Object lock) {
+		heldLocks.get().locks.add(lock);
+	}
+
+	void released(final Object lock) {
+		final List<Object> locks = heldLocks.get().locks;
+		final int index = locks.lastIndexOf(lock);
+		if (index >= 0) {
+			locks.remove(index);
+		}
+	}
+
+	/**
+	 * Records that "after" is taken while holding "before". If this is new and
+	 * "after" is already taken before "before" somewhere (there is a path from
+	 * "after" to "before" in the graph), the new edge closes a cycle.
+	 */
+	private void checkOrder(final String before, final String after) {
+		if (before.equals(after)) {
+			return;
+		}
+		final Set<String> next = successors.computeIfAbsent(before, lock -> ConcurrentHashMap.newKeySet());
+		// Known orders are the common case and only cost a lookup. If two threads add
+		// the same edge, only one of them checks it.
+		if (next.contains(after) || !next.add(after)) {
+			return;
+		}
+
+		final List<String> path = findPath(after, before);
+		if (path != null) {
+			final List<String> locks = new ArrayList<>();
+			locks.add(before);
+			locks.addAll(path);
+			final StringBuilder details = new StringBuilder();
+			details.append('"').append(Thread.currentThread().getName()).append("\" takes ").append(after)
+					.append(" while holding ").append(before).append(", but ").append(after)
+					.append(" was taken before ").append(before).append(" elsewhere")
+					.append(System.lineSeparator());
+			appendStack(details, new Throwable().getStackTrace());
+			listener.accept(new DeadlockReport(DeadlockReport.Kind.POTENTIAL, locks, details.toString()));
+		}
+	}
+
+	/**
+	 * Breadth-first search in the graph.
+	 *
+	 * @return the locks from "from" to "to", both included, or null if there is
+	 *         no path.
+	 */
+	private List<String> findPath(final String from, final String to) {
+		final Map<String, String> previous = new HashMap<>();
+		final Deque<String> queue = new ArrayDeque<>();
+		previous.put(from, from);
+		queue.add(from);
+		while (!queue.isEmpty()) {
+			final String lock = queue.poll();
+			if (lock.equals(to)) {
+				final List<String> path = new ArrayList<>();
+				for (String current = to; !current.equals(from); current = previous.get(current)) {
+					path.add(0, current);
+				}
+				path.add(0, from);
+				return path;
+			}
+			for (String next : successors.getOrDefault(lock, Set.of())) {
+				if (previous.putIfAbsent(next, lock) == null) {
+					queue.add(next);
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void appendStack(final StringBuilder details, final StackTraceElement[] stack) {
+		for (StackTraceElement element : stack) {
+			details.append("\tat ").append(element).append(System.lineSeparator());
+		}
+	}
+
+	/**
+	 * The locks held by a thread, in the order they were taken.
+	 */
+	private static class HeldLocks {
+		private final List<Object> locks = new ArrayList<>();
+		private long acquisitions;
+	}
+}
@@ -0,0 +1,52 @@
+package thread.lock.deadlock;
+
+import java.util.List;
+
+/**
+ * What the {@link DeadlockDetector} found:
+ * - POTENTIAL: two locks were taken in opposite orders (maybe by different
+ * threads, at different moments). Nothing is stuck yet, but it can be;
+ * - ACTUAL: threads are waiting for each other and will never continue.
+ * 
+ * @author pedrorenzo
+ */
+public class DeadlockReport {
+
+	public enum Kind {
+		POTENTIAL, ACTUAL
+	}
+
+	private final Kind kind;
+	private final List<String> locks;
+	private final String details;
+
+	public DeadlockReport(final Kind kind, final List<String> locks, final String details) {
+		this.kind = kind;
+		this.locks = List.copyOf(locks);
+		this.details = details;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return the names of the locks in the cycle, in the order they are waited
+	 *         for.
+	 */
+	public List<String> getLocks() {
+		return locks;
+	}
+
+	/**
+	 * @return the threads involved and their stacks.
+	 */
+	public String getDetails() {
+		return details;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " deadlock between " + String.join(" -> ", locks) + System.lineSeparator() + details;
+	}
+}
@@ -0,0 +1,77 @@
+package thread.lock.deadlock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A ReentrantLock that tells its {@link DeadlockDetector} the order in which it
+ * is taken. Create it with DeadlockDetector.newLock(name); the name is used in
+ * the reports.
+ * 
+ * @author pedrorenzo
+ */
+public class InstrumentedLock implements Lock {
+	private final ReentrantLock lock = new ReentrantLock();
+	private final String name;
+	private final DeadlockDetector detector;
+
+	InstrumentedLock(final String name, final DeadlockDetector detector) {
+		this.name = name;
+		this.detector = detector;
+	}
+
+	@Override
+	public void lock() {
+		detector.beforeAcquire(this, lock.isHeldByCurrentThread());
+		lock.lock();
+		detector.acquired(this);
+	}
+
+	@Override
+	public void lockInterruptibly() throws InterruptedException {
+		detector.beforeAcquire(this, lock.isHeldByCurrentThread());
+		lock.lockInterruptibly();
+		detector.acquired(this);
+	}
+
+	/**
+	 * A tryLock() without timeout never waits, so it cannot cause a deadlock and
+	 * we do not check the order.
+	 */
+	@Override
+	public boolean tryLock() {
+		if (lock.tryLock()) {
+			detector.acquired(this);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean tryLock(final long time, final TimeUnit unit) throws InterruptedException {
+		detector.beforeAcquire(this, lock.isHeldByCurrentThread());
+		if (lock.tryLock(time, unit)) {
+			detector.acquired(this);
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void unlock() {
+		lock.unlock();
+		detector.released(this);
+	}
+
+	@Override
+	public Condition newCondition() {
+		return lock.newCondition();
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
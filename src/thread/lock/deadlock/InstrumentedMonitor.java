@@ -0,0 +1,53 @@
+package thread.lock.deadlock;
+
+import java.util.function.Supplier;
+
+/**
+ * We cannot intercept a synchronized block, so this monitor runs the code
+ * inside synchronized (this) for us, telling its {@link DeadlockDetector} the
+ * order in which it is taken. Instead of:
+ * 
+ * synchronized (roadA) { ... }
+ * 
+ * we write:
+ * 
+ * roadA.run(() -> { ... });
+ * 
+ * Since it is a regular synchronized block, wait() and notify() can be called
+ * on the monitor inside it. Create it with DeadlockDetector.newMonitor(name).
+ * 
+ * @author pedrorenzo
+ */
+public class InstrumentedMonitor {
+	private final String name;
+	private final DeadlockDetector detector;
+
+	InstrumentedMonitor(final String name, final DeadlockDetector detector) {
+		this.name = name;
+		this.detector = detector;
+	}
+
+	public void run(final Runnable criticalSection) {
+		call(() -> {
+			criticalSection.run();
+			return null;
+		});
+	}
+
+	public <T> T call(final Supplier<T> criticalSection) {
+		detector.beforeAcquire(this, Thread.holdsLock(this));
+		synchronized (this) {
+			detector.acquired(this);
+			try {
+				return criticalSection.get();
+			} finally {
+				detector.released(this);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,61 @@
+package thread.lock.list;
+
+import java.util.Arrays;
+
+/**
+ * Every write copies the array, changes the copy and then publishes it by
+ * assigning it to a volatile field. An array, once published, never changes,
+ * so readers only need to read the volatile reference and then read the array
+ * as they wish, without any lock or validation. A reader that got the old
+ * array keeps reading it, and the garbage collector frees it when nobody
+ * references it anymore. This is the same idea of the Read-Copy-Update (RCU)
+ * of the Linux kernel, and of the CopyOnWriteArrayList of the JDK.
+ * 
+ * The writers still need a lock among themselves, otherwise two writers could
+ * copy the same array and one of them would lose the change of the other. Each
+ * write copies the whole list, so this is only good for lists that are small
+ * or rarely written.
+ * 
+ * @author pedrorenzo
+ */
+public class CopyOnWriteList<E> implements ReadMostlyList<E> {
+	private final Object writeLock = new Object();
+	private volatile Object[] elements = new Object[0];
+
+	@Override
+	public void add(final E element) {
+		synchronized (writeLock) {
+			final Object[] current = elements;
+			final Object[] copy = Arrays.copyOf(current, current.length + 1);
+			copy[current.length] = element;
+			elements = copy;
+		}
+	}
+
+	@Override
+	public E set(final int index, final E element) {
+		synchronized (writeLock) {
+			final Object[] current = elements;
+			final E previous = elementAt(current, index);
+			final Object[] copy = current.clone();
+			copy[index] = element;
+			elements = copy;
+			return previous;
+		}
+	}
+
+	@Override
+	public E get(final int index) {
+		return elementAt(elements, index);
+	}
+
+	@Override
+	public int size() {
+		return elements.length;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> E elementAt(final Object[] elements, final int index) {
+		return (E) elements[index];
+	}
+}
@@ -0,0 +1,40 @@
+package thread.lock.list;
+
+/**
+ * A list shared by many threads, read much more often than written, like the
+ * list of ReentrantReadWriteLockExample. The implementations show different
+ * ways to let the readers work in parallel:
+ * - {@link ReadWriteLockList}: a ReentrantReadWriteLock. Readers do not wait
+ * for each other, but each one still updates the counter of readers inside the
+ * lock, so with many cores they all fight for that cache line;
+ * - {@link StampedLockList}: a StampedLock with optimistic reads, where readers
+ * do not write anything, they only check afterwards whether a writer came in
+ * the meantime;
+ * - {@link CopyOnWriteList}: writers copy the whole array and publish the new
+ * copy, so readers just read the current array without any lock. Writes get
+ * slower as the list grows.
+ * 
+ * @author pedrorenzo
+ */
+public interface ReadMostlyList<E> {
+
+	/**
+	 * Appends the element to the end of the list.
+	 * 
+	 * @param element
+	 */
+	void add(E element);
+
+	/**
+	 * Replaces the element at the index.
+	 * 
+	 * @param index
+	 * @param element
+	 * @return the previous element.
+	 */
+	E set(int index, E element);
+
+	E get(int index);
+
+	int size();
+}
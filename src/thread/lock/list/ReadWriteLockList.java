@@ -0,0 +1,59 @@
+package thread.lock.list;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The list of ReentrantReadWriteLockExample, without the prints.
+ * 
+ * @author pedrorenzo
+ */
+public class ReadWriteLockList<E> implements ReadMostlyList<E> {
+	private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
+	private final Lock readLock = readWriteLock.readLock();
+	private final Lock writeLock = readWriteLock.writeLock();
+	private final List<E> list = new ArrayList<>();
+
+	@Override
+	public void add(final E element) {
+		writeLock.lock();
+		try {
+			list.add(element);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public E set(final int index, final E element) {
+		writeLock.lock();
+		try {
+			return list.set(index, element);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Override
+	public E get(final int index) {
+		readLock.lock();
+		try {
+			return list.get(index);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+		readLock.lock();
+		try {
+			return list.size();
+		} finally {
+			readLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package thread.lock.list;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A StampedLock has, besides read and write locks, optimistic reads:
+ * tryOptimisticRead() returns a stamp without locking anything, we read the
+ * fields and then validate(stamp) tells us whether a writer took the lock in
+ * the meantime. If it did not, what we read is consistent. If it did, we read
+ * again, this time with the read lock. Since the optimistic readers do not
+ * write anything, they do not fight for any cache line and the reads scale
+ * with the number of cores.
+ * 
+ * The values read before the validation may be inconsistent (e.g. a size
+ * bigger than the array), so we cannot use them for anything that can fail
+ * before validating, which is why this list keeps its own array instead of
+ * using an ArrayList.
+ * 
+ * @author pedrorenzo
+ */
+public class StampedLockList<E> implements ReadMostlyList<E> {
+	private final StampedLock lock = new StampedLock();
+	private Object[] elements = new Object[16];
+	private int size = 0;
+
+	@Override
+	public void add(final E element) {
+		final long stamp = lock.writeLock();
+		try {
+			if (size == elements.length) {
+				elements = Arrays.copyOf(elements, size * 2);
+			}
+			elements[size++] = element;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public E set(final int index, final E element) {
+		final long stamp = lock.writeLock();
+		try {
+			checkIndex(index, size);
+			final E previous = elementAt(elements, index);
+			elements[index] = element;
+			return previous;
+		} finally {
+			lock.unlockWrite(stamp);
+		}
+	}
+
+	@Override
+	public E get(final int index) {
+		final long stamp = lock.tryOptimisticRead();
+		if (stamp != 0) {
+			final Object[] currentElements = elements;
+			final int currentSize = size;
+			final E element = index >= 0 && index < currentSize && index < currentElements.length
+					? elementAt(currentElements, index)
+					: null;
+			if (lock.validate(stamp)) {
+				checkIndex(index, currentSize);
+				return element;
+			}
+		}
+
+		// A writer came in, so we read again holding the read lock.
+		final long readStamp = lock.readLock();
+		try {
+			checkIndex(index, size);
+			return elementAt(elements, index);
+		} finally {
+			lock.unlockRead(readStamp);
+		}
+	}
+
+	@Override
+	public int size() {
+		final long stamp = lock.tryOptimisticRead();
+		final int currentSize = size;
+		if (stamp != 0 && lock.validate(stamp)) {
+			return currentSize;
+		}
+
+		final long readStamp = lock.readLock();
+		try {
+			return size;
+		} finally {
+			lock.unlockRead(readStamp);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <E> E elementAt(final Object[] elements, final int index) {
+		return (E) elements[index];
+	}
+
+	private static void checkIndex(final int index, final int size) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+		}
+	}
+}
@@ -26,6 +26,11 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  * In this example we simply add and read values ​​from a list protected by read
  * lock and write lock.
  * 
+ * Even with the read lock, each reader still updates the counter of readers
+ * inside the lock, so with many cores the readers fight for it. See
+ * {@link thread.lock.list.ReadMostlyList} for lists where the readers do not
+ * write anything.
+ * 
  * @author pedrorenzo
  */
 public class ReentrantReadWriteLockExample<E> {
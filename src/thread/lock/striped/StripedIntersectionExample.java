@@ -0,0 +1,129 @@
+package thread.lock.striped;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The trains of DeadLockProblemExample, but now with 5000 roads instead of 2
+ * and 16 trains, each one taking 2 random roads at a time, in any order (road
+ * 10 and then road 3, or road 3 and then road 10), which with a lock per road
+ * would be a deadlock waiting to happen. The {@link StripedLockManager} always
+ * locks the stripes in the same order, so all the trains finish.
+ *
+ * Some trains give up if they cannot take their roads within 1 ms, using
+ * tryLock with timeout, and at the end we print the most contended stripes.
+ * The lowest stripes are usually the most contended: since they are always
+ * locked first, they are held while waiting for the second stripe.
+ *
+ * At the end, a train that holds a road and then locks another one must do it
+ * in the order of the stripes, otherwise the manager throws instead of risking
+ * a deadlock.
+ *
+ * @author pedrorenzo
+ */
+public class StripedIntersectionExample {
+	private static final int NUMBER_OF_ROADS = 5000;
+	private static final int NUMBER_OF_STRIPES = 64;
+	private static final int NUMBER_OF_TRAINS = 16;
+	private static final int TRIPS_PER_TRAIN = 100_000;
+
+	public static void main(String[] args) throws InterruptedException {
+		final StripedLockManager<Integer> intersection = new StripedLockManager<>(NUMBER_OF_STRIPES);
+		final long[] trainsPerRoad = new long[NUMBER_OF_ROADS];
+		final AtomicLong gaveUp = new AtomicLong();
+
+		final List<Thread> trains = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_TRAINS; i++) {
+			final boolean impatient = i % 2 == 0;
+			trains.add(new Thread(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				for (int trip = 0; trip < TRIPS_PER_TRAIN; trip++) {
+					final int roadA = random.nextInt(NUMBER_OF_ROADS);
+					final int roadB = random.nextInt(NUMBER_OF_ROADS);
+
+					if (impatient) {
+						try (StripedLockManager<Integer>.LockSet roads = intersection.tryLock(1,
+								TimeUnit.MILLISECONDS, Arrays.asList(roadA, roadB))) {
+							if (roads == null) {
+								gaveUp.incrementAndGet();
+								continue;
+							}
+							pass(roads, trainsPerRoad, roadA, roadB);
+						} catch (InterruptedException e) {
+							e.printStackTrace();
+							return;
+						}
+					} else {
+						try (StripedLockManager<Integer>.LockSet roads = intersection
+								.lock(Arrays.asList(roadA, roadB))) {
+							pass(roads, trainsPerRoad, roadA, roadB);
+						}
+					}
+				}
+			}));
+		}
+
+		final long startTime = System.currentTimeMillis();
+		for (Thread train : trains) {
+			train.start();
+		}
+		for (Thread train : trains) {
+			train.join();
+		}
+		final long duration = System.currentTimeMillis() - startTime;
+
+		final long passages = Arrays.stream(trainsPerRoad).sum();
+		System.out.println("All the trains arrived in " + duration + " ms, " + passages + " road passages, "
+				+ gaveUp.get() + " trips given up");
+		System.out.println("Most contended stripes:");
+		intersection.getStats().stream()
+				.sorted(Comparator.comparingLong(StripedLockManager.StripeStats::getContentions).reversed()).limit(5)
+				.forEach(System.out::println);
+
+		checkNesting(intersection);
+	}
+
+	/**
+	 * With 64 stripes, road 3 is in stripe 3 and road 10 in stripe 10.
+	 */
+	private static void checkNesting(final StripedLockManager<Integer> intersection) {
+		final int low = 3;
+		final int high = 10;
+		try (StripedLockManager<Integer>.LockSet first = intersection.lock(List.of(low));
+				StripedLockManager<Integer>.LockSet second = intersection.lock(List.of(high))) {
+			System.out.println(first.covers(low) && second.covers(high) ? "OK: nested in order"
+					: "WRONG: the nested roads are not locked");
+		}
+
+		try (StripedLockManager<Integer>.LockSet first = intersection.lock(List.of(high))) {
+			try {
+				intersection.lock(List.of(low)).close();
+				System.out.println("WRONG: nested against the order without an error");
+			} catch (IllegalStateException e) {
+				System.out.println(first.covers(high) ? "OK: nested against the order throws: " + e.getMessage()
+						: "WRONG: the first road was unlocked");
+			}
+		}
+	}
+
+	/**
+	 * The roads are locked, so we can update their counters without any other
+	 * synchronization. If roadA and roadB are the same road, the train passes
+	 * twice.
+	 *
+	 * @param roads the locks of the roads, checked before touching the counters.
+	 */
+	private static void pass(final StripedLockManager<Integer>.LockSet roads, final long[] trainsPerRoad,
+			final int roadA, final int roadB) {
+		if (!roads.covers(roadA) || !roads.covers(roadB)) {
+			throw new IllegalStateException("The train passes without locking roads " + roadA + " and " + roadB);
+		}
+		trainsPerRoad[roadA]++;
+		trainsPerRoad[roadB]++;
+	}
+}
@@ -0,0 +1,292 @@
+package thread.lock.striped;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fine-Grained Locking with a lock per resource, as the roads of the
+ * Intersection in DeadLockProblemExample, does not work well with thousands of
+ * resources: we would need thousands of locks and, the more locks we have, the
+ * more chances of deadlocks happening.
+ *
+ * This manager keeps a fixed pool of locks (stripes) and maps each key to one
+ * of them by its hash, so many keys share the same lock. With enough stripes,
+ * two threads rarely need the same lock unless they use the same key.
+ *
+ * To lock many keys at once, we lock their stripes always in the same order,
+ * from the lowest stripe to the highest. That removes the circular wait (one
+ * of the 4 deadlock conditions): a thread holding stripe 3 can wait for stripe
+ * 7, but no thread holding stripe 7 will ever wait for stripe 3. Keys in the
+ * same stripe are locked only once.
+ *
+ * The order must also hold across calls. While a thread holds a LockSet, a
+ * lock() of more keys throws an IllegalStateException if it would wait for a
+ * stripe lower than the highest one the thread holds (stripes it already holds
+ * are fine, the locks are reentrant). Otherwise two threads nesting their calls
+ * in opposite orders would deadlock. Lock all the keys in a single call, or
+ * nest with tryLock, which gives up instead of waiting forever.
+ *
+ * Each stripe counts how many times it was locked, how many of them it was
+ * already locked by another thread and how long the threads waited, so we can
+ * see whether we need more stripes.
+ *
+ * @author pedrorenzo
+ */
+public class StripedLockManager<K> {
+	private final Stripe[] stripes;
+	// The lock sets open in each thread, to check the order of nested calls.
+	private final ThreadLocal<List<LockSet>> heldSets = ThreadLocal.withInitial(ArrayList::new);
+
+	/**
+	 * @param numberOfStripes
+	 */
+	public StripedLockManager(final int numberOfStripes) {
+		if (numberOfStripes <= 0) {
+			throw new IllegalArgumentException("The number of stripes must be positive: " + numberOfStripes);
+		}
+		this.stripes = new Stripe[numberOfStripes];
+		for (int i = 0; i < numberOfStripes; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the stripe of the key.
+	 */
+	public int stripeOf(final K key) {
+		int hash = key.hashCode();
+		// Mixes the high bits into the low ones, as HashMap does, since many
+		// hashCode() implementations differ only in the high bits.
+		hash ^= hash >>> 16;
+		return Math.floorMod(hash, stripes.length);
+	}
+
+	/**
+	 * Locks the stripes of all the keys, waiting as long as needed.
+	 *
+	 * @param keys
+	 * @return the locked stripes, which must be unlocked with close(), ideally
+	 *         with a try-with-resources.
+	 * @throws IllegalStateException if the thread already holds a higher stripe
+	 *                               than one of the keys (see the class comment).
+	 */
+	public LockSet lock(final Collection<K> keys) {
+		final int[] order = orderOf(keys);
+		final List<LockSet> held = heldSets.get();
+		if (!held.isEmpty()) {
+			checkNestedOrder(held, order);
+		}
+		for (int stripe : order) {
+			stripes[stripe].lock();
+		}
+		return new LockSet(order, held);
+	}
+
+	/**
+	 * Tries to lock the stripes of all the keys within the timeout. If it cannot,
+	 * it unlocks the stripes it has already locked, so the thread does not hold
+	 * anything while giving up.
+	 *
+	 * @param timeout for all the keys, not for each one.
+	 * @param unit
+	 * @param keys
+	 * @return the locked stripes, or null if the timeout expired.
+	 * @throws InterruptedException
+	 */
+	public LockSet tryLock(final long timeout, final TimeUnit unit, final Collection<K> keys)
+			throws InterruptedException {
+		final int[] order = orderOf(keys);
+		final long deadline = System.nanoTime() + unit.toNanos(timeout);
+		int locked = 0;
+		try {
+			for (int stripe : order) {
+				if (!stripes[stripe].tryLock(deadline - System.nanoTime())) {
+					break;
+				}
+				locked++;
+			}
+		} finally {
+			// We also get here if we were interrupted.
+			if (locked < order.length) {
+				unlock(order, locked);
+			}
+		}
+		return locked == order.length ? new LockSet(order, heldSets.get()) : null;
+	}
+
+	/**
+	 * @return the statistics of each stripe, in the order of the stripes.
+	 */
+	public List<StripeStats> getStats() {
+		final List<StripeStats> stats = new ArrayList<>(stripes.length);
+		for (int i = 0; i < stripes.length; i++) {
+			stats.add(new StripeStats(i, stripes[i].acquisitions.sum(), stripes[i].contentions.sum(),
+					stripes[i].waitingNanos.sum()));
+		}
+		return Collections.unmodifiableList(stats);
+	}
+
+	public int getNumberOfStripes() {
+		return stripes.length;
+	}
+
+	/**
+	 * @return the distinct stripes of the keys, from the lowest to the highest.
+	 */
+	private int[] orderOf(final Collection<K> keys) {
+		return keys.stream().mapToInt(this::stripeOf).sorted().distinct().toArray();
+	}
+
+	/**
+	 * Throws if the thread would wait for a stripe below the highest one it holds.
+	 */
+	private void checkNestedOrder(final List<LockSet> held, final int[] order) {
+		int highest = -1;
+		for (LockSet set : held) {
+			if (set.order.length > 0) {
+				highest = Math.max(highest, set.order[set.order.length - 1]);
+			}
+		}
+		for (int stripe : order) {
+			if (stripe >= highest) {
+				return;
+			}
+			if (!stripes[stripe].lock.isHeldByCurrentThread()) {
+				throw new IllegalStateException("Stripe " + stripe + " would be locked after stripe " + highest
+						+ ", against the order of the stripes: lock all the keys at once or use tryLock");
+			}
+		}
+	}
+
+	/**
+	 * Unlocks the first stripes of the order, from the last locked to the first.
+	 */
+	private void unlock(final int[] order, final int locked) {
+		for (int i = locked - 1; i >= 0; i--) {
+			stripes[order[i]].lock.unlock();
+		}
+	}
+
+	/**
+	 * The stripes locked by a call to lock() or tryLock().
+	 */
+	public class LockSet implements AutoCloseable {
+		private final int[] order;
+		// The open sets of the thread that locked this one.
+		private final List<LockSet> held;
+		private boolean closed;
+
+		private LockSet(final int[] order, final List<LockSet> held) {
+			this.order = order;
+			this.held = held;
+			held.add(this);
+		}
+
+		/**
+		 * @param key
+		 * @return true if the stripe of the key is still locked by this set.
+		 */
+		public boolean covers(final K key) {
+			return !closed && Arrays.binarySearch(order, stripeOf(key)) >= 0;
+		}
+
+		/**
+		 * Unlocks all the stripes. It must be called by the thread that locked them.
+		 */
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				held.remove(this);
+				unlock(order, order.length);
+			}
+		}
+	}
+
+	/**
+	 * The statistics of a stripe at the moment they were read.
+	 */
+	public static class StripeStats {
+		private final int stripe;
+		private final long acquisitions;
+		private final long contentions;
+		private final long waitingNanos;
+
+		public StripeStats(final int stripe, final long acquisitions, final long contentions,
+				final long waitingNanos) {
+			this.stripe = stripe;
+			this.acquisitions = acquisitions;
+			this.contentions = contentions;
+			this.waitingNanos = waitingNanos;
+		}
+
+		public int getStripe() {
+			return stripe;
+		}
+
+		public long getAcquisitions() {
+			return acquisitions;
+		}
+
+		/**
+		 * @return how many times the stripe was locked by another thread when we
+		 *         tried to lock it.
+		 */
+		public long getContentions() {
+			return contentions;
+		}
+
+		/**
+		 * @return total time the threads waited for the stripe.
+		 */
+		public long getWaitingNanos() {
+			return waitingNanos;
+		}
+
+		@Override
+		public String toString() {
+			return "stripe " + stripe + ": " + acquisitions + " acquisitions, " + contentions + " contended, "
+					+ TimeUnit.NANOSECONDS.toMillis(waitingNanos) + " ms waiting";
+		}
+	}
+
+	private static class Stripe {
+		private final ReentrantLock lock = new ReentrantLock();
+		private final LongAdder acquisitions = new LongAdder();
+		private final LongAdder contentions = new LongAdder();
+		private final LongAdder waitingNanos = new LongAdder();
+
+		private void lock() {
+			// Without contention, tryLock() is as cheap as lock() and we do not need to
+			// measure anything.
+			if (!lock.tryLock()) {
+				contentions.increment();
+				final long start = System.nanoTime();
+				lock.lock();
+				waitingNanos.add(System.nanoTime() - start);
+			}
+			acquisitions.increment();
+		}
+
+		private boolean tryLock(final long timeoutNanos) throws InterruptedException {
+			if (!lock.tryLock()) {
+				contentions.increment();
+				final long start = System.nanoTime();
+				final boolean locked = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+				waitingNanos.add(System.nanoTime() - start);
+				if (!locked) {
+					return false;
+				}
+			}
+			acquisitions.increment();
+			return true;
+		}
+	}
+}
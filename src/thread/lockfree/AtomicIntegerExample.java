@@ -26,6 +26,9 @@ import thread.memory.management.DataSharingProblemExample;
  * performs worse than using a common integer, for example.
  * 
  * In this example, we will show the {@link DataSharingProblemExample} solution using AtomicInteger.
+ * With dozens of threads updating the same AtomicInteger, they all compete for
+ * the same variable: see {@link thread.lockfree.counter.CounterExample} for
+ * counters that scale with the number of writers.
  * 
  * @author pedrorenzo
  */
@@ -0,0 +1,25 @@
+package thread.lockfree.counter;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The InventoryCounter of AtomicIntegerExample: there is no lock, but all the
+ * threads update the same variable and so they all fight for the same cache
+ * line. With dozens of writers, most of the time is spent moving this line
+ * between the cores.
+ * 
+ * @author pedrorenzo
+ */
+public class AtomicCounter implements Counter {
+	private final AtomicLong value = new AtomicLong(0);
+
+	@Override
+	public void add(final long delta) {
+		value.addAndGet(delta);
+	}
+
+	@Override
+	public long get() {
+		return value.get();
+	}
+}
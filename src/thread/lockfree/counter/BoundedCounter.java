@@ -0,0 +1,236 @@
+package thread.lockfree.counter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The InventoryCounter of the examples can go below 0, because decrement() does
+ * not check anything. Checking before decrementing (if items > 0 then items--)
+ * is a race condition between 2 separate operations, unless both are inside
+ * the same lock. This counter does the check and the update with a single CAS:
+ * tryReserve(n) only succeeds if n units are available and release(n) gives
+ * them back, so the reserved units are never below 0 nor above the capacity.
+ *
+ * The state is a single long with 2 values packed in it: the capacity in the
+ * high 32 bits and the reserved units in the low 32 bits. Since both are read
+ * and written together, a CAS is enough to keep them consistent.
+ *
+ * In striped mode, the capacity is split between many of these longs (stripes),
+ * each one 128 bytes away from the next one, and each thread reserves from its
+ * own stripe, so threads in different stripes do not compete. When the stripe
+ * of a thread does not have enough available units, the thread borrows
+ * capacity from the other stripes, moving it to its own stripe, so the next
+ * reservations of the thread are local again. The capacity is moved from a
+ * stripe to another with 2 CASes, so while a thread is moving it, another
+ * thread may not find it and fail even though the total capacity was enough.
+ * If this is not acceptable, use a single stripe: all the operations are then
+ * linearizable, at the cost of all the threads competing for the same long.
+ *
+ * @author pedrorenzo
+ */
+public class BoundedCounter {
+	// 16 longs = 128 bytes between two stripes.
+	private static final int PADDING = 16;
+	private static final long RESERVED_MASK = 0xFFFFFFFFL;
+
+	private final AtomicLongArray stripes;
+	private final int numberOfStripes;
+	private final int capacity;
+
+	/**
+	 * Creates a counter with a single stripe.
+	 *
+	 * @param capacity
+	 */
+	public BoundedCounter(final int capacity) {
+		this(capacity, 1);
+	}
+
+	/**
+	 * @param capacity
+	 * @param numberOfStripes
+	 */
+	public BoundedCounter(final int capacity, final int numberOfStripes) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("The capacity cannot be negative: " + capacity);
+		}
+		if (numberOfStripes <= 0) {
+			throw new IllegalArgumentException("The number of stripes must be positive: " + numberOfStripes);
+		}
+		this.capacity = capacity;
+		this.numberOfStripes = numberOfStripes;
+		// One extra padding before the first stripe keeps it away from the array header.
+		this.stripes = new AtomicLongArray((numberOfStripes + 2) * PADDING);
+
+		// The capacity is divided equally, the first stripes keep the remainder.
+		for (int i = 0; i < numberOfStripes; i++) {
+			final int stripeCapacity = capacity / numberOfStripes + (i < capacity % numberOfStripes ? 1 : 0);
+			stripes.set(indexOf(i), pack(stripeCapacity, 0));
+		}
+	}
+
+	/**
+	 * Reserves n units if they are available.
+	 *
+	 * @param n
+	 * @return <code>true</code> if the units were reserved and <code>false</code>
+	 *         if not, in which case nothing changes.
+	 */
+	public boolean tryReserve(final int n) {
+		if (n <= 0) {
+			throw new IllegalArgumentException("The units to reserve must be positive: " + n);
+		}
+		if (n > capacity) {
+			return false;
+		}
+
+		final Probe probe = Probe.current();
+		final int home = Math.floorMod(probe.value(), numberOfStripes);
+		if (tryReserve(home, n, probe)) {
+			return true;
+		}
+		if (numberOfStripes == 1) {
+			return false;
+		}
+
+		// Not enough units in our stripe, so we bring capacity from the others.
+		for (int i = 1; i < numberOfStripes; i++) {
+			final int missing = n - available(stripes.get(indexOf(home)));
+			if (missing <= 0 || borrow((home + i) % numberOfStripes, home, missing)) {
+				if (tryReserve(home, n, probe)) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gives back n units reserved before, to the stripe of the current thread,
+	 * whichever stripe they were reserved from.
+	 *
+	 * The reserved units of a stripe can then go below 0 (more units given back
+	 * to it than reserved in it), but its available units never do, and the sum
+	 * of the available units of all the stripes is always exactly the capacity
+	 * minus the units reserved. So a stripe never has more units available than
+	 * the counter, and a single CAS is enough, however the units are spread
+	 * between the stripes. Looking for the reserved units in the other stripes
+	 * instead could miss them while other threads move them around, and fail a
+	 * legitimate release.
+	 *
+	 * Releasing more units than are reserved is a bug of the caller. It throws an
+	 * IllegalStateException, without changing anything, when the stripe would have
+	 * more units available than the capacity. With a single stripe, it is always
+	 * detected; in striped mode, only when the stripe alone has enough units to
+	 * show it.
+	 *
+	 * @param n
+	 */
+	public void release(final int n) {
+		if (n <= 0) {
+			throw new IllegalArgumentException("The units to release must be positive: " + n);
+		}
+
+		final int index = indexOf(Math.floorMod(Probe.current().value(), numberOfStripes));
+		while (true) {
+			final long state = stripes.get(index);
+			if ((long) available(state) + n > capacity) {
+				throw new IllegalStateException("Released " + n + " units, more than were reserved");
+			}
+			if (stripes.compareAndSet(index, state, pack(capacity(state), reserved(state) - n))) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the reserved units. In striped mode, the stripes are read one by
+	 *         one, so this is only exact when no thread is updating the counter.
+	 */
+	public int reserved() {
+		long reserved = 0;
+		for (int i = 0; i < numberOfStripes; i++) {
+			reserved += reserved(stripes.get(indexOf(i)));
+		}
+		// Only out of the bounds while the stripes are changing.
+		return (int) Math.max(0, Math.min(reserved, capacity));
+	}
+
+	/**
+	 * @return the available units, with the same precision as
+	 *         {@link #reserved()}.
+	 */
+	public int available() {
+		return capacity - reserved();
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	private boolean tryReserve(final int stripe, final int n, final Probe probe) {
+		final int index = indexOf(stripe);
+		while (true) {
+			final long state = stripes.get(index);
+			if (available(state) < n) {
+				return false;
+			}
+			if (stripes.compareAndSet(index, state, pack(capacity(state), reserved(state) + n))) {
+				return true;
+			}
+			// Another thread updated our stripe, we try another one next time.
+			probe.advance();
+		}
+	}
+
+	/**
+	 * Moves available capacity from one stripe to another. The donor gives half
+	 * of what it has available (and at least what we need), so we do not need to
+	 * borrow again for the next reservations.
+	 *
+	 * @return <code>true</code> if some capacity was moved.
+	 */
+	private boolean borrow(final int donor, final int receiver, final int missing) {
+		final int donorIndex = indexOf(donor);
+		int moved;
+		while (true) {
+			final long state = stripes.get(donorIndex);
+			final int available = available(state);
+			if (available == 0) {
+				return false;
+			}
+			moved = Math.min(available, Math.max(missing, available / 2));
+			if (stripes.compareAndSet(donorIndex, state, pack(capacity(state) - moved, reserved(state)))) {
+				break;
+			}
+		}
+
+		final int receiverIndex = indexOf(receiver);
+		while (true) {
+			final long state = stripes.get(receiverIndex);
+			if (stripes.compareAndSet(receiverIndex, state, pack(capacity(state) + moved, reserved(state)))) {
+				return true;
+			}
+		}
+	}
+
+	private static int indexOf(final int stripe) {
+		return (stripe + 1) * PADDING;
+	}
+
+	private static long pack(final int capacity, final int reserved) {
+		return ((long) capacity << 32) | (reserved & RESERVED_MASK);
+	}
+
+	private static int capacity(final long state) {
+		return (int) (state >>> 32);
+	}
+
+	private static int reserved(final long state) {
+		return (int) (state & RESERVED_MASK);
+	}
+
+	private static int available(final long state) {
+		// The reserved units of a stripe can be negative (see release).
+		return capacity(state) - reserved(state);
+	}
+}
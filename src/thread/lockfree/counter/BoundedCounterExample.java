@@ -0,0 +1,290 @@
+package thread.lockfree.counter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Many threads reserving and releasing items of the same inventory, checking
+ * that the {@link BoundedCounter} never lets them hold more items than the
+ * capacity and that all the items are available again at the end.
+ *
+ * Each thread adds what it reserved to a shared "held" counter right after
+ * reserving and removes it right before releasing, so "held" is never higher
+ * than what the counter has reserved: if it is ever higher than the capacity,
+ * the counter reserved more than it should.
+ *
+ * Then all the threads try to reserve one item at a time without releasing
+ * it, so exactly capacity reservations must succeed.
+ *
+ * At last, the operations of small histories (3 threads, 4 operations each, a
+ * capacity of 3, where a thread often releases the items reserved by another
+ * one) are recorded with their start and end times and checked against a
+ * sequential bounded counter: there must be an order of the operations, that
+ * respects the order in time of the operations that did not overlap, where
+ * each result is the one of the sequential counter (Wing and Gong's
+ * linearizability check, a depth-first search of the orders). In striped mode,
+ * a tryReserve can fail while capacity is being moved between stripes, so only
+ * its successes are checked.
+ *
+ * @author pedrorenzo
+ */
+public class BoundedCounterExample {
+	private static final int CAPACITY = 100;
+	private static final int NUMBER_OF_THREADS = 32;
+	private static final int OPERATIONS_PER_THREAD = 200_000;
+
+	private static final int HISTORIES = 2000;
+	private static final int HISTORY_CAPACITY = 3;
+	private static final int HISTORY_THREADS = 3;
+	private static final int HISTORY_OPERATIONS_PER_THREAD = 4;
+
+	public static void main(String[] args) throws InterruptedException {
+		check("single stripe", new BoundedCounter(CAPACITY));
+		check("striped", new BoundedCounter(CAPACITY, 8));
+		checkHistories("single stripe", 1, false);
+		checkHistories("striped", 2, true);
+	}
+
+	private static void check(final String name, final BoundedCounter counter) throws InterruptedException {
+		final AtomicLong held = new AtomicLong();
+		final AtomicLong maxHeld = new AtomicLong();
+		final AtomicLong reservations = new AtomicLong();
+
+		runThreads(() -> {
+			final ThreadLocalRandom random = ThreadLocalRandom.current();
+			for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+				final int items = 1 + random.nextInt(5);
+				if (counter.tryReserve(items)) {
+					reservations.incrementAndGet();
+					maxHeld.accumulateAndGet(held.addAndGet(items), Math::max);
+					held.addAndGet(-items);
+					counter.release(items);
+				}
+			}
+		});
+		System.out.println(name + ": " + reservations.get() + " reservations, at most " + maxHeld.get()
+				+ " items held at once, " + counter.available() + " of " + CAPACITY + " available at the end");
+		if (maxHeld.get() > CAPACITY || counter.available() != CAPACITY) {
+			throw new IllegalStateException(name + ": the counter reserved more than its capacity");
+		}
+
+		final AtomicInteger successes = new AtomicInteger();
+		runThreads(() -> {
+			for (int i = 0; i < CAPACITY; i++) {
+				if (counter.tryReserve(1)) {
+					successes.incrementAndGet();
+				}
+			}
+		});
+		System.out.println(name + ": " + successes.get() + " reservations of 1 item without release");
+		if (successes.get() != CAPACITY || counter.available() != 0) {
+			throw new IllegalStateException(name + ": expected exactly " + CAPACITY + " reservations");
+		}
+
+		boolean rejected = false;
+		try {
+			counter.release(CAPACITY + 1);
+		} catch (IllegalStateException e) {
+			rejected = true;
+			System.out.println(name + ": " + e.getMessage() + ", " + counter.reserved() + " items reserved now");
+		}
+		if (!rejected || counter.reserved() != CAPACITY) {
+			throw new IllegalStateException(name + ": released more than was reserved");
+		}
+		counter.release(CAPACITY);
+		if (counter.available() != CAPACITY) {
+			throw new IllegalStateException(name + ": the items were not released");
+		}
+	}
+
+	private static void checkHistories(final String name, final int numberOfStripes,
+			final boolean spuriousFailures) throws InterruptedException {
+		int crossThreadReleases = 0;
+		for (int i = 0; i < HISTORIES; i++) {
+			final History history = record(new BoundedCounter(HISTORY_CAPACITY, numberOfStripes));
+			if (!history.isLinearizable(HISTORY_CAPACITY, spuriousFailures)) {
+				throw new IllegalStateException(name + ": not linearizable: " + history);
+			}
+			crossThreadReleases += history.crossThreadReleases;
+		}
+		System.out.println(name + ": " + HISTORIES + " histories linearizable, with " + crossThreadReleases
+				+ " releases of items reserved by another thread");
+	}
+
+	/**
+	 * Runs a small history. The reserved items go to a shared queue, and any
+	 * thread may take them from there to release them.
+	 */
+	private static History record(final BoundedCounter counter) throws InterruptedException {
+		final History history = new History();
+		final Queue<Reservation> held = new ConcurrentLinkedQueue<>();
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < HISTORY_THREADS; t++) {
+			threads.add(new Thread(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < HISTORY_OPERATIONS_PER_THREAD; i++) {
+					final Reservation reservation = random.nextBoolean() ? held.poll() : null;
+					if (reservation != null) {
+						final long startTime = System.nanoTime();
+						boolean result = true;
+						try {
+							counter.release(reservation.items);
+						} catch (IllegalStateException e) {
+							result = false;
+						}
+						history.add(new Operation(false, reservation.items, result, startTime, System.nanoTime()),
+								reservation.thread != Thread.currentThread());
+					} else {
+						final int items = 1 + random.nextInt(2);
+						final long startTime = System.nanoTime();
+						final boolean result = counter.tryReserve(items);
+						history.add(new Operation(true, items, result, startTime, System.nanoTime()), false);
+						if (result) {
+							held.add(new Reservation(Thread.currentThread(), items));
+						}
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		return history;
+	}
+
+	private static void runThreads(final Runnable task) throws InterruptedException {
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+			threads.add(new Thread(task));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	private static class Reservation {
+		private final Thread thread;
+		private final int items;
+
+		private Reservation(final Thread thread, final int items) {
+			this.thread = thread;
+			this.items = items;
+		}
+	}
+
+	/**
+	 * A tryReserve or a release, its result and when it started and ended.
+	 */
+	private static class Operation {
+		private final boolean reserve;
+		private final int items;
+		private final boolean result;
+		private final long start;
+		private final long end;
+
+		private Operation(final boolean reserve, final int items, final boolean result, final long start,
+				final long end) {
+			this.reserve = reserve;
+			this.items = items;
+			this.result = result;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public String toString() {
+			return (reserve ? "tryReserve(" : "release(") + items + ")=" + result + " [" + start + ", " + end + "]";
+		}
+	}
+
+	private static class History {
+		private final List<Operation> operations = new ArrayList<>();
+		private int crossThreadReleases;
+
+		private synchronized void add(final Operation operation, final boolean crossThread) {
+			operations.add(operation);
+			if (crossThread) {
+				crossThreadReleases++;
+			}
+		}
+
+		/**
+		 * @param spuriousFailures if a tryReserve may fail with enough items
+		 *                         available.
+		 */
+		private boolean isLinearizable(final int capacity, final boolean spuriousFailures) {
+			return search(0, 0, capacity, spuriousFailures, new HashSet<>());
+		}
+
+		/**
+		 * Tries each operation that can be the next one: one that is not done yet
+		 * and started before all the others not done yet have ended.
+		 *
+		 * @param done     a bit for each operation already in the order.
+		 * @param reserved the items reserved in the sequential counter.
+		 * @param failed   the states already known to lead nowhere.
+		 */
+		private boolean search(final long done, final int reserved, final int capacity,
+				final boolean spuriousFailures, final Set<Long> failed) {
+			if (done == (1L << operations.size()) - 1) {
+				return true;
+			}
+			final long state = done << 8 | reserved;
+			if (failed.contains(state)) {
+				return false;
+			}
+			long firstEnd = Long.MAX_VALUE;
+			for (int i = 0; i < operations.size(); i++) {
+				if ((done & 1L << i) == 0) {
+					firstEnd = Math.min(firstEnd, operations.get(i).end);
+				}
+			}
+			for (int i = 0; i < operations.size(); i++) {
+				final Operation operation = operations.get(i);
+				if ((done & 1L << i) != 0 || operation.start > firstEnd) {
+					continue;
+				}
+				final int next;
+				if (!operation.reserve) {
+					// A release of reserved items always succeeds.
+					next = operation.result && reserved >= operation.items ? reserved - operation.items : -1;
+				} else if (operation.result) {
+					next = reserved + operation.items <= capacity ? reserved + operation.items : -1;
+				} else {
+					next = reserved + operation.items > capacity || spuriousFailures ? reserved : -1;
+				}
+				if (next >= 0 && search(done | 1L << i, next, capacity, spuriousFailures, failed)) {
+					return true;
+				}
+			}
+			failed.add(state);
+			return false;
+		}
+
+		@Override
+		public synchronized String toString() {
+			return operations.toString();
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package thread.lockfree.counter;
+
+/**
+ * A counter shared by many threads, like the InventoryCounter of
+ * DataSharingSynchronizedSolution and AtomicIntegerExample.
+ * 
+ * The implementations differ in how the threads compete to update it:
+ * - {@link SynchronizedCounter}: a single monitor, only one thread at a time;
+ * - {@link AtomicCounter}: a single AtomicLong, every thread does a CAS on the
+ * same cache line;
+ * - {@link StripedCounter}: many cells, each thread updates its own cell;
+ * - {@link LongAdderCounter}: the same idea, using the LongAdder of the JDK;
+ * - {@link ThreadLocalBatchedCounter}: each thread counts by itself and only
+ * touches the shared counter every batch of updates or every few ms.
+ * 
+ * @author pedrorenzo
+ */
+public interface Counter {
+
+	void add(long delta);
+
+	default void increment() {
+		add(1);
+	}
+
+	default void decrement() {
+		add(-1);
+	}
+
+	long get();
+}
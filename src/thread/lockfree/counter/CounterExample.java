@@ -0,0 +1,73 @@
+package thread.lockfree.counter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same inventory of AtomicIntegerExample, but now with many threads
+ * incrementing and decrementing the items at the same time, using each one of
+ * the {@link Counter} implementations. All of them must finish with 0 items,
+ * what changes is how long they take: with many writers, the striped counters
+ * are much faster than the synchronized and the atomic ones.
+ *
+ * For precise numbers, run the CounterBenchmark of the benchmarks module.
+ *
+ * At the end, we check that the ThreadLocalBatchedCounter also publishes the
+ * updates of a thread that updates it rarely, without any flush().
+ *
+ * @author pedrorenzo
+ */
+public class CounterExample {
+	private static final int NUMBER_OF_THREADS = 32;
+	private static final int UPDATES_PER_THREAD = 1_000_000;
+
+	public static void main(String[] args) throws InterruptedException {
+		run("SynchronizedCounter", new SynchronizedCounter());
+		run("AtomicCounter", new AtomicCounter());
+		run("StripedCounter", new StripedCounter());
+		run("LongAdderCounter", new LongAdderCounter());
+		run("ThreadLocalBatchedCounter", new ThreadLocalBatchedCounter());
+		checkDelay();
+	}
+
+	/**
+	 * 2 updates 50 ms apart, far fewer than the batch size: the second one comes
+	 * after the delay of the first, so both are flushed.
+	 */
+	private static void checkDelay() throws InterruptedException {
+		final ThreadLocalBatchedCounter counter = new ThreadLocalBatchedCounter(1024, 10, TimeUnit.MILLISECONDS);
+		counter.add(1);
+		Thread.sleep(50);
+		counter.add(1);
+		System.out.println(counter.get() == 2 ? "OK: a rare update is published after the delay"
+				: "WRONG: " + counter.get() + " items published instead of 2");
+	}
+
+	private static void run(final String name, final Counter counter) throws InterruptedException {
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+			// Half of the threads increment and the other half decrement.
+			final int delta = i % 2 == 0 ? 1 : -1;
+			threads.add(new Thread(() -> {
+				for (int j = 0; j < UPDATES_PER_THREAD; j++) {
+					counter.add(delta);
+				}
+				if (counter instanceof ThreadLocalBatchedCounter) {
+					((ThreadLocalBatchedCounter) counter).flush();
+				}
+			}));
+		}
+
+		final long startTime = System.currentTimeMillis();
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		final long duration = System.currentTimeMillis() - startTime;
+
+		System.out.println(name + ": we currently have " + counter.get() + " items, it took " + duration + " ms");
+	}
+}
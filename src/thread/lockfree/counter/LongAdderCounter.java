@@ -0,0 +1,24 @@
+package thread.lockfree.counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The LongAdder of the JDK, which uses the same idea of {@link StripedCounter}
+ * but creates the cells only when it detects contention. It is here as a
+ * reference for the benchmarks.
+ * 
+ * @author pedrorenzo
+ */
+public class LongAdderCounter implements Counter {
+	private final LongAdder value = new LongAdder();
+
+	@Override
+	public void add(final long delta) {
+		value.add(delta);
+	}
+
+	@Override
+	public long get() {
+		return value.sum();
+	}
+}
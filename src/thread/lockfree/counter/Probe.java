@@ -0,0 +1,31 @@
+package thread.lockfree.counter;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A random number of each thread, used by the striped counters to choose the
+ * cell the thread updates. When a thread meets contention in its cell, it
+ * advances its probe to move to another cell.
+ * 
+ * @author pedrorenzo
+ */
+final class Probe {
+	private static final ThreadLocal<Probe> PROBE = ThreadLocal.withInitial(Probe::new);
+
+	private int value = ThreadLocalRandom.current().nextInt();
+
+	private Probe() {
+	}
+
+	static Probe current() {
+		return PROBE.get();
+	}
+
+	int value() {
+		return value;
+	}
+
+	void advance() {
+		value = ThreadLocalRandom.current().nextInt();
+	}
+}
@@ -0,0 +1,73 @@
+package thread.lockfree.counter;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Instead of a single variable, the counter is split into cells and each thread
+ * updates one of them, so threads in different cells do not compete. Reading
+ * the counter sums all the cells, which makes the reads slower and we can only
+ * see an exact value when no thread is updating it. That is fine for counters
+ * that are written much more often than they are read.
+ *
+ * A CPU does not move single variables between cores, it moves cache lines
+ * (usually 64 bytes, but some CPUs fetch two lines together). If two cells were
+ * in the same line, threads updating different cells would still fight for the
+ * line: this is called False Sharing. That is why each cell is 128 bytes away
+ * from the next one in the array.
+ *
+ * Each thread starts at a cell chosen from a random number of its own. If its
+ * CAS fails, another thread is using the same cell, so the thread moves to
+ * another cell for the next updates.
+ *
+ * @author pedrorenzo
+ */
+public class StripedCounter implements Counter {
+	// 16 longs = 128 bytes between two cells.
+	private static final int PADDING = 16;
+
+	private final AtomicLongArray cells;
+	private final int mask;
+
+	public StripedCounter() {
+		this(2 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes number of cells, rounded up to a power of two.
+	 */
+	public StripedCounter(final int stripes) {
+		if (stripes <= 0) {
+			throw new IllegalArgumentException("The number of stripes must be positive: " + stripes);
+		}
+		final int size = Integer.highestOneBit(stripes - 1) << 1;
+		this.mask = Math.max(size, 1) - 1;
+		// One extra padding before the first cell keeps it away from the array header.
+		this.cells = new AtomicLongArray((mask + 2) * PADDING);
+	}
+
+	@Override
+	public void add(final long delta) {
+		final Probe probe = Probe.current();
+		final int index = indexOf(probe.value());
+		final long current = cells.get(index);
+		if (!cells.compareAndSet(index, current, current + delta)) {
+			// Someone else is updating this cell: we move to another one next time, and
+			// for now we add without retrying.
+			probe.advance();
+			cells.getAndAdd(index, delta);
+		}
+	}
+
+	@Override
+	public long get() {
+		long sum = 0;
+		for (int i = 0; i <= mask; i++) {
+			sum += cells.get(indexOf(i));
+		}
+		return sum;
+	}
+
+	private int indexOf(final int hash) {
+		return ((hash & mask) + 1) * PADDING;
+	}
+}
@@ -0,0 +1,26 @@
+package thread.lockfree.counter;
+
+/**
+ * The InventoryCounter of DataSharingSynchronizedSolution: every update takes
+ * the same lock, so the threads update the counter one at a time.
+ * 
+ * @author pedrorenzo
+ */
+public class SynchronizedCounter implements Counter {
+	private final Object lock = new Object();
+	private long value = 0;
+
+	@Override
+	public void add(final long delta) {
+		synchronized (this.lock) {
+			value += delta;
+		}
+	}
+
+	@Override
+	public long get() {
+		synchronized (this.lock) {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package thread.lockfree.counter;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Each thread counts in a ThreadLocal variable, which is not shared and so
+ * needs no synchronization at all, and only adds its local value to the shared
+ * counter periodically: once every batchSize updates, or at the first update
+ * after maxDelay has passed since the oldest update not flushed yet, so a
+ * thread that updates the counter rarely still publishes within about
+ * maxDelay. The shared counter is a {@link StripedCounter}, so even the flushes
+ * of many threads rarely compete.
+ *
+ * The price is that get() does not see what the threads did not flush yet: up
+ * to batchSize - 1 updates per thread. The delay is only checked when the
+ * thread updates the counter, so a thread that stops updating keeps its last
+ * updates. Because of that, a thread must call flush() when it finishes its
+ * work, otherwise its last updates are lost, the same way the
+ * IncrementingThread and DecrementingThread of the examples call join() before
+ * we print the result.
+ *
+ * Calling System.nanoTime() at every update would cost many times more than
+ * the update itself, so the delay is measured with a {@link CoarseClock}: a
+ * time that a daemon thread refreshes every millisecond, read as a plain
+ * volatile field.
+ *
+ * @author pedrorenzo
+ */
+public class ThreadLocalBatchedCounter implements Counter {
+	private final Counter shared = new StripedCounter();
+	private final ThreadLocal<Batch> batch = ThreadLocal.withInitial(Batch::new);
+	private final int batchSize;
+	private final long maxDelayNanos;
+
+	/**
+	 * Flushes every 1024 updates or 10 ms.
+	 */
+	public ThreadLocalBatchedCounter() {
+		this(1024, 10, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param batchSize number of updates a thread keeps before flushing them.
+	 * @param maxDelay  how long a thread keeps an update before flushing it, if
+	 *                  it updates the counter again.
+	 * @param unit
+	 */
+	public ThreadLocalBatchedCounter(final int batchSize, final long maxDelay, final TimeUnit unit) {
+		if (batchSize <= 0 || maxDelay <= 0) {
+			throw new IllegalArgumentException("The batch size and the delay must be positive");
+		}
+		this.batchSize = batchSize;
+		this.maxDelayNanos = unit.toNanos(maxDelay);
+	}
+
+	@Override
+	public void add(final long delta) {
+		final Batch current = batch.get();
+		final long now = CoarseClock.now;
+		if (current.updates == 0) {
+			current.deadline = now + maxDelayNanos;
+		}
+		current.value += delta;
+		if (++current.updates >= batchSize || now - current.deadline >= 0) {
+			current.flushTo(shared);
+		}
+	}
+
+	/**
+	 * Adds the updates the current thread did not flush yet to the shared counter.
+	 */
+	public void flush() {
+		batch.get().flushTo(shared);
+	}
+
+	/**
+	 * @return the value flushed by all the threads.
+	 */
+	@Override
+	public long get() {
+		return shared.get();
+	}
+
+	/**
+	 * Started by the first counter that reads it, shared by all of them.
+	 */
+	private static class CoarseClock {
+		private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+		private static volatile long now = System.nanoTime();
+
+		static {
+			final Thread ticker = new Thread(() -> {
+				while (true) {
+					LockSupport.parkNanos(TICK_NANOS);
+					now = System.nanoTime();
+				}
+			}, "batched-counter-clock");
+			ticker.setDaemon(true);
+			ticker.start();
+		}
+	}
+
+	private static class Batch {
+		private long value;
+		private int updates;
+		// When the oldest update of the batch must be flushed.
+		private long deadline;
+
+		private void flushTo(final Counter counter) {
+			if (value != 0) {
+				counter.add(value);
+			}
+			value = 0;
+			updates = 0;
+		}
+	}
+}
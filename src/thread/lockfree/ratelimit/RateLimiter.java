@@ -0,0 +1,26 @@
+package thread.lockfree.ratelimit;
+
+/**
+ * Limits how many operations happen per unit of time, while a Semaphore
+ * (SemaphoreExample) limits how many happen at the same time. A login endpoint
+ * usually needs both: a few thousand logins per second, and no more than N
+ * being processed at once.
+ *
+ * The implementations never block nor wait: the caller decides what to do when
+ * it is rejected (answer 429 Too Many Requests, try later...).
+ *
+ * @author pedrorenzo
+ */
+public interface RateLimiter {
+
+	/**
+	 * @param permits
+	 * @return <code>true</code> if the permits were taken, <code>false</code> if
+	 *         the rate would go over the limit, in which case nothing changes.
+	 */
+	boolean tryAcquire(int permits);
+
+	default boolean tryAcquire() {
+		return tryAcquire(1);
+	}
+}
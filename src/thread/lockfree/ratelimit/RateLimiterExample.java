@@ -0,0 +1,92 @@
+package thread.lockfree.ratelimit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 8 threads try to log in as fast as they can for 3 seconds, through a
+ * {@link TokenBucketRateLimiter} and a {@link SlidingWindowRateLimiter}, both
+ * of 1000 logins per second. We print how many logins each limiter allowed
+ * per second, which should be close to 1000, plus the initial burst of 1000
+ * for the token bucket (it starts full), and how many calls it rejected.
+ *
+ * Then the sliding window is checked around the borders of its windows: with
+ * windows of 10 ms, the 8 threads cross a border 100 times per second, and the
+ * count of each window must never go over the limit. A thread that read the
+ * time just before a border and counted its permit after another thread had
+ * moved to the next window would otherwise erase the count of the next window.
+ *
+ * @author pedrorenzo
+ */
+public class RateLimiterExample {
+	private static final int NUMBER_OF_THREADS = 8;
+	private static final int PERMITS_PER_SECOND = 1000;
+	private static final long DURATION_SECONDS = 3;
+
+	public static void main(String[] args) throws InterruptedException {
+		run("Token bucket", new TokenBucketRateLimiter(PERMITS_PER_SECOND));
+		run("Sliding window", new SlidingWindowRateLimiter(PERMITS_PER_SECOND, 1, TimeUnit.SECONDS));
+		checkBorders();
+	}
+
+	private static void checkBorders() throws InterruptedException {
+		final int limit = 50;
+		final SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter(limit, 10, TimeUnit.MILLISECONDS);
+		final Map<Long, LongAdder> countOfWindows = new ConcurrentHashMap<>();
+		final long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+			threads.add(new Thread(() -> {
+				while (System.nanoTime() - endTime < 0) {
+					final long window = rateLimiter.acquire(1);
+					if (window >= 0) {
+						countOfWindows.computeIfAbsent(window, w -> new LongAdder()).increment();
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		final long max = countOfWindows.values().stream().mapToLong(LongAdder::sum).max().orElse(0);
+		System.out.println((max <= limit ? "OK" : "WRONG") + ": at most " + max + " permits in each of the "
+				+ countOfWindows.size() + " windows of 10 ms, limit " + limit);
+	}
+
+	private static void run(final String name, final RateLimiter rateLimiter) throws InterruptedException {
+		final LongAdder allowed = new LongAdder();
+		final LongAdder rejected = new LongAdder();
+		final long endTime = System.nanoTime() + TimeUnit.SECONDS.toNanos(DURATION_SECONDS);
+
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < NUMBER_OF_THREADS; i++) {
+			threads.add(new Thread(() -> {
+				while (System.nanoTime() - endTime < 0) {
+					if (rateLimiter.tryAcquire()) {
+						allowed.increment();
+					} else {
+						rejected.increment();
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		System.out.println(String.format("%-14s allowed %d logins (%d/s), rejected %,d calls", name, allowed.sum(),
+				allowed.sum() / DURATION_SECONDS, rejected.sum()));
+	}
+}
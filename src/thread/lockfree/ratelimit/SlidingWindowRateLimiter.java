@@ -0,0 +1,111 @@
+package thread.lockfree.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Allows up to limit operations in any window of time (e.g. 100 per second).
+ *
+ * Counting per fixed window (from second 0 to 1, from 1 to 2...) allows twice
+ * the limit around the border: limit operations at the end of a window and
+ * limit more at the beginning of the next one. Keeping the time of each
+ * operation (a sliding log) is exact but needs memory for each of them. This
+ * is the sliding window counter: we count the operations of the current fixed
+ * window and of the previous one, and estimate the operations of the last
+ * window of time assuming the previous window's were evenly spread. E.g. 30%
+ * into the current window, the estimate is the current count plus 70% of the
+ * previous count.
+ *
+ * The window number and both counts are packed into a single long, so a CAS
+ * moves to a new window and counts the operation at the same time:
+ * - 20 bits for the window number, which only needs to tell the current and
+ * the previous windows apart from the older ones. The number wraps around
+ * every million windows, so a limiter unused for exactly that long would see
+ * old counts (once).
+ * - 22 bits for each count, so the limit must be below 4 million per window.
+ *
+ * @author pedrorenzo
+ */
+public class SlidingWindowRateLimiter implements RateLimiter {
+	private static final int COUNT_BITS = 22;
+	private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+	private static final int WINDOW_BITS = 64 - 2 * COUNT_BITS;
+	private static final long WINDOW_MASK = (1L << WINDOW_BITS) - 1;
+	static final int MAX_LIMIT = (int) COUNT_MASK;
+
+	private final int limit;
+	private final long windowNanos;
+	private final long startTime = System.nanoTime();
+	// window | previous count | current count
+	private final AtomicLong state = new AtomicLong();
+
+	/**
+	 * @param limit  operations per window, below 4 million.
+	 * @param window
+	 * @param unit
+	 */
+	public SlidingWindowRateLimiter(final int limit, final long window, final TimeUnit unit) {
+		if (limit <= 0 || limit > MAX_LIMIT || window <= 0) {
+			throw new IllegalArgumentException("The limit must be between 1 and " + MAX_LIMIT
+					+ " and the window positive");
+		}
+		this.limit = limit;
+		this.windowNanos = unit.toNanos(window);
+	}
+
+	@Override
+	public boolean tryAcquire(final int permits) {
+		return acquire(permits) >= 0;
+	}
+
+	/**
+	 * The same as tryAcquire, but tells in which window the permits were counted,
+	 * so RateLimiterExample can check that no window counts more than the limit.
+	 *
+	 * @return the window, or -1 if the permits were not acquired.
+	 */
+	long acquire(final int permits) {
+		if (permits <= 0) {
+			throw new IllegalArgumentException("The permits must be positive: " + permits);
+		}
+		long elapsed = System.nanoTime() - startTime;
+		long window = (elapsed / windowNanos) & WINDOW_MASK;
+
+		while (true) {
+			final long current = state.get();
+			final long currentWindow = current >>> (2 * COUNT_BITS);
+			final long ahead = (currentWindow - window) & WINDOW_MASK;
+			if (ahead != 0 && ahead < WINDOW_MASK / 2) {
+				// Another thread has already moved to a newer window, after we read the
+				// time: we read it again, so we never move the state back to an older
+				// window, which would erase the count of the newer one. If the window
+				// does not change, the state is not newer, only so old that the window
+				// number wrapped around.
+				final long newElapsed = System.nanoTime() - startTime;
+				final long newWindow = (newElapsed / windowNanos) & WINDOW_MASK;
+				if (newWindow != window) {
+					elapsed = newElapsed;
+					window = newWindow;
+					continue;
+				}
+			}
+			long previousCount = (current >>> COUNT_BITS) & COUNT_MASK;
+			long count = current & COUNT_MASK;
+			if (currentWindow != window) {
+				// The current window became the previous one, or both are too old.
+				previousCount = ((window - currentWindow) & WINDOW_MASK) == 1 ? count : 0;
+				count = 0;
+			}
+
+			// How much of the previous window is still inside the last window of time.
+			final double previousWeight = 1.0 - (double) (elapsed % windowNanos) / windowNanos;
+			if (previousCount * previousWeight + count + permits > limit) {
+				return -1;
+			}
+			final long updated = (window << (2 * COUNT_BITS)) | (previousCount << COUNT_BITS) | (count + permits);
+			if (state.compareAndSet(current, updated)) {
+				return window;
+			}
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package thread.lockfree.ratelimit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket: the bucket fills with permitsPerSecond tokens per second, up
+ * to burst tokens, and each operation takes a token. A full bucket lets a
+ * burst of operations through at once, and then the rate is the refill rate.
+ *
+ * Refilling with a timer thread would need a thread per limiter and would
+ * refill in steps. Here the bucket is refilled lazily: we only calculate how
+ * many tokens it would have now, from the time passed since the last update
+ * (System.nanoTime).
+ *
+ * To update the tokens and their time with a single CAS, we keep a single long
+ * instead of both: the time at which the bucket will be full again (as in the
+ * GCRA, Generic Cell Rate Algorithm, used by ATM networks). Each token taken
+ * pushes that time forward by the interval between tokens (1 second /
+ * permitsPerSecond), never starting from the past. The operation is allowed if
+ * the new time is at most burst intervals in the future, which is the same as
+ * having a token in the bucket.
+ *
+ * Under contention, most of the rejected calls only read the long: they see
+ * that there is no token without trying a CAS, so they do not take the cache
+ * line away from the other cores.
+ *
+ * @author pedrorenzo
+ */
+public class TokenBucketRateLimiter implements RateLimiter {
+	private final long intervalNanos;
+	private final long burstNanos;
+	private final long startTime = System.nanoTime();
+	// When the bucket is full again, in nanoseconds since startTime.
+	private final AtomicLong fullAt = new AtomicLong();
+
+	/**
+	 * A bucket of 1 second of permits.
+	 *
+	 * @param permitsPerSecond
+	 */
+	public TokenBucketRateLimiter(final long permitsPerSecond) {
+		this(permitsPerSecond, permitsPerSecond);
+	}
+
+	/**
+	 * @param permitsPerSecond refill rate, at most 1 per nanosecond.
+	 * @param burst            size of the bucket.
+	 */
+	public TokenBucketRateLimiter(final long permitsPerSecond, final long burst) {
+		if (permitsPerSecond <= 0 || permitsPerSecond > TimeUnit.SECONDS.toNanos(1) || burst <= 0) {
+			throw new IllegalArgumentException("The rate must be between 1 and 10^9 and the burst positive");
+		}
+		this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / permitsPerSecond;
+		this.burstNanos = Math.multiplyExact(burst, intervalNanos);
+	}
+
+	@Override
+	public boolean tryAcquire(final int permits) {
+		if (permits <= 0) {
+			throw new IllegalArgumentException("The permits must be positive: " + permits);
+		}
+		final long cost = permits * intervalNanos;
+		final long now = System.nanoTime() - startTime;
+		while (true) {
+			final long current = fullAt.get();
+			// An empty bucket: the time it would be full is already in the past.
+			final long updated = Math.max(current, now) + cost;
+			if (updated - now > burstNanos) {
+				return false;
+			}
+			if (fullAt.compareAndSet(current, updated)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the tokens in the bucket now.
+	 */
+	public long availablePermits() {
+		final long now = System.nanoTime() - startTime;
+		return (burstNanos - Math.max(0, fullAt.get() - now)) / intervalNanos;
+	}
+}
@@ -0,0 +1,98 @@
+package thread.lockfree.stm;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Software Transactional Memory: instead of locking the shared objects an
+ * operation needs (as takeRoadA and takeRoadB of DeadLockProblemExample do,
+ * with nested synchronized blocks), the operation runs optimistically, without
+ * any lock, reading and writing {@link TVar}s through a {@link Transaction}. At
+ * the end, the transaction commits all its writes at once, only if none of the
+ * variables it read was changed by another transaction in the meantime. If one
+ * was, the operation runs again from the beginning. Like a compareAndSet of
+ * AtomicReferenceExample, but for many variables at the same time.
+ *
+ * This is the TL2 (Transactional Locking II) algorithm: a global clock gives
+ * each commit a version, and each variable records the version of the last
+ * commit that wrote it. The variables are locked only during the commit, in a
+ * fixed order and without waiting, so there are no deadlocks.
+ *
+ * An atomically call inside another one, in the same thread, does not start a
+ * transaction of its own: it joins the outer one (flat nesting). Its reads and
+ * writes commit or retry together with the outer transaction, so a conflict
+ * never publishes half of the work or applies the inner writes twice.
+ *
+ * Since an operation may run many times, it must not have side effects besides
+ * the transaction writes (no prints, no I/O) and should be short: the longer
+ * it runs, the more likely another transaction changes what it read.
+ *
+ * @author pedrorenzo
+ */
+public class Stm {
+	private final AtomicLong clock = new AtomicLong();
+	private final LongAdder commits = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	// Each thread reuses its transaction. A nested atomically call joins it.
+	private final ThreadLocal<Transaction> transactions = ThreadLocal.withInitial(Transaction::new);
+
+	/**
+	 * Runs the operation in a transaction until it commits. Inside another
+	 * atomically call of this Stm, it runs once in the outer transaction, and
+	 * the outer call commits or retries all of it.
+	 *
+	 * @param operation reads and writes TVars through the transaction.
+	 * @return what the operation returned in the attempt that committed.
+	 */
+	public <R> R atomically(final Function<Transaction, R> operation) {
+		final Transaction transaction = transactions.get();
+		if (transaction.inUse) {
+			// A RetryException goes up to the loop of the outer call.
+			return operation.apply(transaction);
+		}
+		transaction.inUse = true;
+		try {
+			for (int attempt = 0;; attempt++) {
+				transaction.begin(clock.get());
+				try {
+					final R result = operation.apply(transaction);
+					if (transaction.commit(clock)) {
+						commits.increment();
+						return result;
+					}
+				} catch (Transaction.RetryException e) {
+					// A conflict in a read, we try again.
+				}
+				retries.increment();
+				backOff(attempt);
+			}
+		} finally {
+			// Does not keep the values of the last attempt alive.
+			transaction.begin(0);
+			transaction.inUse = false;
+		}
+	}
+
+	public long getCommits() {
+		return commits.sum();
+	}
+
+	public long getRetries() {
+		return retries.sum();
+	}
+
+	/**
+	 * Waits a bit before retrying, longer after each conflict, so the
+	 * transactions in conflict do not keep colliding.
+	 */
+	private static void backOff(final int attempt) {
+		if (attempt < 10) {
+			for (int i = 0; i < 1 << attempt; i++) {
+				Thread.onSpinWait();
+			}
+		} else {
+			Thread.yield();
+		}
+	}
+}
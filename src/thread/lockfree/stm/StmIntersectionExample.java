@@ -0,0 +1,213 @@
+package thread.lockfree.stm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The trains of DeadLockProblemExample with 1000 roads: each trip takes 2
+ * random roads and counts a passage in each of them. Before passing, a train
+ * looks at the counters of its 2 roads a few times (as a driver checking the
+ * signals), which only reads them. We run the same trips in 2 ways, with more
+ * and more trains:
+ *
+ * - Ordered nested locking: the fix suggested in DeadLockProblemExample, a
+ * synchronized block per road, always locking the lowest road first.
+ *
+ * - STM: both counters are updated in one transaction of the {@link Stm},
+ * without holding any lock while the train passes. Two trips only conflict if
+ * they share a road and commit at the same time, and then one of them runs
+ * again. Looking at the roads is a read-only transaction, which never locks
+ * nor writes anything, so on a machine with many cores the trains do not fight
+ * for the cache lines of the roads as they do for the monitors of the
+ * synchronized blocks.
+ *
+ * With a single core there is no parallelism to gain and the locks, which
+ * are very cheap without contention, are faster: the STM pays for the read
+ * and write sets and for the global clock at every commit.
+ *
+ * At the end of each run we check that the passages add up to 2 per trip, so no
+ * update was lost, and print the trips per second and, for the STM, how many
+ * transactions had to be retried.
+ *
+ * Before that, we check that a nested atomically call retries with the outer
+ * one: its writes must be applied once, even if the outer transaction
+ * conflicts after the nested call returned.
+ *
+ * @author pedrorenzo
+ */
+public class StmIntersectionExample {
+	private static final int NUMBER_OF_ROADS = 1000;
+	private static final int TRIPS_PER_TRAIN = 200_000;
+	private static final int[] NUMBER_OF_TRAINS = { 1, 4, 16, 64 };
+	private static final int SIGNAL_CHECKS_PER_TRIP = 4;
+
+	public static void main(String[] args) throws InterruptedException {
+		checkNesting();
+		for (int trains : NUMBER_OF_TRAINS) {
+			runWithLocks(trains);
+			runWithStm(trains);
+		}
+	}
+
+	private static void runWithLocks(final int numberOfTrains) throws InterruptedException {
+		final Object[] roads = new Object[NUMBER_OF_ROADS];
+		final long[] passages = new long[NUMBER_OF_ROADS];
+		for (int i = 0; i < NUMBER_OF_ROADS; i++) {
+			roads[i] = new Object();
+		}
+
+		final long duration = run(numberOfTrains, new Trip() {
+			@Override
+			public long look(final int roadA, final int roadB) {
+				synchronized (roads[Math.min(roadA, roadB)]) {
+					synchronized (roads[Math.max(roadA, roadB)]) {
+						return passages[roadA] + passages[roadB];
+					}
+				}
+			}
+
+			@Override
+			public void pass(final int roadA, final int roadB) {
+				synchronized (roads[Math.min(roadA, roadB)]) {
+					synchronized (roads[Math.max(roadA, roadB)]) {
+						passages[roadA]++;
+						passages[roadB]++;
+					}
+				}
+			}
+		});
+
+		long total = 0;
+		for (long passage : passages) {
+			total += passage;
+		}
+		print("Nested locks", numberOfTrains, duration, total, "");
+	}
+
+	private static void runWithStm(final int numberOfTrains) throws InterruptedException {
+		final Stm stm = new Stm();
+		final List<TVar<Long>> passages = new ArrayList<>(NUMBER_OF_ROADS);
+		for (int i = 0; i < NUMBER_OF_ROADS; i++) {
+			passages.add(new TVar<>(0L));
+		}
+
+		final long duration = run(numberOfTrains, new Trip() {
+			@Override
+			public long look(final int roadA, final int roadB) {
+				return stm.atomically(
+						transaction -> transaction.get(passages.get(roadA)) + transaction.get(passages.get(roadB)));
+			}
+
+			@Override
+			public void pass(final int roadA, final int roadB) {
+				stm.atomically(transaction -> {
+					final TVar<Long> a = passages.get(roadA);
+					final TVar<Long> b = passages.get(roadB);
+					transaction.set(a, transaction.get(a) + 1);
+					// If both roads are the same, we read the value we have just written.
+					transaction.set(b, transaction.get(b) + 1);
+					return null;
+				});
+			}
+		});
+
+		long total = 0;
+		for (TVar<Long> passage : passages) {
+			total += passage.getCommitted();
+		}
+		print("STM", numberOfTrains, duration, total, ", " + stm.getRetries() + " retries");
+	}
+
+	/**
+	 * The outer transaction moves a passage from road A to road B with a nested
+	 * call and then reads road C. In the first attempt, another thread commits
+	 * road C before that read, so the outer transaction must run again.
+	 */
+	private static void checkNesting() throws InterruptedException {
+		final Stm stm = new Stm();
+		final TVar<Long> roadA = new TVar<>(10L);
+		final TVar<Long> roadB = new TVar<>(0L);
+		final TVar<Long> roadC = new TVar<>(0L);
+		final int[] attempts = new int[1];
+
+		stm.atomically(transaction -> {
+			stm.atomically(inner -> {
+				inner.set(roadA, inner.get(roadA) - 1);
+				inner.set(roadB, inner.get(roadB) + 1);
+				return null;
+			});
+			if (attempts[0]++ == 0) {
+				final Thread other = new Thread(() -> stm.atomically(t -> {
+					t.set(roadC, 1L);
+					return null;
+				}));
+				other.start();
+				try {
+					other.join();
+				} catch (InterruptedException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			return transaction.get(roadC);
+		});
+
+		if (attempts[0] >= 2 && roadA.getCommitted() == 9 && roadB.getCommitted() == 1) {
+			System.out.println("OK: the nested transaction was applied once in " + attempts[0] + " attempts");
+		} else {
+			System.out.println("WRONG: " + attempts[0] + " attempts, road A " + roadA.getCommitted()
+					+ ", road B " + roadB.getCommitted());
+		}
+	}
+
+	/**
+	 * @return how long, in ms, all the trains took to finish their trips.
+	 */
+	private static long run(final int numberOfTrains, final Trip trip) throws InterruptedException {
+		final List<Thread> trains = new ArrayList<>();
+		for (int i = 0; i < numberOfTrains; i++) {
+			trains.add(new Thread(() -> {
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				long seen = 0;
+				for (int j = 0; j < TRIPS_PER_TRAIN; j++) {
+					final int roadA = random.nextInt(NUMBER_OF_ROADS);
+					final int roadB = random.nextInt(NUMBER_OF_ROADS);
+					for (int k = 0; k < SIGNAL_CHECKS_PER_TRIP; k++) {
+						seen += trip.look(roadA, roadB);
+					}
+					trip.pass(roadA, roadB);
+				}
+				// Uses what the train saw, so the JIT does not remove the reads.
+				if (seen < 0) {
+					System.out.println(seen);
+				}
+			}));
+		}
+
+		final long startTime = System.currentTimeMillis();
+		for (Thread train : trains) {
+			train.start();
+		}
+		for (Thread train : trains) {
+			train.join();
+		}
+		return Math.max(1, System.currentTimeMillis() - startTime);
+	}
+
+	private static void print(final String name, final int numberOfTrains, final long duration,
+			final long totalPassages, final String details) {
+		final long trips = (long) numberOfTrains * TRIPS_PER_TRAIN;
+		final String check = totalPassages == 2 * trips ? "OK" : "LOST UPDATES (" + totalPassages + ")";
+		System.out.println(String.format("%-12s %2d trains: %,d trips/s, passages %s%s", name, numberOfTrains,
+				trips * 1000 / duration, check, details));
+	}
+
+	private interface Trip {
+		/**
+		 * @return the passages of both roads, read at the same moment.
+		 */
+		long look(int roadA, int roadB);
+
+		void pass(int roadA, int roadB);
+	}
+}
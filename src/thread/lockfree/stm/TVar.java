@@ -0,0 +1,47 @@
+package thread.lockfree.stm;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A transactional variable: a shared value that is only read and written
+ * inside {@link Stm#atomically}.
+ *
+ * Besides the value, it has a version: the value of the global clock of the
+ * {@link Stm} when it was last written. The version and a "locked" bit share
+ * the same long (the lowest bit is the lock), so a CAS can lock the variable
+ * only if its version did not change. The lock is only held for a few
+ * nanoseconds while a transaction commits, never while it runs.
+ *
+ * @author pedrorenzo
+ */
+public class TVar<T> {
+	private static final AtomicLong NEXT_ID = new AtomicLong();
+
+	// Used to lock the variables of a transaction always in the same order.
+	final long id = NEXT_ID.getAndIncrement();
+	final AtomicLong versionAndLock = new AtomicLong(0);
+	volatile T value;
+
+	public TVar(final T initialValue) {
+		this.value = initialValue;
+	}
+
+	/**
+	 * Reads the value outside of any transaction. It is always a value some
+	 * transaction committed, but reading 2 variables this way may give values
+	 * of different transactions.
+	 * 
+	 * @return the value.
+	 */
+	public T getCommitted() {
+		return value;
+	}
+
+	static boolean isLocked(final long versionAndLock) {
+		return (versionAndLock & 1) != 0;
+	}
+
+	static long versionOf(final long versionAndLock) {
+		return versionAndLock >>> 1;
+	}
+}
@@ -0,0 +1,173 @@
+package thread.lockfree.stm;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A transaction of the {@link Stm}. It only exists inside Stm.atomically and
+ * belongs to a single thread.
+ *
+ * The reads go straight to the variables, but only accept values committed
+ * before the transaction started (version up to the readVersion), so all the
+ * values a transaction sees belong to the same moment. Otherwise the
+ * transaction is retried. The writes stay in the transaction until the commit.
+ *
+ * Transactions are expected to touch a few variables, so the read and write
+ * sets are plain arrays searched one by one, which is faster than a map for
+ * this size and allocates much less.
+ *
+ * @author pedrorenzo
+ */
+public class Transaction {
+	private static final int INITIAL_CAPACITY = 8;
+
+	private long readVersion;
+	private TVar<?>[] reads = new TVar<?>[INITIAL_CAPACITY];
+	private int numberOfReads;
+	private TVar<?>[] writes = new TVar<?>[INITIAL_CAPACITY];
+	private Object[] writtenValues = new Object[INITIAL_CAPACITY];
+	// The versions of the written variables before we locked them.
+	private long[] lockedVersions = new long[INITIAL_CAPACITY];
+	private int numberOfWrites;
+	// Set by the Stm while an atomically call runs on it.
+	boolean inUse;
+
+	Transaction() {
+	}
+
+	/**
+	 * Prepares the transaction for a new attempt, keeping its arrays.
+	 */
+	void begin(final long readVersion) {
+		this.readVersion = readVersion;
+		Arrays.fill(reads, 0, numberOfReads, null);
+		Arrays.fill(writes, 0, numberOfWrites, null);
+		Arrays.fill(writtenValues, 0, numberOfWrites, null);
+		numberOfReads = 0;
+		numberOfWrites = 0;
+	}
+
+	@SuppressWarnings("unchecked")
+	public <T> T get(final TVar<T> variable) {
+		final int written = indexOfWrite(variable);
+		if (written >= 0) {
+			return (T) writtenValues[written];
+		}
+		final long before = variable.versionAndLock.get();
+		final T value = variable.value;
+		final long after = variable.versionAndLock.get();
+		// Locked: someone is committing it. Changed: someone committed it while we
+		// read. Newer: someone committed it after we started.
+		if (TVar.isLocked(before) || before != after || TVar.versionOf(before) > readVersion) {
+			throw RetryException.INSTANCE;
+		}
+		if (numberOfReads == reads.length) {
+			reads = Arrays.copyOf(reads, reads.length * 2);
+		}
+		reads[numberOfReads++] = variable;
+		return value;
+	}
+
+	public <T> void set(final TVar<T> variable, final T value) {
+		final int written = indexOfWrite(variable);
+		if (written >= 0) {
+			writtenValues[written] = value;
+			return;
+		}
+		if (numberOfWrites == writes.length) {
+			writes = Arrays.copyOf(writes, writes.length * 2);
+			writtenValues = Arrays.copyOf(writtenValues, writes.length);
+			lockedVersions = Arrays.copyOf(lockedVersions, writes.length);
+		}
+		// Keeps the writes sorted by id, the order in which they are locked.
+		int index = numberOfWrites;
+		while (index > 0 && writes[index - 1].id > variable.id) {
+			writes[index] = writes[index - 1];
+			writtenValues[index] = writtenValues[index - 1];
+			index--;
+		}
+		writes[index] = variable;
+		writtenValues[index] = value;
+		numberOfWrites++;
+	}
+
+	/**
+	 * Locks the written variables in the order of their ids (so two commits never
+	 * wait for each other in a circle; if a variable is locked we just give up),
+	 * takes a new version from the clock, checks that nothing we read changed and
+	 * then writes the values, unlocking each variable with the new version.
+	 *
+	 * @param clock the global clock of the Stm.
+	 * @return <code>false</code> if the transaction must be retried.
+	 */
+	boolean commit(final AtomicLong clock) {
+		// The reads were already validated one by one against the readVersion.
+		if (numberOfWrites == 0) {
+			return true;
+		}
+
+		for (int i = 0; i < numberOfWrites; i++) {
+			final long current = writes[i].versionAndLock.get();
+			if (TVar.isLocked(current) || !writes[i].versionAndLock.compareAndSet(current, current | 1)) {
+				unlock(i);
+				return false;
+			}
+			lockedVersions[i] = current;
+		}
+
+		final long writeVersion = clock.incrementAndGet();
+		// If nobody committed since we started, nothing we read can have changed.
+		if (writeVersion != readVersion + 1) {
+			for (int i = 0; i < numberOfReads; i++) {
+				final int written = indexOfWrite(reads[i]);
+				final long current = written >= 0 ? lockedVersions[written] : reads[i].versionAndLock.get();
+				if (TVar.isLocked(current) || TVar.versionOf(current) > readVersion) {
+					unlock(numberOfWrites);
+					return false;
+				}
+			}
+		}
+
+		for (int i = 0; i < numberOfWrites; i++) {
+			write(writes[i], writtenValues[i]);
+			writes[i].versionAndLock.set(writeVersion << 1);
+		}
+		return true;
+	}
+
+	private int indexOfWrite(final TVar<?> variable) {
+		for (int i = 0; i < numberOfWrites; i++) {
+			if (writes[i] == variable) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> void write(final TVar<T> variable, final Object value) {
+		variable.value = (T) value;
+	}
+
+	/**
+	 * Gives the first locked variables back their previous versions.
+	 */
+	private void unlock(final int locked) {
+		for (int i = 0; i < locked; i++) {
+			writes[i].versionAndLock.set(lockedVersions[i]);
+		}
+	}
+
+	/**
+	 * Thrown by get() to abandon the transaction. It is always the same instance,
+	 * without stack trace, since it is part of the normal flow.
+	 */
+	static class RetryException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		static final RetryException INSTANCE = new RetryException();
+
+		private RetryException() {
+			super("Transaction conflict", null, false, false);
+		}
+	}
+}
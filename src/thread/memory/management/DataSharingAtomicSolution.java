@@ -18,6 +18,10 @@ import java.util.Random;
  * able to show, since getAverage() is not synchronized, that the threads are
  * able to work in parallel and in a correct way only with atomicity.
  * 
+ * addSample() is still synchronized, so the BusinessLogic threads wait for each
+ * other. See {@link thread.metrics.LockFreeMetricsExample} for metrics where
+ * the writers never wait and we also get min, max and percentiles.
+ * 
  * @author pedrorenzo
  */
 public class DataSharingAtomicSolution {
@@ -85,12 +89,15 @@ public class DataSharingAtomicSolution {
 
 	public static class Metrics {
 		private long count = 0;
+		private long sum = 0;
 		private volatile double average = 0.0;
 
+		// We keep the exact sum instead of recalculating it from the average
+		// (average * count), which would accumulate floating point errors.
 		public synchronized void addSample(final long sample) {
-			double currentSum = average * count;
+			sum += sample;
 			count++;
-			average = (currentSum + sample) / count;
+			average = (double) sum / count;
 		}
 
 		// Since this is a get method, we would not need the keyword synchronized here,
@@ -0,0 +1,76 @@
+package thread.metrics;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same scenario of DataSharingAtomicSolution: the BusinessLogic threads
+ * take a random time from 0 to 10 ms to run and report it, while the
+ * MetricsPrinter prints the metrics every 100 ms. Now the samples go to a
+ * {@link MetricsRecorder}, so the BusinessLogic threads never wait for each
+ * other nor for the printer, and besides the average (which should be close to
+ * 5 ms) we can see the min, max and percentiles, in microseconds.
+ *
+ * @author pedrorenzo
+ */
+public class LockFreeMetricsExample {
+	public static void main(String[] args) {
+		final MetricsRecorder metrics = new MetricsRecorder();
+
+		final BusinessLogic businessLogicThread1 = new BusinessLogic(metrics);
+		final BusinessLogic businessLogicThread2 = new BusinessLogic(metrics);
+
+		final MetricsPrinter metricsPrinter = new MetricsPrinter(metrics);
+
+		businessLogicThread1.start();
+		businessLogicThread2.start();
+		metricsPrinter.start();
+	}
+
+	public static class MetricsPrinter extends Thread {
+		private MetricsRecorder metrics;
+
+		public MetricsPrinter(final MetricsRecorder metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					System.out.println("InterruptedException" + e);
+				}
+
+				System.out.println("Current metrics (us): " + metrics.snapshot());
+			}
+		}
+	}
+
+	public static class BusinessLogic extends Thread {
+		private MetricsRecorder metrics;
+		private Random random = new Random();
+
+		public BusinessLogic(final MetricsRecorder metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final long start = System.nanoTime();
+
+				try {
+					Thread.sleep(random.nextInt(10));
+				} catch (InterruptedException e) {
+					System.out.println("InterruptedException" + e);
+				}
+
+				final long end = System.nanoTime();
+
+				metrics.addSample(TimeUnit.NANOSECONDS.toMicros(end - start));
+			}
+		}
+	}
+}
@@ -0,0 +1,102 @@
+package thread.metrics;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative long values with a fixed relative precision, in
+ * the same way as the HDR histograms: values below 128 have a bucket each and,
+ * from there on, each power of 2 is divided into 64 buckets, so a value is
+ * never more than 1/64 (about 1.6%) away from its bucket. All the range of
+ * long fits in 3712 buckets.
+ *
+ * It is not thread safe: the {@link MetricsRecorder} gives one histogram to
+ * each writer thread.
+ *
+ * @author pedrorenzo
+ */
+public class LogHistogram {
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+	// The highest bit of a non-negative long is the 62nd.
+	private static final int MAX_SHIFT = 62 - (SUB_BUCKET_BITS - 1);
+	static final int BUCKET_COUNT = MAX_SHIFT * HALF_SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount;
+
+	public void record(final long value) {
+		counts[indexOf(value)]++;
+		totalCount++;
+	}
+
+	public void add(final LogHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+	}
+
+	public void clear() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile.
+	 * @return the middle of the bucket holding the value at this quantile, or 0
+	 *         if the histogram is empty.
+	 */
+	public long valueAtQuantile(final double quantile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		final long rank = Math.max(1, (long) Math.ceil(Math.min(Math.max(quantile, 0.0), 1.0) * totalCount));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return (lowestValueOf(i) + highestValueOf(i)) >>> 1;
+			}
+		}
+		return highestValueOf(BUCKET_COUNT - 1);
+	}
+
+	/**
+	 * Values below 128 go to the bucket with the same number. A bigger value is
+	 * shifted right until it is between 64 and 127, so each shift has 64 buckets.
+	 *
+	 * @param value
+	 * @return the bucket of the value.
+	 */
+	static int indexOf(final long value) {
+		if (value < 0) {
+			throw new IllegalArgumentException("Only non-negative values can be recorded: " + value);
+		}
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		final int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+		return shift * HALF_SUB_BUCKET_COUNT + (int) (value >>> shift);
+	}
+
+	static long lowestValueOf(final int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		final int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+		return (long) (index - shift * HALF_SUB_BUCKET_COUNT) << shift;
+	}
+
+	static long highestValueOf(final int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		final int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+		return lowestValueOf(index) + (1L << shift) - 1;
+	}
+}
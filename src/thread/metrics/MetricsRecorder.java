@@ -0,0 +1,131 @@
+package thread.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The Metrics of DataSharingAtomicSolution is synchronized, so the
+ * BusinessLogic threads wait for each other to add their samples, and it only
+ * knows the average. This recorder gives each writer thread its own cell, with
+ * the count, sum, min, max and a {@link LogHistogram} of the samples of that
+ * thread. Since nobody else writes to a cell, writers never wait for each other
+ * nor fight for the same cache line, and recording a sample is just a few
+ * increments.
+ *
+ * A reader cannot simply copy a cell while its writer keeps changing it: the
+ * copy could be half updated and, at high rates, the writer would change the
+ * cell during every copy. Instead, each cell has 2 sets of samples: the writer
+ * records into the active one and the reader swaps them, waits until the
+ * writer is not in the middle of a sample of the old set (which takes a few
+ * nanoseconds), and then reads the old set alone. To know that, the writer
+ * makes the version of the cell odd before recording a sample and even after.
+ * The writer never waits, only the reader may.
+ *
+ * A cell is created the first time a thread records a sample and is kept
+ * forever. This is meant for long-running threads or thread pools, not for a
+ * new thread per sample.
+ *
+ * @author pedrorenzo
+ */
+public class MetricsRecorder {
+	private final List<Cell> cells = new CopyOnWriteArrayList<>();
+	private final ThreadLocal<Cell> cell = ThreadLocal.withInitial(() -> {
+		final Cell newCell = new Cell();
+		cells.add(newCell);
+		return newCell;
+	});
+
+	// All the samples taken from the cells so far. Guarded by this.
+	private final MetricsSnapshot total = new MetricsSnapshot();
+
+	/**
+	 * Records a sample. Only the current thread writes to its cell, so no lock
+	 * or CAS is needed.
+	 *
+	 * @param sample a non-negative value, e.g. a latency.
+	 */
+	public void addSample(final long sample) {
+		// We check it before touching the cell, which must not stay half updated.
+		if (sample < 0) {
+			throw new IllegalArgumentException("Only non-negative samples can be recorded: " + sample);
+		}
+		cell.get().record(sample);
+	}
+
+	/**
+	 * Takes the samples recorded since the last snapshot from all the cells and
+	 * adds them to the total. Readers wait for each other, but never block the
+	 * writers.
+	 *
+	 * @return a copy of all the samples recorded up to now.
+	 */
+	public synchronized MetricsSnapshot snapshot() {
+		drainTo(total);
+		final MetricsSnapshot copy = new MetricsSnapshot();
+		copy.add(total);
+		return copy;
+	}
+
+	/**
+	 * Moves the samples recorded since the last call from all the cells to the
+	 * given snapshot. The caller must not call it from more than one thread at a
+	 * time.
+	 *
+	 * @param target
+	 */
+	void drainTo(final MetricsSnapshot target) {
+		for (Cell current : cells) {
+			current.drainTo(target);
+		}
+	}
+
+	private static class Cell {
+		private static final VarHandle VERSION;
+
+		static {
+			try {
+				VERSION = MethodHandles.lookup().findVarHandle(Cell.class, "version", long.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private long version;
+		private volatile MetricsSnapshot active = new MetricsSnapshot();
+		// Only used by the reader.
+		private MetricsSnapshot spare = new MetricsSnapshot();
+
+		/**
+		 * Called only by the owner thread.
+		 */
+		private void record(final long sample) {
+			final long currentVersion = version;
+			// A volatile write followed by the volatile read of active: either the reader
+			// sees the odd version, or we see the set it has just activated.
+			VERSION.setVolatile(this, currentVersion + 1);
+			active.record(sample);
+			// The sample must be visible before the even version.
+			VERSION.setRelease(this, currentVersion + 2);
+		}
+
+		private void drainTo(final MetricsSnapshot target) {
+			final MetricsSnapshot previous = active;
+			active = spare;
+
+			// If the writer is recording a sample, it may be in the previous set, so we
+			// wait for it to finish. The next samples go to the new set.
+			final long currentVersion = (long) VERSION.getVolatile(this);
+			if ((currentVersion & 1) != 0) {
+				while ((long) VERSION.getVolatile(this) == currentVersion) {
+					Thread.onSpinWait();
+				}
+			}
+
+			target.add(previous);
+			previous.clear();
+			spare = previous;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package thread.metrics;
+
+/**
+ * A set of samples: count, sum, min, max and their {@link LogHistogram}. It is
+ * not thread safe: a snapshot returned by a recorder belongs to the thread
+ * that took it.
+ *
+ * The mean is the sum divided by the count, both exact, instead of being
+ * recalculated from the previous average at each sample, which accumulates
+ * floating point errors.
+ *
+ * @author pedrorenzo
+ */
+public class MetricsSnapshot {
+	private final LogHistogram histogram = new LogHistogram();
+	private long count;
+	private long sum;
+	private long min = Long.MAX_VALUE;
+	private long max = Long.MIN_VALUE;
+
+	void record(final long sample) {
+		count++;
+		sum += sample;
+		min = Math.min(min, sample);
+		max = Math.max(max, sample);
+		histogram.record(sample);
+	}
+
+	void add(final MetricsSnapshot other) {
+		if (other.count == 0) {
+			return;
+		}
+		count += other.count;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		histogram.add(other.histogram);
+	}
+
+	void clear() {
+		if (count == 0) {
+			return;
+		}
+		count = 0;
+		sum = 0;
+		min = Long.MAX_VALUE;
+		max = Long.MIN_VALUE;
+		histogram.clear();
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getSum() {
+		return sum;
+	}
+
+	/**
+	 * @return the lowest sample, or 0 if there is none.
+	 */
+	public long getMin() {
+		return count == 0 ? 0 : min;
+	}
+
+	/**
+	 * @return the highest sample, or 0 if there is none.
+	 */
+	public long getMax() {
+		return count == 0 ? 0 : max;
+	}
+
+	/**
+	 * @return the average of the samples, or 0 if there is none.
+	 */
+	public double getMean() {
+		return count == 0 ? 0.0 : (double) sum / count;
+	}
+
+	/**
+	 * @param quantile between 0 and 1, e.g. 0.99 for the 99th percentile.
+	 * @return the sample at this quantile, with the precision of the
+	 *         {@link LogHistogram} but never out of the min and max samples.
+	 */
+	public long getQuantile(final double quantile) {
+		if (count == 0) {
+			return 0;
+		}
+		return Math.max(min, Math.min(max, histogram.valueAtQuantile(quantile)));
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " mean=" + String.format("%.3f", getMean()) + " min=" + getMin() + " p50="
+				+ getQuantile(0.5) + " p99=" + getQuantile(0.99) + " p999=" + getQuantile(0.999) + " max="
+				+ getMax();
+	}
+}
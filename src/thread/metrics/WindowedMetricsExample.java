@@ -0,0 +1,80 @@
+package thread.metrics;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same scenario of {@link LockFreeMetricsExample}, but after 15 seconds the
+ * BusinessLogic threads get slower: they take from 0 to 20 ms instead of 0 to
+ * 10 ms. The MetricsPrinter uses a {@link WindowedMetricsRecorder}, so the mean
+ * and the percentiles it prints go from about 5 ms to about 10 ms within the
+ * 10 seconds of the window, while an average of all the samples would take much
+ * longer to show it.
+ *
+ * @author pedrorenzo
+ */
+public class WindowedMetricsExample {
+	private static final long SLOW_DOWN_AFTER = TimeUnit.SECONDS.toNanos(15);
+
+	public static void main(String[] args) {
+		final WindowedMetricsRecorder metrics = new WindowedMetricsRecorder();
+
+		final BusinessLogic businessLogicThread1 = new BusinessLogic(metrics);
+		final BusinessLogic businessLogicThread2 = new BusinessLogic(metrics);
+
+		final MetricsPrinter metricsPrinter = new MetricsPrinter(metrics);
+
+		businessLogicThread1.start();
+		businessLogicThread2.start();
+		metricsPrinter.start();
+	}
+
+	public static class MetricsPrinter extends Thread {
+		private WindowedMetricsRecorder metrics;
+
+		public MetricsPrinter(final WindowedMetricsRecorder metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException e) {
+					System.out.println("InterruptedException" + e);
+				}
+
+				System.out.println("Last 10 seconds (us): " + metrics.snapshot());
+			}
+		}
+	}
+
+	public static class BusinessLogic extends Thread {
+		private WindowedMetricsRecorder metrics;
+		private Random random = new Random();
+		private final long startTime = System.nanoTime();
+
+		public BusinessLogic(final WindowedMetricsRecorder metrics) {
+			this.metrics = metrics;
+		}
+
+		@Override
+		public void run() {
+			while (true) {
+				final int maxSleepingTime = System.nanoTime() - startTime < SLOW_DOWN_AFTER ? 10 : 20;
+				final long start = System.nanoTime();
+
+				try {
+					Thread.sleep(random.nextInt(maxSleepingTime));
+				} catch (InterruptedException e) {
+					System.out.println("InterruptedException" + e);
+				}
+
+				final long end = System.nanoTime();
+
+				metrics.addSample(TimeUnit.NANOSECONDS.toMicros(end - start));
+			}
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package thread.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * After millions of samples, a new sample barely changes the average of all
+ * the samples, so a printer showing it would not notice when the application
+ * gets slower. This recorder only reports the recent samples.
+ *
+ * The time is divided into intervals (by default 1 second) and the recorder
+ * keeps the samples of the last intervals (by default 10) in a ring buffer:
+ * when a new interval starts, it takes the place of the oldest one. The
+ * reports give the rate, mean and percentiles of the samples in this window,
+ * and also an exponentially decaying rate and mean, where each completed
+ * interval weighs less than the next one, so the old intervals fade away
+ * instead of leaving the window all at once.
+ *
+ * The writers record into a {@link MetricsRecorder}, so they never wait. The
+ * samples only move to the ring buffer when a reader asks for a snapshot, and
+ * all the samples moved go to the current interval, so there should be a
+ * reader polling more often than once per interval, as the MetricsPrinter does
+ * every 100 ms.
+ *
+ * @author pedrorenzo
+ */
+public class WindowedMetricsRecorder {
+	private final MetricsRecorder recorder = new MetricsRecorder();
+	private final long startTime = System.nanoTime();
+	private final long intervalNanos;
+	// How much the previous decaying values weigh after each interval.
+	private final double decay;
+
+	// Guarded by this.
+	private final MetricsSnapshot[] intervals;
+	private long currentInterval;
+	private boolean decayingStarted;
+	private double decayingRate;
+	private double decayingCount;
+	private double decayingSum;
+
+	/**
+	 * Creates a recorder with a window of 10 intervals of 1 second.
+	 */
+	public WindowedMetricsRecorder() {
+		this(1, TimeUnit.SECONDS, 10);
+	}
+
+	/**
+	 * The decaying values lose about 63% of their weight (1 - 1/e) after a whole
+	 * window.
+	 *
+	 * @param interval
+	 * @param unit
+	 * @param numberOfIntervals the size of the window.
+	 */
+	public WindowedMetricsRecorder(final long interval, final TimeUnit unit, final int numberOfIntervals) {
+		if (interval <= 0 || numberOfIntervals <= 0) {
+			throw new IllegalArgumentException("The interval and the number of intervals must be positive");
+		}
+		this.intervalNanos = unit.toNanos(interval);
+		this.decay = Math.exp(-1.0 / numberOfIntervals);
+		this.intervals = new MetricsSnapshot[numberOfIntervals];
+		for (int i = 0; i < numberOfIntervals; i++) {
+			intervals[i] = new MetricsSnapshot();
+		}
+	}
+
+	/**
+	 * Records a sample without waiting, as {@link MetricsRecorder#addSample}.
+	 *
+	 * @param sample a non-negative value, e.g. a latency.
+	 */
+	public void addSample(final long sample) {
+		recorder.addSample(sample);
+	}
+
+	/**
+	 * Moves the new samples to the current interval, starts the new intervals if
+	 * the time has come, and adds the intervals of the window.
+	 *
+	 * @return the metrics of the window.
+	 */
+	public synchronized WindowedSnapshot snapshot() {
+		final long elapsed = System.nanoTime() - startTime;
+		recorder.drainTo(intervals[slotOf(currentInterval)]);
+		advanceTo(elapsed / intervalNanos);
+
+		final MetricsSnapshot window = new MetricsSnapshot();
+		for (MetricsSnapshot interval : intervals) {
+			window.add(interval);
+		}
+
+		// The window is the current interval (only the part that has passed) and the
+		// previous ones, but at the beginning we do not have all of them yet.
+		final long windowNanos = Math.min(elapsed, (intervals.length - 1) * intervalNanos + elapsed % intervalNanos);
+		final double ratePerSecond = windowNanos == 0 ? 0.0
+				: window.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / windowNanos;
+		final double decayingMean = decayingCount == 0 ? 0.0 : decayingSum / decayingCount;
+
+		return new WindowedSnapshot(window, ratePerSecond, decayingRate, decayingMean);
+	}
+
+	/**
+	 * Completes the intervals up to the given one, updating the decaying values
+	 * with each of them and clearing the slots reused by the new intervals.
+	 */
+	private void advanceTo(final long interval) {
+		final long steps = interval - currentInterval;
+		for (long i = 0; i < steps && i < intervals.length; i++) {
+			complete(intervals[slotOf(currentInterval)]);
+			currentInterval++;
+			intervals[slotOf(currentInterval)].clear();
+		}
+
+		// Nobody asked for a snapshot for more than a whole window: all the intervals
+		// are empty by now and the remaining ones only decay the values.
+		if (steps > intervals.length) {
+			final double remainingDecay = Math.pow(decay, steps - intervals.length);
+			decayingRate *= remainingDecay;
+			decayingCount *= remainingDecay;
+			decayingSum *= remainingDecay;
+			currentInterval = interval;
+		}
+	}
+
+	private void complete(final MetricsSnapshot interval) {
+		final double rate = interval.getCount() * (double) TimeUnit.SECONDS.toNanos(1) / intervalNanos;
+		if (decayingStarted) {
+			decayingRate = decay * decayingRate + (1 - decay) * rate;
+		} else {
+			decayingRate = rate;
+			decayingStarted = true;
+		}
+		decayingCount = decay * decayingCount + interval.getCount();
+		decayingSum = decay * decayingSum + interval.getSum();
+	}
+
+	private int slotOf(final long interval) {
+		return (int) (interval % intervals.length);
+	}
+
+	/**
+	 * The metrics of the window at the moment of the snapshot.
+	 */
+	public static class WindowedSnapshot {
+		private final MetricsSnapshot window;
+		private final double ratePerSecond;
+		private final double decayingRatePerSecond;
+		private final double decayingMean;
+
+		private WindowedSnapshot(final MetricsSnapshot window, final double ratePerSecond,
+				final double decayingRatePerSecond, final double decayingMean) {
+			this.window = window;
+			this.ratePerSecond = ratePerSecond;
+			this.decayingRatePerSecond = decayingRatePerSecond;
+			this.decayingMean = decayingMean;
+		}
+
+		/**
+		 * @return the samples of the window: count, mean, min, max and quantiles.
+		 */
+		public MetricsSnapshot getWindow() {
+			return window;
+		}
+
+		/**
+		 * @return samples per second in the window.
+		 */
+		public double getRatePerSecond() {
+			return ratePerSecond;
+		}
+
+		/**
+		 * @return samples per second, decaying over the completed intervals.
+		 */
+		public double getDecayingRatePerSecond() {
+			return decayingRatePerSecond;
+		}
+
+		/**
+		 * @return the mean of the samples, decaying over the completed intervals.
+		 */
+		public double getDecayingMean() {
+			return decayingMean;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("rate=%.1f/s mean=%.3f p50=%d p99=%d p999=%d decaying rate=%.1f/s mean=%.3f",
+					ratePerSecond, window.getMean(), window.getQuantile(0.5), window.getQuantile(0.99),
+					window.getQuantile(0.999), decayingRatePerSecond, decayingMean);
+		}
+	}
+}
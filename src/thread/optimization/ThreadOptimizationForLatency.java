@@ -2,11 +2,15 @@ package thread.optimization;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.IndexColorModel;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import thread.optimization.image.ImageBuffer;
+
 /**
  * Latency is the time required to transmit a packet across a network.
  * 
@@ -22,6 +26,15 @@ import java.util.List;
  * possible way, causing context changes (one thread having to share CPU with
  * another).
  * 
+ * The resultImage doubles the memory needed for each image. Since recolorPixel
+ * reads and writes the same pixel, and the slices of the threads never
+ * overlap, the image can also be re-colored in place (recolorInPlace), without
+ * any resultImage. Run it with -Drecolor.inPlace=true, or with
+ * -Drecolor.verify=true to check that it gives the same image as the other
+ * mode. The image must keep 8 bits for each of red, green and blue (as the
+ * flowers do), otherwise the in place pixels would not be the ones of the
+ * resultImage.
+ * 
  * @author pedrorenzo
  */
 public class ThreadOptimizationForLatency {
@@ -31,6 +44,27 @@ public class ThreadOptimizationForLatency {
 	public static void main(String[] args) throws IOException {
 
 		final BufferedImage originalImage = ImageIO.read(new File(SOURCE_FILE));
+
+		// If you will change the numberOfThreads value, please look at the class
+		// comment :)
+		if (Boolean.getBoolean("recolor.verify")) {
+			// 3 threads do not divide the height of the flowers, so the last band has
+			// more rows than the others.
+			System.out.println(verifyInPlace(originalImage, 4) && verifyInPlace(originalImage, 3)
+					? "OK: the in place image is the same"
+					: "WRONG: the in place image is different");
+			return;
+		}
+		if (Boolean.getBoolean("recolor.inPlace")) {
+			final long startTime = System.currentTimeMillis();
+			recolorInPlace(originalImage, 4);
+			final long duration = System.currentTimeMillis() - startTime;
+
+			ImageIO.write(originalImage, "jpg", new File(DESTINATION_FILE));
+			System.out.println("The duration for recolorInPlace was: " + String.valueOf(duration));
+			return;
+		}
+
 		final BufferedImage resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(),
 				BufferedImage.TYPE_INT_RGB);
 
@@ -63,7 +97,8 @@ public class ThreadOptimizationForLatency {
 
 	/**
 	 * Re-color the image, dividing it by height according to the number of threads,
-	 * where each thread is responsible for re-coloring its slice.
+	 * where each thread is responsible for re-coloring its slice. The last slice
+	 * also takes the rows left over by the division.
 	 * 
 	 * @param originalImage
 	 * @param resultImage
@@ -83,8 +118,10 @@ public class ThreadOptimizationForLatency {
 				// The height to start re-coloring varies according to the slice that this
 				// thread is responsible for.
 				final int yOrigin = height * threadMultiplier;
+				final int sliceHeight = threadMultiplier == numberOfThreads - 1 ? originalImage.getHeight() - yOrigin
+						: height;
 
-				recolorImage(originalImage, resultImage, xOrigin, yOrigin, width, height);
+				recolorImage(originalImage, resultImage, xOrigin, yOrigin, width, sliceHeight);
 			});
 
 			threads.add(thread);
@@ -103,6 +140,138 @@ public class ThreadOptimizationForLatency {
 		}
 	}
 
+	/**
+	 * Re-color the image in place, with the same slices of recolorMultithreaded.
+	 * Each pixel is read before being written, and only by the thread of its
+	 * slice, so no thread ever reads a pixel already re-colored.
+	 * 
+	 * @param image           with 8 bits for each of red, green and blue, as
+	 *                        TYPE_INT_RGB or TYPE_3BYTE_BGR.
+	 * @param numberOfThreads
+	 * @throws IllegalArgumentException if the image cannot hold the re-colored
+	 *                                  RGB, e.g. TYPE_BYTE_GRAY or an indexed
+	 *                                  image.
+	 */
+	public static void recolorInPlace(final BufferedImage image, final int numberOfThreads) {
+		if (!canHoldRGB(image.getColorModel())) {
+			throw new IllegalArgumentException("The image cannot hold the re-colored RGB: " + image.getColorModel());
+		}
+		recolorMultithreaded(image, image, numberOfThreads);
+	}
+
+	/**
+	 * The out-of-place mode writes into a TYPE_INT_RGB image, so the in place mode
+	 * gives the same pixels only if the image keeps the 8 bits of each of red,
+	 * green and blue. A gray or an indexed image would round them to its own
+	 * colors.
+	 */
+	private static boolean canHoldRGB(final ColorModel colorModel) {
+		if (colorModel instanceof IndexColorModel || !colorModel.getColorSpace().isCS_sRGB()
+				|| colorModel.getNumColorComponents() != 3) {
+			return false;
+		}
+		for (int i = 0; i < 3; i++) {
+			if (colorModel.getComponentSize(i) != 8) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Re-color the image buffer in place, as recolorInPlace.
+	 * 
+	 * @param image
+	 * @param numberOfThreads
+	 */
+	public static void recolorInPlace(final ImageBuffer image, final int numberOfThreads) {
+		recolorMultithreaded(image, image, numberOfThreads);
+	}
+
+	/**
+	 * Re-colors a copy of the image in place and another into a resultImage, and
+	 * compares all their pixels. The original image is not changed.
+	 * 
+	 * @param originalImage   as in recolorInPlace.
+	 * @param numberOfThreads
+	 * @return <code>true</code> if both modes give the same pixels.
+	 */
+	public static boolean verifyInPlace(final BufferedImage originalImage, final int numberOfThreads) {
+		final BufferedImage resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		recolorMultithreaded(originalImage, resultImage, numberOfThreads);
+
+		final BufferedImage inPlaceImage = new BufferedImage(originalImage.getColorModel(),
+				originalImage.copyData(null), originalImage.isAlphaPremultiplied(), null);
+		recolorInPlace(inPlaceImage, numberOfThreads);
+
+		for (int y = 0; y < originalImage.getHeight(); y++) {
+			for (int x = 0; x < originalImage.getWidth(); x++) {
+				if (inPlaceImage.getRGB(x, y) != resultImage.getRGB(x, y)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The same as recolorMultithreaded, but with the images out of the heap (see
+	 * ImageBuffers), so a big image does not make the garbage collector pauses
+	 * longer. The last band also takes the rows left over when the height is not
+	 * a multiple of the number of threads, so every row is re-colored.
+	 * 
+	 * @param originalImage
+	 * @param resultImage
+	 * @param numberOfThreads
+	 */
+	public static void recolorMultithreaded(final ImageBuffer originalImage, final ImageBuffer resultImage,
+			final int numberOfThreads) {
+		final List<Thread> threads = new ArrayList<>();
+		final int width = originalImage.getWidth();
+		final int height = originalImage.getHeight() / numberOfThreads;
+
+		for (int i = 0; i < numberOfThreads; i++) {
+			final int yOrigin = height * i;
+			final int bandHeight = i == numberOfThreads - 1 ? originalImage.getHeight() - yOrigin : height;
+			threads.add(new Thread(() -> recolorImage(originalImage, resultImage, 0, yOrigin, width, bandHeight)));
+		}
+
+		for (Thread thread : threads) {
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Goes through the image buffer row by row, in the order of its memory, and
+	 * re-color each pixel.
+	 * 
+	 * @param originalImage
+	 * @param resultImage
+	 * @param leftCorner
+	 * @param topCorner
+	 * @param width
+	 * @param height
+	 */
+	public static void recolorImage(final ImageBuffer originalImage, final ImageBuffer resultImage,
+			final int leftCorner, final int topCorner, final int width, final int height) {
+		final int right = Math.min(leftCorner + width, originalImage.getWidth());
+		final int bottom = Math.min(topCorner + height, originalImage.getHeight());
+		for (int y = topCorner; y < bottom; y++) {
+			for (int x = leftCorner; x < right; x++) {
+				resultImage.setRGB(x, y, recolorRGB(originalImage.getRGB(x, y)));
+			}
+		}
+	}
+
 	/**
 	 * Re-color the image starting from the left top using single thread.
 	 * 
@@ -143,8 +312,19 @@ public class ThreadOptimizationForLatency {
 	 */
 	public static void recolorPixel(final BufferedImage originalImage, final BufferedImage resultImage, final int x,
 			final int y) {
-		final int rgb = originalImage.getRGB(x, y);
+		final int newRGB = recolorRGB(originalImage.getRGB(x, y));
+		setRGB(resultImage, x, y, newRGB);
+	}
 
+	/**
+	 * Re-color a single RGB value, trying to make it turn purple. Used by
+	 * recolorPixel and by the kernels that work on arrays of pixels instead of on
+	 * a BufferedImage.
+	 * 
+	 * @param rgb
+	 * @return the new RGB.
+	 */
+	public static int recolorRGB(final int rgb) {
 		final int red = getRed(rgb);
 		final int green = getGreen(rgb);
 		final int blue = getBlue(rgb);
@@ -163,8 +343,7 @@ public class ThreadOptimizationForLatency {
 			newGreen = green;
 			newBlue = blue;
 		}
-		final int newRGB = createRGBFromColors(newRed, newGreen, newBlue);
-		setRGB(resultImage, x, y, newRGB);
+		return createRGBFromColors(newRed, newGreen, newBlue);
 	}
 
 	/**
@@ -12,6 +12,11 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import thread.lockfree.ratelimit.RateLimiter;
+import thread.lockfree.ratelimit.TokenBucketRateLimiter;
+import thread.optimization.affinity.AffinityThreadFactory;
+import thread.optimization.affinity.CpuTopology;
+
 /**
  * Throughput is defined as the quantity of data being sent/received by unit of
  * time.
@@ -27,13 +32,23 @@ import com.sun.net.httpserver.HttpServer;
  * 
  * You can test performance and get throughput by running the test file via
  * JMeter via /resources. This test will read words from a CSV and then make a
- * request to our HTTP Server.
+ * request to our HTTP Server. The same words can be replayed without JMeter by
+ * the load generator of the load-test module (bin/load-test.sh), which also
+ * reports the latency percentiles.
  * 
  * It is important to note that throughput will increase if we add more threads,
  * however, if we add more threads than the physical/virtual number of cores of
  * a CPU, we will not see an improvement. So it is interesting to keep that
  * number next from physical/virtual number of cores in a CPU.
  * 
+ * The searches per second can be limited with -Dsearch.rateLimit=N: the
+ * requests over N per second are answered with 429 Too Many Requests right
+ * away, by a lock-free TokenBucketRateLimiter, instead of waiting in the queue
+ * of the thread pool.
+ * 
+ * With -Dsearch.pinThreads=true, each thread of the pool is pinned to a cpu by
+ * an AffinityThreadFactory (Linux only, see Affinity for the JVM flags).
+ * 
  * @author pedrorenzo
  */
 public class ThreadOptimizationForThroughput {
@@ -48,6 +63,7 @@ public class ThreadOptimizationForThroughput {
 	// queue.
 	private static final int BACKLOG_SIZE = 0;
 	private static final int BAD_REQUEST = 400;
+	private static final int TOO_MANY_REQUESTS = 429;
 	private static final int OK = 200;
 
 	public static void main(String[] args) throws IOException {
@@ -63,8 +79,12 @@ public class ThreadOptimizationForThroughput {
 	 */
 	public static void startServer(final String text) throws IOException {
 		final HttpServer server = HttpServer.create(new InetSocketAddress(PORT), BACKLOG_SIZE);
-		server.createContext("/search", new WordCountHandler(text));
-		Executor executor = Executors.newFixedThreadPool(NUMBER_OF_THREADS);
+		final int rateLimit = Integer.getInteger("search.rateLimit", 0);
+		final RateLimiter rateLimiter = rateLimit > 0 ? new TokenBucketRateLimiter(rateLimit) : permits -> true;
+		server.createContext("/search", new WordCountHandler(text, rateLimiter));
+		Executor executor = Boolean.getBoolean("search.pinThreads")
+				? Executors.newFixedThreadPool(NUMBER_OF_THREADS, new AffinityThreadFactory("search", CpuTopology.read()))
+				: Executors.newFixedThreadPool(NUMBER_OF_THREADS);
 		server.setExecutor(executor);
 		server.start();
 	}
@@ -76,13 +96,21 @@ public class ThreadOptimizationForThroughput {
 	 */
 	private static class WordCountHandler implements HttpHandler {
 		private String text;
+		private RateLimiter rateLimiter;
 
-		public WordCountHandler(final String text) {
+		public WordCountHandler(final String text, final RateLimiter rateLimiter) {
 			this.text = text;
+			this.rateLimiter = rateLimiter;
 		}
 
 		@Override
 		public void handle(final HttpExchange httpExchange) throws IOException {
+			if (!rateLimiter.tryAcquire()) {
+				httpExchange.sendResponseHeaders(TOO_MANY_REQUESTS, -1);
+				httpExchange.close();
+				return;
+			}
+
 			final String query = httpExchange.getRequestURI().getQuery();
 			final String[] keyValue = query.split("=");
 			final String action = keyValue[0];
@@ -92,7 +120,7 @@ public class ThreadOptimizationForThroughput {
 				return;
 			}
 
-			long count = countWord(word);
+			long count = countWord(text, word);
 
 			final byte[] response = Long.toString(count).getBytes();
 			httpExchange.sendResponseHeaders(OK, response.length);
@@ -101,24 +129,26 @@ public class ThreadOptimizationForThroughput {
 			outputStream.close();
 		}
 
-		/**
-		 * Count the word.
-		 * 
-		 * @param word
-		 * @return the number of times that word appears in the book.
-		 */
-		private long countWord(final String word) {
-			long count = 0;
-			int index = 0;
-			while (index >= 0) {
-				index = text.indexOf(word, index);
-
-				if (index >= 0) {
-					count++;
-					index++;
-				}
+	}
+
+	/**
+	 * Count the word.
+	 * 
+	 * @param text
+	 * @param word
+	 * @return the number of times that word appears in the text.
+	 */
+	public static long countWord(final String text, final String word) {
+		long count = 0;
+		int index = 0;
+		while (index >= 0) {
+			index = text.indexOf(word, index);
+
+			if (index >= 0) {
+				count++;
+				index++;
 			}
-			return count;
 		}
+		return count;
 	}
 }
@@ -0,0 +1,74 @@
+package thread.optimization.affinity;
+
+/**
+ * The operating system moves the threads between the cores as it wants, so a
+ * thread working on a band of an image may continue on a core whose caches
+ * do not have any of its data, or on another NUMA node (another socket, with
+ * its own memory), where each access to its data crosses the interconnect.
+ * Pinning a thread to a cpu keeps its caches warm.
+ *
+ * This is only supported on Linux, when the JVM is started with
+ * --add-modules jdk.incubator.foreign --enable-native-access=ALL-UNNAMED
+ * (see {@link NativeAffinity}). Otherwise, the threads are not pinned and
+ * everything works as before: pinCurrentThread just returns
+ * <code>false</code>, and getUnsupportedReason says why.
+ *
+ * @author pedrorenzo
+ */
+public final class Affinity {
+	private static final AffinityBackend BACKEND;
+	private static final String UNSUPPORTED_REASON;
+
+	static {
+		AffinityBackend backend = null;
+		String reason = null;
+		if (!System.getProperty("os.name", "").startsWith("Linux")) {
+			reason = "Only supported on Linux";
+		} else {
+			try {
+				// Loaded by name, so this class does not depend on the incubator module.
+				backend = (AffinityBackend) Class.forName(Affinity.class.getPackageName() + ".NativeAffinity")
+						.getDeclaredConstructor().newInstance();
+			} catch (ReflectiveOperationException | LinkageError | RuntimeException e) {
+				final Throwable cause = e.getCause() != null ? e.getCause() : e;
+				reason = "Start the JVM with --add-modules jdk.incubator.foreign --enable-native-access=ALL-UNNAMED ("
+						+ cause + ")";
+			}
+		}
+		BACKEND = backend;
+		UNSUPPORTED_REASON = reason;
+	}
+
+	private Affinity() {
+	}
+
+	public static boolean isSupported() {
+		return BACKEND != null;
+	}
+
+	/**
+	 * @return why the threads cannot be pinned, or null if they can.
+	 */
+	public static String getUnsupportedReason() {
+		return UNSUPPORTED_REASON;
+	}
+
+	/**
+	 * Makes the current thread run only on the given cpu, from now on.
+	 *
+	 * @param cpu
+	 * @return <code>false</code> if it is not supported or the cpu does not exist
+	 *         or is not allowed for this process.
+	 */
+	public static boolean pinCurrentThread(final int cpu) {
+		return BACKEND != null && BACKEND.pinCurrentThread(cpu);
+	}
+
+	/**
+	 * @return the cpu running the current thread right now, or -1 if it is not
+	 *         supported.
+	 */
+	public static int getCurrentCpu() {
+		return BACKEND == null ? -1 : BACKEND.getCurrentCpu();
+	}
+}
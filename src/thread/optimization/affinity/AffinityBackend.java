@@ -0,0 +1,22 @@
+package thread.optimization.affinity;
+
+/**
+ * What {@link Affinity} needs from the operating system. Its only
+ * implementation, {@link NativeAffinity}, is loaded by name, so the classes
+ * that use this interface still load when the incubator module is missing.
+ *
+ * @author pedrorenzo
+ */
+interface AffinityBackend {
+
+	/**
+	 * @param cpu
+	 * @return <code>true</code> if the current thread now only runs on the cpu.
+	 */
+	boolean pinCurrentThread(int cpu);
+
+	/**
+	 * @return the cpu running the current thread.
+	 */
+	int getCurrentCpu();
+}
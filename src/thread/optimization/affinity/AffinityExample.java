@@ -0,0 +1,88 @@
+package thread.optimization.affinity;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import thread.optimization.ThreadOptimizationForLatency;
+
+/**
+ * Prints the topology of the machine and whether the threads can be pinned,
+ * then recolors the flowers of ThreadOptimizationForLatency with pinned bands
+ * and checks that the result is the same as the one of recolorSingleThreaded.
+ *
+ * Run it from the root of the repository with:
+ * java --add-modules jdk.incubator.foreign --enable-native-access=ALL-UNNAMED
+ * -cp library/target/classes thread.optimization.affinity.AffinityExample
+ *
+ * Without these flags, it still works, without pinning anything.
+ *
+ * @author pedrorenzo
+ */
+public class AffinityExample {
+
+	public static void main(String[] args) throws IOException {
+		final CpuTopology topology = CpuTopology.read();
+		System.out.println("Topology: " + topology);
+		System.out.println(Affinity.isSupported() ? "Pinning is supported, running on cpu " + Affinity.getCurrentCpu()
+				: "Pinning is not supported: " + Affinity.getUnsupportedReason());
+
+		final BufferedImage originalImage = ImageIO.read(new File(ThreadOptimizationForLatency.SOURCE_FILE));
+		final BufferedImage expected = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		ThreadOptimizationForLatency.recolorSingleThreaded(originalImage, expected);
+
+		final int numberOfThreads = 4;
+		final BufferedImage resultImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		try (PinnedBandRecolor recolor = new PinnedBandRecolor(originalImage, numberOfThreads, topology, true)) {
+			final long startTime = System.nanoTime();
+			for (int i = 0; i < 10; i++) {
+				recolor.recolor();
+			}
+			System.out.println("10 recolors with " + recolor.getPinnedWorkers() + " of " + numberOfThreads
+					+ " workers pinned: " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+			recolor.writeTo(resultImage);
+		}
+
+		for (int y = 0; y < originalImage.getHeight(); y++) {
+			for (int x = 0; x < originalImage.getWidth(); x++) {
+				if (resultImage.getRGB(x, y) != expected.getRGB(x, y)) {
+					System.out.println("WRONG: pixel " + x + "," + y + " is different");
+					return;
+				}
+			}
+		}
+		System.out.println("OK: same image as recolorSingleThreaded");
+
+		checkFailedWorker(originalImage, numberOfThreads, topology);
+	}
+
+	/**
+	 * One worker cannot read its band: the constructor must throw, not wait for
+	 * it forever.
+	 */
+	private static void checkFailedWorker(final BufferedImage originalImage, final int numberOfThreads,
+			final CpuTopology topology) {
+		final BufferedImage brokenImage = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(),
+				BufferedImage.TYPE_INT_RGB) {
+			@Override
+			public int[] getRGB(final int startX, final int startY, final int w, final int h, final int[] rgbArray,
+					final int offset, final int scansize) {
+				if (startY > 0) {
+					throw new IllegalStateException("Broken band at " + startY);
+				}
+				return super.getRGB(startX, startY, w, h, rgbArray, offset, scansize);
+			}
+		};
+		try {
+			new PinnedBandRecolor(brokenImage, numberOfThreads, topology, false).close();
+			System.out.println("WRONG: the constructor did not see the failed worker");
+		} catch (IllegalStateException e) {
+			System.out.println(e.getCause() != null ? "OK: a failed worker is thrown by the constructor: "
+					+ e.getCause().getMessage() : "WRONG: the failure has no cause");
+		}
+	}
+}
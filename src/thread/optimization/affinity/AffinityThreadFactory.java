@@ -0,0 +1,47 @@
+package thread.optimization.affinity;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates threads that pin themselves, as soon as they start, to the cpus of
+ * {@link CpuTopology#cpuOfWorker}: the first thread to the cpu of worker 0,
+ * and so on. It can be given to Executors.newFixedThreadPool, as the search
+ * server does with -Dsearch.pinThreads=true.
+ *
+ * If the threads cannot be pinned (see {@link Affinity}), they just run where
+ * the operating system wants, and getFailedPins counts them.
+ *
+ * @author pedrorenzo
+ */
+public class AffinityThreadFactory implements ThreadFactory {
+	private final String poolName;
+	private final CpuTopology topology;
+	private final AtomicInteger threadNumber = new AtomicInteger();
+	private final AtomicInteger failedPins = new AtomicInteger();
+
+	public AffinityThreadFactory(final String poolName, final CpuTopology topology) {
+		this.poolName = poolName;
+		this.topology = topology;
+	}
+
+	@Override
+	public Thread newThread(final Runnable runnable) {
+		final int worker = threadNumber.getAndIncrement();
+		final int cpu = topology.cpuOfWorker(worker);
+		return new Thread(() -> {
+			// Only the thread itself can pin itself with sched_setaffinity(0...).
+			if (!Affinity.pinCurrentThread(cpu)) {
+				failedPins.incrementAndGet();
+			}
+			runnable.run();
+		}, poolName + "-" + worker + "-cpu" + cpu);
+	}
+
+	/**
+	 * @return how many threads could not be pinned.
+	 */
+	public int getFailedPins() {
+		return failedPins.get();
+	}
+}
@@ -0,0 +1,169 @@
+package thread.optimization.affinity;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The cpus of each NUMA node, read from /sys/devices/system/node on Linux.
+ * Only the cpus that this process may run on are kept (Cpus_allowed_list in
+ * /proc/self/status), so under a cpuset or in a container the topology has,
+ * e.g., the cpus 4-7 and not 0-3.
+ *
+ * Anywhere else, or if none of that can be read, there is a single node with
+ * the cpus 0 to availableProcessors-1. Those numbers may not be the real cpus,
+ * so pinning to them can fail or pick cpus outside of the allowed ones.
+ *
+ * The placement of the workers alternates between the nodes (worker 0 on the
+ * first cpu of node 0, worker 1 on the first cpu of node 1...), so a few
+ * workers use the memory bandwidth of all the nodes instead of filling one.
+ *
+ * @author pedrorenzo
+ */
+public class CpuTopology {
+	private static final Path NODES = Paths.get("/sys/devices/system/node");
+	private static final Path STATUS = Paths.get("/proc/self/status");
+	private static final String ALLOWED_CPUS = "Cpus_allowed_list:";
+
+	private final List<List<Integer>> cpusOfNodes;
+	private final int[] placement;
+
+	/**
+	 * @param cpusOfNodes the cpus of each node, by node.
+	 */
+	public CpuTopology(final List<List<Integer>> cpusOfNodes) {
+		if (cpusOfNodes.isEmpty() || cpusOfNodes.stream().anyMatch(List::isEmpty)) {
+			throw new IllegalArgumentException("Each node must have at least one cpu");
+		}
+		final List<List<Integer>> copy = new ArrayList<>();
+		for (List<Integer> cpus : cpusOfNodes) {
+			copy.add(List.copyOf(cpus));
+		}
+		this.cpusOfNodes = Collections.unmodifiableList(copy);
+
+		final List<Integer> order = new ArrayList<>();
+		for (int index = 0; order.size() < getNumberOfCpus(); index++) {
+			for (List<Integer> cpus : this.cpusOfNodes) {
+				if (index < cpus.size()) {
+					order.add(cpus.get(index));
+				}
+			}
+		}
+		this.placement = order.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	/**
+	 * @return the topology of this machine.
+	 */
+	public static CpuTopology read() {
+		final List<Integer> allowed = readAllowedCpus();
+		final Map<Integer, List<Integer>> nodes = new TreeMap<>();
+		try (DirectoryStream<Path> directories = Files.newDirectoryStream(NODES, "node[0-9]*")) {
+			for (Path directory : directories) {
+				final int node = Integer.parseInt(directory.getFileName().toString().substring("node".length()));
+				final List<Integer> cpus = parseCpuList(Files.readString(directory.resolve("cpulist")).trim());
+				if (allowed != null) {
+					cpus.retainAll(allowed);
+				}
+				if (!cpus.isEmpty()) {
+					nodes.put(node, cpus);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			nodes.clear();
+		}
+		if (nodes.isEmpty() && allowed != null && !allowed.isEmpty()) {
+			return new CpuTopology(List.of(allowed));
+		}
+		if (nodes.isEmpty()) {
+			final List<Integer> cpus = new ArrayList<>();
+			for (int cpu = 0; cpu < Runtime.getRuntime().availableProcessors(); cpu++) {
+				cpus.add(cpu);
+			}
+			return new CpuTopology(List.of(cpus));
+		}
+		return new CpuTopology(new ArrayList<>(nodes.values()));
+	}
+
+	/**
+	 * @return the cpus this process may run on, or null if they cannot be read.
+	 */
+	private static List<Integer> readAllowedCpus() {
+		try {
+			for (String line : Files.readAllLines(STATUS)) {
+				if (line.startsWith(ALLOWED_CPUS)) {
+					return parseCpuList(line.substring(ALLOWED_CPUS.length()).trim());
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			// Not Linux, or an unknown format: the caller falls back.
+		}
+		return null;
+	}
+
+	/**
+	 * @param cpuList in the format of Linux, e.g. "0-3,8-11".
+	 * @return the cpus of the list.
+	 */
+	static List<Integer> parseCpuList(final String cpuList) {
+		final List<Integer> cpus = new ArrayList<>();
+		if (cpuList.isEmpty()) {
+			return cpus;
+		}
+		for (String range : cpuList.split(",")) {
+			final int dash = range.indexOf('-');
+			final int first = Integer.parseInt(dash < 0 ? range : range.substring(0, dash));
+			final int last = dash < 0 ? first : Integer.parseInt(range.substring(dash + 1));
+			for (int cpu = first; cpu <= last; cpu++) {
+				cpus.add(cpu);
+			}
+		}
+		return cpus;
+	}
+
+	public int getNumberOfNodes() {
+		return cpusOfNodes.size();
+	}
+
+	public List<Integer> getCpusOfNode(final int node) {
+		return cpusOfNodes.get(node);
+	}
+
+	public int getNumberOfCpus() {
+		return cpusOfNodes.stream().mapToInt(List::size).sum();
+	}
+
+	/**
+	 * @param worker
+	 * @return the cpu of the worker, alternating between the nodes. After all the
+	 *         cpus, it starts again from the first one.
+	 */
+	public int cpuOfWorker(final int worker) {
+		return placement[worker % placement.length];
+	}
+
+	/**
+	 * @param cpu
+	 * @return the node of the cpu, or -1 if it is not in the topology.
+	 */
+	public int nodeOf(final int cpu) {
+		for (int node = 0; node < cpusOfNodes.size(); node++) {
+			if (cpusOfNodes.get(node).contains(cpu)) {
+				return node;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return getNumberOfNodes() + " nodes: " + cpusOfNodes;
+	}
+}
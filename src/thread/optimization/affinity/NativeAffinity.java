@@ -0,0 +1,69 @@
+package thread.optimization.affinity;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+
+import jdk.incubator.foreign.CLinker;
+import jdk.incubator.foreign.FunctionDescriptor;
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemoryAddress;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * Calls sched_setaffinity and sched_getcpu of the C library of Linux through
+ * the Foreign Function & Memory API, which is still an incubator module in
+ * Java 17, so no native code has to be built. The JVM must be started with
+ * --add-modules jdk.incubator.foreign --enable-native-access=ALL-UNNAMED,
+ * otherwise the constructor throws and {@link Affinity} does nothing.
+ *
+ * @author pedrorenzo
+ */
+class NativeAffinity implements AffinityBackend {
+	// The size of cpu_set_t in glibc: one bit per cpu, for 1024 cpus.
+	private static final int CPU_SET_BYTES = 128;
+
+	private final MethodHandle schedSetAffinity;
+	private final MethodHandle schedGetCpu;
+
+	NativeAffinity() {
+		final CLinker linker = CLinker.getInstance();
+		// int sched_setaffinity(pid_t pid, size_t cpusetsize, const cpu_set_t *mask)
+		this.schedSetAffinity = linker.downcallHandle(lookup("sched_setaffinity"),
+				MethodType.methodType(int.class, int.class, long.class, MemoryAddress.class),
+				FunctionDescriptor.of(CLinker.C_INT, CLinker.C_INT, CLinker.C_LONG, CLinker.C_POINTER));
+		// int sched_getcpu(void)
+		this.schedGetCpu = linker.downcallHandle(lookup("sched_getcpu"), MethodType.methodType(int.class),
+				FunctionDescriptor.of(CLinker.C_INT));
+	}
+
+	@Override
+	public boolean pinCurrentThread(final int cpu) {
+		if (cpu < 0 || cpu >= CPU_SET_BYTES * 8) {
+			return false;
+		}
+		try (ResourceScope scope = ResourceScope.newConfinedScope()) {
+			final MemorySegment mask = MemorySegment.allocateNative(CPU_SET_BYTES, scope);
+			mask.fill((byte) 0);
+			MemoryAccess.setLongAtIndex(mask, cpu / 64, 1L << (cpu % 64));
+			// The pid 0 is the calling thread, not the whole process.
+			return (int) schedSetAffinity.invokeExact(0, (long) CPU_SET_BYTES, mask.address()) == 0;
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	@Override
+	public int getCurrentCpu() {
+		try {
+			return (int) schedGetCpu.invokeExact();
+		} catch (Throwable e) {
+			return -1;
+		}
+	}
+
+	private static MemoryAddress lookup(final String function) {
+		return CLinker.systemLookup().lookup(function)
+				.orElseThrow(() -> new UnsupportedOperationException(function + " was not found"));
+	}
+}
@@ -0,0 +1,192 @@
+package thread.optimization.affinity;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+
+import thread.optimization.ThreadOptimizationForLatency;
+
+/**
+ * The recolorMultithreaded of ThreadOptimizationForLatency with workers that
+ * stay: each worker owns a band of the image, for as many recolors as we want,
+ * and can be pinned to a cpu of the {@link CpuTopology}, so its band stays in
+ * the caches of that cpu from one recolor to the next.
+ *
+ * Each worker also allocates and fills the arrays of its own band (the source
+ * pixels and the result), after pinning itself. Linux places a page on the
+ * NUMA node of the thread that touches it first and, with -XX:+UseNUMA, the JVM
+ * gives each thread new objects in memory of its own node, so the band of a
+ * worker is in the memory closest to its cpu. Without pinning, the worker may
+ * be moved to another node after allocating it.
+ *
+ * The workers wait for each recolor in a {@link Phaser}: the caller and the
+ * workers arrive at the start of a recolor and again at its end. A worker that
+ * fails leaves the phaser, so nobody waits for it, and the failure is thrown
+ * to the caller, by the constructor or by recolor().
+ *
+ * @author pedrorenzo
+ */
+public class PinnedBandRecolor implements AutoCloseable {
+	private final int width;
+	private final Band[] bands;
+	private final Thread[] workers;
+	private final Phaser phaser;
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+	private volatile boolean closed;
+	private volatile int pinnedWorkers;
+
+	/**
+	 * Starts the workers and waits for them to copy their bands.
+	 *
+	 * @throws IllegalStateException if a worker could not copy its band, e.g.
+	 *                               out of memory. The workers are stopped.
+	 * @param originalImage
+	 * @param numberOfThreads
+	 * @param topology
+	 * @param pin             <code>false</code> lets the operating system place
+	 *                        the workers, to compare.
+	 */
+	public PinnedBandRecolor(final BufferedImage originalImage, final int numberOfThreads,
+			final CpuTopology topology, final boolean pin) {
+		if (numberOfThreads <= 0 || numberOfThreads > originalImage.getHeight()) {
+			throw new IllegalArgumentException("Invalid number of threads: " + numberOfThreads);
+		}
+		this.width = originalImage.getWidth();
+		this.bands = new Band[numberOfThreads];
+		this.workers = new Thread[numberOfThreads];
+		this.phaser = new Phaser(numberOfThreads + 1);
+
+		final int bandHeight = originalImage.getHeight() / numberOfThreads;
+		for (int i = 0; i < numberOfThreads; i++) {
+			final int top = bandHeight * i;
+			// The last band also takes the rows left by the division.
+			final int height = i == numberOfThreads - 1 ? originalImage.getHeight() - top : bandHeight;
+			final int worker = i;
+			workers[i] = new Thread(() -> {
+				try {
+					if (pin && Affinity.pinCurrentThread(topology.cpuOfWorker(worker))) {
+						synchronized (this) {
+							pinnedWorkers++;
+						}
+					}
+					bands[worker] = new Band(originalImage, top, height);
+				} catch (Throwable e) {
+					fail(e);
+					return;
+				}
+				phaser.arriveAndAwaitAdvance();
+				work(bands[worker]);
+			}, "recolor-band-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		// The bands written by the workers are visible after the phase advances.
+		phaser.arriveAndAwaitAdvance();
+		if (failure.get() != null) {
+			close();
+			throw new IllegalStateException("A worker could not copy its band", failure.get());
+		}
+	}
+
+	/**
+	 * Recolors all the bands and waits for the workers to finish.
+	 *
+	 * @throws IllegalStateException if a worker has failed, now or before.
+	 */
+	public void recolor() {
+		if (closed) {
+			throw new IllegalStateException("The workers were stopped");
+		}
+		if (failure.get() == null) {
+			phaser.arriveAndAwaitAdvance();
+			phaser.arriveAndAwaitAdvance();
+		}
+		if (failure.get() != null) {
+			throw new IllegalStateException("A worker failed", failure.get());
+		}
+	}
+
+	/**
+	 * Copies the result of the last recolor to the image.
+	 *
+	 * @param resultImage
+	 */
+	public void writeTo(final BufferedImage resultImage) {
+		for (Band band : bands) {
+			resultImage.setRGB(0, band.top, width, band.height, band.result, 0, width);
+		}
+	}
+
+	/**
+	 * @return how many workers were pinned to their cpu.
+	 */
+	public int getPinnedWorkers() {
+		return pinnedWorkers;
+	}
+
+	/**
+	 * Stops the workers and waits for them. If the calling thread is interrupted,
+	 * it stops waiting and keeps its interrupt flag.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		phaser.arriveAndAwaitAdvance();
+		try {
+			for (Thread worker : workers) {
+				worker.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void work(final Band band) {
+		try {
+			while (true) {
+				phaser.arriveAndAwaitAdvance();
+				if (closed) {
+					return;
+				}
+				final int[] source = band.source;
+				final int[] result = band.result;
+				for (int i = 0; i < source.length; i++) {
+					result[i] = ThreadOptimizationForLatency.recolorRGB(source[i]);
+				}
+				phaser.arriveAndAwaitAdvance();
+			}
+		} catch (Throwable e) {
+			fail(e);
+		}
+	}
+
+	/**
+	 * Records the first failure and leaves the phaser, in the thread of the
+	 * failed worker.
+	 */
+	private void fail(final Throwable e) {
+		failure.compareAndSet(null, e);
+		phaser.arriveAndDeregister();
+	}
+
+	/**
+	 * The rows of the image owned by a worker, allocated by the worker itself.
+	 */
+	private static class Band {
+		private final int top;
+		private final int height;
+		private final int[] source;
+		private final int[] result;
+
+		private Band(final BufferedImage originalImage, final int top, final int height) {
+			this.top = top;
+			this.height = height;
+			final int width = originalImage.getWidth();
+			this.source = originalImage.getRGB(0, top, width, height, null, 0, width);
+			this.result = new int[source.length];
+		}
+	}
+}
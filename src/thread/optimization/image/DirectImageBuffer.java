@@ -0,0 +1,55 @@
+package thread.optimization.image;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * An {@link ImageBuffer} in a direct ByteBuffer, for when the Foreign Memory
+ * API is not available. The pixels are also out of the heap, but the memory
+ * is only freed when the garbage collector finds that the buffer is not used
+ * anymore, and an image cannot have more than 2^31 bytes.
+ *
+ * @author pedrorenzo
+ */
+class DirectImageBuffer implements ImageBuffer {
+	private final int width;
+	private final int height;
+	private IntBuffer pixels;
+
+	DirectImageBuffer(final int width, final int height) {
+		if ((long) width * height * Integer.BYTES > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too big for a ByteBuffer: " + width + "x" + height);
+		}
+		this.width = width;
+		this.height = height;
+		this.pixels = ByteBuffer.allocateDirect(width * height * Integer.BYTES).order(ByteOrder.nativeOrder())
+				.asIntBuffer();
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getRGB(final int x, final int y) {
+		return pixels.get(y * width + x);
+	}
+
+	@Override
+	public void setRGB(final int x, final int y, final int rgb) {
+		pixels.put(y * width + x, rgb);
+	}
+
+	@Override
+	public void close() {
+		// The memory is freed by the garbage collector, once it is not reachable.
+		pixels = null;
+	}
+}
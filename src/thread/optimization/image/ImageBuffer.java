@@ -0,0 +1,39 @@
+package thread.optimization.image;
+
+/**
+ * The pixels of an image, as RGB ints, out of the Java heap: the garbage
+ * collector never copies nor scans them, however big the image is. Created by
+ * {@link ImageBuffers}, which also converts them from and to BufferedImage.
+ *
+ * It can be read and written by many threads at the same time, each one in
+ * its own pixels, as the bands of recolorMultithreaded. It must be closed
+ * after all of them have finished, to free the memory.
+ *
+ * @author pedrorenzo
+ */
+public interface ImageBuffer extends AutoCloseable {
+
+	int getWidth();
+
+	int getHeight();
+
+	/**
+	 * @param x
+	 * @param y
+	 * @return the RGB of the pixel, as BufferedImage.getRGB.
+	 */
+	int getRGB(int x, int y);
+
+	/**
+	 * @param x
+	 * @param y
+	 * @param rgb
+	 */
+	void setRGB(int x, int y, int rgb);
+
+	/**
+	 * Frees the memory. The buffer cannot be used anymore.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,86 @@
+package thread.optimization.image;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Creates the {@link ImageBuffer}s: a {@link SegmentImageBuffer} if the JVM
+ * was started with --add-modules jdk.incubator.foreign, otherwise a
+ * {@link DirectImageBuffer}.
+ *
+ * The images are only converted from and to BufferedImage at the boundaries,
+ * after decoding and before encoding, one row at a time, so the only pixels in
+ * the heap during the conversion are those of one row (and of the
+ * BufferedImage itself).
+ *
+ * @author pedrorenzo
+ */
+public final class ImageBuffers {
+	private static final boolean SEGMENTS_SUPPORTED = isForeignMemoryAvailable();
+
+	private ImageBuffers() {
+	}
+
+	/**
+	 * @param width
+	 * @param height
+	 * @return a new buffer, all black.
+	 */
+	public static ImageBuffer allocate(final int width, final int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("Invalid size: " + width + "x" + height);
+		}
+		return SEGMENTS_SUPPORTED ? new SegmentImageBuffer(width, height) : new DirectImageBuffer(width, height);
+	}
+
+	/**
+	 * @return <code>true</code> if the buffers are MemorySegments.
+	 */
+	public static boolean isSegmentsSupported() {
+		return SEGMENTS_SUPPORTED;
+	}
+
+	private static boolean isForeignMemoryAvailable() {
+		try {
+			// Does not initialize anything, only checks the module was added.
+			Class.forName("jdk.incubator.foreign.MemorySegment", false, ImageBuffers.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @param image e.g. decoded by ImageIO.
+	 * @return a new buffer with the pixels of the image.
+	 */
+	public static ImageBuffer fromImage(final BufferedImage image) {
+		final int width = image.getWidth();
+		final ImageBuffer buffer = allocate(width, image.getHeight());
+		final int[] row = new int[width];
+		for (int y = 0; y < image.getHeight(); y++) {
+			image.getRGB(0, y, width, 1, row, 0, width);
+			for (int x = 0; x < width; x++) {
+				buffer.setRGB(x, y, row[x]);
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * @param buffer
+	 * @return a new BufferedImage with the pixels of the buffer, e.g. to be
+	 *         encoded by ImageIO.
+	 */
+	public static BufferedImage toImage(final ImageBuffer buffer) {
+		final int width = buffer.getWidth();
+		final BufferedImage image = new BufferedImage(width, buffer.getHeight(), BufferedImage.TYPE_INT_RGB);
+		final int[] row = new int[width];
+		for (int y = 0; y < buffer.getHeight(); y++) {
+			for (int x = 0; x < width; x++) {
+				row[x] = buffer.getRGB(x, y);
+			}
+			image.setRGB(0, y, width, 1, row, 0, width);
+		}
+		return image;
+	}
+}
@@ -0,0 +1,53 @@
+package thread.optimization.image;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import thread.optimization.ThreadOptimizationForLatency;
+
+/**
+ * Recolors the flowers of ThreadOptimizationForLatency out of the heap: the
+ * image is decoded, copied to an {@link ImageBuffer}, recolored by 3 threads
+ * into another buffer and only converted back to a BufferedImage at the end,
+ * to compare it with recolorSingleThreaded, all the rows. The height of the
+ * flowers (4048) is not a multiple of 3, so the last band has an extra row.
+ *
+ * With java --add-modules jdk.incubator.foreign, the buffers are
+ * MemorySegments, otherwise direct ByteBuffers.
+ *
+ * @author pedrorenzo
+ */
+public class OffHeapRecolorExample {
+	private static final int NUMBER_OF_THREADS = 3;
+
+	public static void main(String[] args) throws IOException {
+		System.out.println("Buffers: " + (ImageBuffers.isSegmentsSupported() ? "MemorySegment" : "direct ByteBuffer"));
+		final BufferedImage originalImage = ImageIO.read(new File(ThreadOptimizationForLatency.SOURCE_FILE));
+		final BufferedImage expected = new BufferedImage(originalImage.getWidth(), originalImage.getHeight(),
+				BufferedImage.TYPE_INT_RGB);
+		ThreadOptimizationForLatency.recolorSingleThreaded(originalImage, expected);
+
+		final BufferedImage resultImage;
+		try (ImageBuffer original = ImageBuffers.fromImage(originalImage);
+				ImageBuffer result = ImageBuffers.allocate(original.getWidth(), original.getHeight())) {
+			final long startTime = System.nanoTime();
+			ThreadOptimizationForLatency.recolorMultithreaded(original, result, NUMBER_OF_THREADS);
+			System.out.println("The duration for recolorMultithreaded off the heap was: "
+					+ (System.nanoTime() - startTime) / 1_000_000 + " ms");
+			resultImage = ImageBuffers.toImage(result);
+		}
+
+		for (int y = 0; y < originalImage.getHeight(); y++) {
+			for (int x = 0; x < originalImage.getWidth(); x++) {
+				if (resultImage.getRGB(x, y) != expected.getRGB(x, y)) {
+					System.out.println("WRONG: pixel " + x + "," + y + " is different");
+					return;
+				}
+			}
+		}
+		System.out.println("OK: same image as recolorSingleThreaded");
+	}
+}
@@ -0,0 +1,58 @@
+package thread.optimization.image;
+
+import jdk.incubator.foreign.MemoryAccess;
+import jdk.incubator.foreign.MemorySegment;
+import jdk.incubator.foreign.ResourceScope;
+
+/**
+ * An {@link ImageBuffer} in a native MemorySegment, with the pixels row after
+ * row. The segment belongs to its own shared ResourceScope (the arena of the
+ * image), so all the threads can use it and close() frees it at once, instead
+ * of waiting for the garbage collector.
+ *
+ * The Foreign Memory API is still an incubator module in Java 17, so this
+ * class only loads with --add-modules jdk.incubator.foreign. Otherwise,
+ * {@link ImageBuffers} uses a {@link DirectImageBuffer}.
+ *
+ * @author pedrorenzo
+ */
+class SegmentImageBuffer implements ImageBuffer {
+	private final int width;
+	private final int height;
+	private final ResourceScope scope;
+	private final MemorySegment pixels;
+
+	SegmentImageBuffer(final int width, final int height) {
+		this.width = width;
+		this.height = height;
+		this.scope = ResourceScope.newSharedScope();
+		this.pixels = MemorySegment.allocateNative((long) width * height * Integer.BYTES, scope);
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public int getRGB(final int x, final int y) {
+		return MemoryAccess.getIntAtIndex(pixels, (long) y * width + x);
+	}
+
+	@Override
+	public void setRGB(final int x, final int y, final int rgb) {
+		MemoryAccess.setIntAtIndex(pixels, (long) y * width + x, rgb);
+	}
+
+	@Override
+	public void close() {
+		if (scope.isAlive()) {
+			scope.close();
+		}
+	}
+}